@@ -23,18 +23,47 @@ public class CommandDescription {
   private static final String OUTPUT_COMMAND = "output";
   private static final String CONFIG_COMMAND = "config";
   private static final String CLASSPATH_COMMAND = "classpath";
+  private static final String MODEL_CACHE_COMMAND = "model-cache";
+  private static final String INCREMENTAL_STATE_COMMAND = "incremental-state";
+  private static final String LAZY_MODEL_COMMAND = "lazy-model";
+  private static final String OFF_HEAP_MODEL_COMMAND = "off-heap-model";
+  private static final String PLATFORM_SNAPSHOTS_COMMAND = "platform-snapshots";
+  private static final String FUSED_INJECTORS_COMMAND = "fused-injectors";
 
   private final File inputFile;
   private final File outputFile;
   private final File configFile;
   private final List<File> classpath;
+  private final List<File> platformSnapshots;
+  // Null if the model should not be cached.
+  private final File modelCacheDirectory;
+  // Null if every input should be processed.
+  private final File incrementalStateFile;
+  private final boolean lazyModel;
+  private final boolean offHeapModel;
+  private final boolean fusedInjectors;
 
   private CommandDescription(
-      File inputFile, File outputFile, File configFile, List<File> classpath) {
+      File inputFile,
+      File outputFile,
+      File configFile,
+      List<File> classpath,
+      List<File> platformSnapshots,
+      File modelCacheDirectory,
+      File incrementalStateFile,
+      boolean lazyModel,
+      boolean offHeapModel,
+      boolean fusedInjectors) {
     this.inputFile = inputFile;
     this.outputFile = outputFile;
     this.configFile = configFile;
     this.classpath = new ArrayList<>(classpath);
+    this.platformSnapshots = new ArrayList<>(platformSnapshots);
+    this.modelCacheDirectory = modelCacheDirectory;
+    this.incrementalStateFile = incrementalStateFile;
+    this.lazyModel = lazyModel;
+    this.offHeapModel = offHeapModel;
+    this.fusedInjectors = fusedInjectors;
   }
 
   public static CommandDescription parse(String[] args) throws CliException {
@@ -42,6 +71,12 @@ public class CommandDescription {
     File outputFile = null;
     File configFile = null;
     List<File> classpath = new ArrayList<>();
+    List<File> platformSnapshots = new ArrayList<>();
+    File modelCacheDirectory = null;
+    File incrementalStateFile = null;
+    Boolean lazyModel = null;
+    Boolean offHeapModel = null;
+    Boolean fusedInjectors = null;
 
     for (int i = 0; i < args.length; i++) {
       ArgumentNameAndValue argumentNameAndValue = parseArgument(args[i]);
@@ -74,6 +109,52 @@ public class CommandDescription {
             classpath.add(new File(element));
           }
 
+          break;
+        case PLATFORM_SNAPSHOTS_COMMAND:
+          for (String element :
+              // NULLSAFE_FIXME[Parameter Not Nullable]
+              argumentNameAndValue.getValue().split(System.getProperty("path.separator"))) {
+            platformSnapshots.add(new File(element));
+          }
+
+          break;
+        case MODEL_CACHE_COMMAND:
+          if (modelCacheDirectory != null) {
+            throw new CliException("'%s' argument specified more than once", MODEL_CACHE_COMMAND);
+          }
+
+          modelCacheDirectory = new File(argumentNameAndValue.getValue());
+          break;
+        case INCREMENTAL_STATE_COMMAND:
+          if (incrementalStateFile != null) {
+            throw new CliException(
+                "'%s' argument specified more than once", INCREMENTAL_STATE_COMMAND);
+          }
+
+          incrementalStateFile = new File(argumentNameAndValue.getValue());
+          break;
+        case LAZY_MODEL_COMMAND:
+          if (lazyModel != null) {
+            throw new CliException("'%s' argument specified more than once", LAZY_MODEL_COMMAND);
+          }
+
+          lazyModel = parseBoolean(LAZY_MODEL_COMMAND, argumentNameAndValue.getValue());
+          break;
+        case OFF_HEAP_MODEL_COMMAND:
+          if (offHeapModel != null) {
+            throw new CliException(
+                "'%s' argument specified more than once", OFF_HEAP_MODEL_COMMAND);
+          }
+
+          offHeapModel = parseBoolean(OFF_HEAP_MODEL_COMMAND, argumentNameAndValue.getValue());
+          break;
+        case FUSED_INJECTORS_COMMAND:
+          if (fusedInjectors != null) {
+            throw new CliException(
+                "'%s' argument specified more than once", FUSED_INJECTORS_COMMAND);
+          }
+
+          fusedInjectors = parseBoolean(FUSED_INJECTORS_COMMAND, argumentNameAndValue.getValue());
           break;
         default:
           throw new CliException("Unknown argument '%s'", argumentNameAndValue.getName());
@@ -92,7 +173,25 @@ public class CommandDescription {
       throw new CliException("'%s' argument not specified", CONFIG_COMMAND);
     }
 
-    return new CommandDescription(inputFile, outputFile, configFile, classpath);
+    return new CommandDescription(
+        inputFile,
+        outputFile,
+        configFile,
+        classpath,
+        platformSnapshots,
+        modelCacheDirectory,
+        incrementalStateFile,
+        lazyModel != null && lazyModel,
+        offHeapModel != null && offHeapModel,
+        fusedInjectors != null && fusedInjectors);
+  }
+
+  private static boolean parseBoolean(String command, String value) throws CliException {
+    if (!"true".equals(value) && !"false".equals(value)) {
+      throw new CliException("'%s' argument must be 'true' or 'false', not '%s'", command, value);
+    }
+
+    return Boolean.parseBoolean(value);
   }
 
   public File getInputFile() {
@@ -114,6 +213,30 @@ public class CommandDescription {
     return classpath;
   }
 
+  public List<File> getPlatformSnapshots() {
+    return new ArrayList<>(platformSnapshots);
+  }
+
+  public File getModelCacheDirectory() {
+    return modelCacheDirectory;
+  }
+
+  public File getIncrementalStateFile() {
+    return incrementalStateFile;
+  }
+
+  public boolean isLazyModel() {
+    return lazyModel;
+  }
+
+  public boolean isOffHeapModel() {
+    return offHeapModel;
+  }
+
+  public boolean isFusedInjectors() {
+    return fusedInjectors;
+  }
+
   private static ArgumentNameAndValue parseArgument(String argument) throws CliException {
     Matcher matcher = COMMAND_PATTERN.matcher(argument);
     if (!matcher.matches()) {
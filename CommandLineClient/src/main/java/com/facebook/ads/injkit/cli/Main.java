@@ -9,6 +9,7 @@ package com.facebook.ads.injkit.cli;
 
 import com.facebook.ads.injkit.AnnotationProcessorConfigurationBuilder;
 import com.facebook.infer.annotation.Nullsafe;
+import java.io.File;
 
 @Nullsafe(Nullsafe.Mode.LOCAL)
 public class Main {
@@ -16,13 +17,38 @@ public class Main {
   // --output=<output file>
   // --config=<config file>
   // --classpath=<files> (separated by classpath separator)
+  // --model-cache=<directory> (optional)
+  // --incremental-state=<file> (optional)
+  // --lazy-model=<true|false> (optional, defaults to false)
+  // --off-heap-model=<true|false> (optional, defaults to false)
+  // --platform-snapshots=<files> (optional, separated by classpath separator)
+  // --fused-injectors=<true|false> (optional, defaults to false)
   public static void main(String[] args) throws Exception {
     CommandDescription commandDescription = CommandDescription.parse(args);
-    new AnnotationProcessorConfigurationBuilder()
-        .addInputOutputMap(commandDescription.getInputFile(), commandDescription.getOutputFile())
-        .setConfigurationFile(commandDescription.getConfigFile())
-        .addClasspathElements(commandDescription.getClasspath())
-        .build()
-        .process();
+    AnnotationProcessorConfigurationBuilder builder =
+        new AnnotationProcessorConfigurationBuilder()
+            .addInputOutputMap(
+                commandDescription.getInputFile(), commandDescription.getOutputFile())
+            .setConfigurationFile(commandDescription.getConfigFile())
+            .addClasspathElements(commandDescription.getClasspath())
+            .setLazyModel(commandDescription.isLazyModel())
+            .setOffHeapModel(commandDescription.isOffHeapModel())
+            .setFusedInjectors(commandDescription.isFusedInjectors());
+
+    for (File snapshot : commandDescription.getPlatformSnapshots()) {
+      builder.addPlatformSnapshot(snapshot);
+    }
+
+    File modelCacheDirectory = commandDescription.getModelCacheDirectory();
+    if (modelCacheDirectory != null) {
+      builder.setModelCacheDirectory(modelCacheDirectory);
+    }
+
+    File incrementalStateFile = commandDescription.getIncrementalStateFile();
+    if (incrementalStateFile != null) {
+      builder.setIncrementalStateFile(incrementalStateFile);
+    }
+
+    builder.build().process();
   }
 }
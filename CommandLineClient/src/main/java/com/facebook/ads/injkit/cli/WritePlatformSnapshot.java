@@ -0,0 +1,27 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.ads.injkit.cli;
+
+import com.facebook.ads.injkit.PlatformSnapshots;
+import com.facebook.infer.annotation.Nullsafe;
+import java.io.File;
+
+@Nullsafe(Nullsafe.Mode.LOCAL)
+public class WritePlatformSnapshot {
+  // <platform jar> <snapshot file>
+  //
+  // The snapshot is then passed to Main with --platform-snapshots.
+  public static void main(String[] args) throws Exception {
+    if (args.length != 2) {
+      throw new CliException(
+          "Expected <platform jar> <snapshot file>, got %d arguments", args.length);
+    }
+
+    PlatformSnapshots.write(new File(args[0]), new File(args[1]));
+  }
+}
@@ -7,28 +7,33 @@
 
 package com.facebook.ads.injkit;
 
+import com.facebook.ads.injkit.model.ModelRetention;
 import com.facebook.infer.annotation.Nullsafe;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.net.URLClassLoader;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Locale;
 import java.util.Set;
+import javax.annotation.Nullable;
 
 @Nullsafe(Nullsafe.Mode.LOCAL)
 public class AnnotationProcessorConfiguration {
-  private final Set<ModuleHandler<?>> handlers;
+  // In the order of the modules, which is the order their injectors run in.
+  private final List<ModuleHandler<?>> handlers;
 
-  private AnnotationProcessorConfiguration(Set<ModuleHandler<?>> handlers) {
+  private AnnotationProcessorConfiguration(List<ModuleHandler<?>> handlers) {
     this.handlers = handlers;
   }
 
-  Collection<Injector> makeInjectors(URLClassLoader applicationCode)
+  List<Injector> makeInjectors(URLClassLoader applicationCode)
       throws InvalidAnnotationProcessorConfigurationException {
-    Set<Injector> injectors = new HashSet<>();
+    List<Injector> injectors = new ArrayList<>();
     for (ModuleHandler<?> handler : handlers) {
       injectors.add(handler.makeInjector(applicationCode));
     }
@@ -36,11 +41,29 @@ public class AnnotationProcessorConfiguration {
     return injectors;
   }
 
+  // Keeps the annotations the modules look up in the model, or all of them if any module does
+  // not tell which it looks up.
+  ModelRetention getModelRetention() {
+    Set<String> annotationDescs = new HashSet<>();
+    for (ModuleHandler<?> handler : handlers) {
+      Collection<String> annotationClasses = handler.getModelAnnotationClasses();
+      if (annotationClasses == null) {
+        return ModelRetention.all();
+      }
+
+      for (String annotationClass : annotationClasses) {
+        annotationDescs.add(AsmNameUtils.classJavaNameToDescriptor(annotationClass));
+      }
+    }
+
+    return ModelRetention.annotations(annotationDescs);
+  }
+
   public static AnnotationProcessorConfiguration parse(
       File configurationFile, Iterable<Module<?>> modules)
       throws IOException, InvalidAnnotationProcessorConfigurationException {
 
-    Set<ModuleHandler<?>> handlers = new HashSet<>();
+    List<ModuleHandler<?>> handlers = new ArrayList<>();
     for (Module<?> module : modules) {
       handlers.add(new ModuleHandler<>(module));
     }
@@ -114,5 +137,10 @@ public class AnnotationProcessorConfiguration {
         throws InvalidAnnotationProcessorConfigurationException {
       return module.makeInjectorFactory().make(applicationCode, configuration);
     }
+
+    @Nullable
+    Collection<String> getModelAnnotationClasses() {
+      return module.getModelAnnotationClasses(configuration);
+    }
   }
 }
@@ -8,6 +8,7 @@
 package com.facebook.ads.injkit;
 
 import com.facebook.ads.injkit.model.ModelFactory;
+import com.facebook.ads.injkit.model.ModelRetention;
 import com.facebook.infer.annotation.Nullsafe;
 import java.io.File;
 import java.io.IOException;
@@ -20,9 +21,18 @@ public class AnnotationProcessorConfigurationBuilder {
   @Nullable private File configurationFile;
   private final List<FilePair> files = new ArrayList<>();
   private final List<File> classpathElements = new ArrayList<>();
+  private final List<File> platformSnapshots = new ArrayList<>();
   private ClassFileProcessorFactory classFileProcessorFactory =
       ClassFileProcessorFactory.getDefault();
   private boolean processSystemPath = true;
+  private int parallelism = 1;
+  private int zipPipelineThreads = 0;
+  private long zipPipelineMaxInFlightBytes =
+      ProcessingOptions.DEFAULT_ZIP_PIPELINE_MAX_IN_FLIGHT_BYTES;
+  @Nullable private File modelCacheDirectory;
+  @Nullable private File incrementalStateFile;
+  private boolean lazyModel = false;
+  private boolean offHeapModel = false;
 
   public AnnotationProcessorConfigurationBuilder addFileToTransform(File file) {
     return addInputOutputMap(file, file);
@@ -51,6 +61,15 @@ public class AnnotationProcessorConfigurationBuilder {
     return this;
   }
 
+  // Snapshot written by PlatformSnapshots.write. If the jar it was written from is on the system
+  // path or classpath, the snapshot is loaded into the model in its place instead of scanning
+  // it, but the jar must still be there for classes to be loaded from it. Otherwise, the
+  // snapshot is loaded before anything is scanned.
+  public AnnotationProcessorConfigurationBuilder addPlatformSnapshot(File snapshot) {
+    platformSnapshots.add(snapshot);
+    return this;
+  }
+
   AnnotationProcessorConfigurationBuilder setClassFileProcessorFactory(
       ClassFileProcessorFactory factory) {
     this.classFileProcessorFactory = factory;
@@ -65,6 +84,80 @@ public class AnnotationProcessorConfigurationBuilder {
     return this;
   }
 
+  // Number of threads used to build the model and to transform input files. The default of 1
+  // does everything serially.
+  public AnnotationProcessorConfigurationBuilder setParallelism(int parallelism) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("parallelism must be at least 1");
+    }
+
+    this.parallelism = parallelism;
+    return this;
+  }
+
+  // Number of threads transforming the entries of each zip input. Entries are still read and
+  // written by one thread each, in their original order. The default of 0 disables pipelining.
+  public AnnotationProcessorConfigurationBuilder setZipPipelineThreads(int threads) {
+    if (threads < 0) {
+      throw new IllegalArgumentException("threads must not be negative");
+    }
+
+    this.zipPipelineThreads = threads;
+    return this;
+  }
+
+  // Upper bound on the bytes of zip entries read but not yet written when pipelining.
+  public AnnotationProcessorConfigurationBuilder setZipPipelineMaxInFlightBytes(long bytes) {
+    if (bytes < 1) {
+      throw new IllegalArgumentException("bytes must be at least 1");
+    }
+
+    this.zipPipelineMaxInFlightBytes = bytes;
+    return this;
+  }
+
+  // Directory where models of the system path and classpath elements are cached between runs.
+  // Inputs are never cached. By default nothing is cached.
+  public AnnotationProcessorConfigurationBuilder setModelCacheDirectory(File directory) {
+    this.modelCacheDirectory = directory;
+    return this;
+  }
+
+  // File where the state of an incremental run is kept. When set, inputs are only processed if
+  // they, their outputs or the model data their transformation depends on changed since the
+  // previous run with the same state file. By default every input is processed.
+  public AnnotationProcessorConfigurationBuilder setIncrementalStateFile(File stateFile) {
+    this.incrementalStateFile = stateFile;
+    return this;
+  }
+
+  // Setting this to true makes the model index the system path and classpath instead of parsing
+  // them up front. Classes are then parsed the first time transformations look them up, so time
+  // and memory depend on the classes used rather than on the size of the classpath.
+  // The model cache directory is not used in this mode.
+  public AnnotationProcessorConfigurationBuilder setLazyModel(boolean lazyModel) {
+    this.lazyModel = lazyModel;
+    return this;
+  }
+
+  // Setting this to true keeps the classes known to the model outside the Java heap, so that
+  // very large classpaths do not need a very large heap. Lookups are slower. Off heap memory is
+  // bounded by -XX:MaxDirectMemorySize.
+  public AnnotationProcessorConfigurationBuilder setOffHeapModel(boolean offHeapModel) {
+    this.offHeapModel = offHeapModel;
+    return this;
+  }
+
+  // Setting this to true walks the methods of each class once for all injectors instead of once
+  // per injector, and shares what injectors look up about the class. The output is the same.
+  public AnnotationProcessorConfigurationBuilder setFusedInjectors(boolean fusedInjectors) {
+    this.classFileProcessorFactory =
+        fusedInjectors
+            ? ClassFileProcessorFactory.getFused()
+            : ClassFileProcessorFactory.getDefault();
+    return this;
+  }
+
   public AnnotationProcessor build()
       throws IOException, InvalidAnnotationProcessorConfigurationException {
     if (configurationFile == null) {
@@ -75,12 +168,32 @@ public class AnnotationProcessorConfigurationBuilder {
         AnnotationProcessorConfiguration.parse(
             configurationFile, AnnotationProcessorModules.getModules());
 
+    ModelRetention retention = configuration.getModelRetention();
+    ModelFactory modelFactory;
+    if (offHeapModel) {
+      modelFactory = ModelFactory.offHeapFactory(retention);
+    } else if (parallelism > 1 || lazyModel) {
+      // Lazy models are updated while inputs are transformed, possibly by several threads.
+      modelFactory = ModelFactory.concurrentFactory(retention);
+    } else {
+      modelFactory = ModelFactory.defaultFactory(retention);
+    }
+
     return new AnnotationProcessorImpl(
         files,
+        configurationFile,
         configuration,
         classpathElements,
-        ModelFactory.defaultFactory().make(),
+        platformSnapshots,
+        modelFactory.make(),
         classFileProcessorFactory,
-        processSystemPath);
+        processSystemPath,
+        new ProcessingOptions(
+            parallelism,
+            zipPipelineThreads,
+            zipPipelineMaxInFlightBytes,
+            modelCacheDirectory,
+            incrementalStateFile,
+            lazyModel));
   }
 }
@@ -11,38 +11,48 @@ import static com.google.common.base.StandardSystemProperty.JAVA_CLASS_PATH;
 import static com.google.common.base.StandardSystemProperty.PATH_SEPARATOR;
 
 import com.facebook.ads.injkit.model.Model;
+import com.facebook.ads.injkit.model.ModelFactory;
 import com.facebook.infer.annotation.Nullsafe;
 import com.google.common.base.Splitter;
+import com.google.common.io.Closer;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.net.URLDecoder;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
+import javax.annotation.Nullable;
 
 @Nullsafe(Nullsafe.Mode.LOCAL)
 class AnnotationProcessorImpl implements AnnotationProcessor {
   private final MultiFileHandler multiFileHandler;
+  private final File configurationFile;
   private final List<File> classpathElements;
+  private final List<File> platformSnapshots;
   private final List<File> inputFiles;
   private final Model model;
-  private final ClassFileProcessor classFileProcessor;
+  private final ModelScanner modelScanner;
   private final boolean processSystemPath;
+  @Nullable private final File incrementalStateFile;
+  private final boolean lazyModel;
 
   AnnotationProcessorImpl(
       List<FilePair> files,
+      File configurationFile,
       AnnotationProcessorConfiguration configuration,
       List<File> classpathElements,
+      List<File> platformSnapshots,
       Model model,
       ClassFileProcessorFactory classFileProcessorFactory,
-      boolean processSystemPath)
+      boolean processSystemPath,
+      ProcessingOptions options)
       throws IOException, InvalidAnnotationProcessorConfigurationException {
 
     files =
@@ -59,31 +69,122 @@ class AnnotationProcessorImpl implements AnnotationProcessor {
 
     URLClassLoader classpathLoader = new URLClassLoader(urls);
 
+    this.configurationFile = configurationFile;
     this.classpathElements = classpathElements;
+    this.platformSnapshots = platformSnapshots;
     this.inputFiles = files.stream().map(FilePair::getInput).collect(Collectors.toList());
     this.model = model;
-    this.classFileProcessor = classFileProcessorFactory.make(configuration, classpathLoader, model);
+    // Injectors are made and their configuration validated once, and the processor is shared by
+    // the model scan and every input.
+    ClassFileProcessor classFileProcessor =
+        classFileProcessorFactory.make(configuration, classpathLoader, model);
+    this.modelScanner = new ModelScanner(classFileProcessor, options);
     this.processSystemPath = processSystemPath;
+    this.incrementalStateFile = options.getIncrementalStateFile();
+    this.lazyModel = options.isLazyModel();
 
-    multiFileHandler =
-        new MultiFileHandler(
-            files, configuration, classpathLoader, model, classFileProcessorFactory);
+    multiFileHandler = new MultiFileHandler(files, classFileProcessor, options);
   }
 
   @Override
   public void process() throws IOException, AnnotationProcessingException {
+    // Classes found earlier take precedence, so the system path goes first, then the classpath
+    // and finally the inputs.
+    List<File> dependencies = new ArrayList<>();
     if (processSystemPath) {
-      updateModelWithBaseClasspathElements();
+      addBaseClasspathElements(dependencies);
     }
 
-    updateModelWithClasspathElements();
-    updateModelWithFiles();
+    for (File file : classpathElements) {
+      addRecursive(file, dependencies);
+    }
+
+    List<File> inputs = new ArrayList<>();
+    for (File file : inputFiles) {
+      addRecursive(file, inputs);
+    }
+
+    // Snapshots change the model as much as the dependencies do.
+    List<File> environment = new ArrayList<>(dependencies);
+    environment.addAll(platformSnapshots);
+    Map<File, Model> snapshotModels = loadPlatformSnapshots(dependencies);
+
+    if (!lazyModel) {
+      modelScanner.scan(dependencies, inputs, snapshotModels, model);
+      processInputs(environment);
+      return;
+    }
+
+    // Dependencies are only indexed. Their classes are parsed when transformations look them up,
+    // so the indexes must stay open until all inputs are processed. The dependencies before and
+    // after a jar with a snapshot are indexed separately, so that the snapshot goes between them.
+    try (Closer closer = Closer.create()) {
+      List<File> indexed = new ArrayList<>();
+      for (File dependency : dependencies) {
+        Model snapshotModel = snapshotModels.get(dependency);
+        if (snapshotModel == null) {
+          indexed.add(dependency);
+          continue;
+        }
+
+        model.updateLazily(closer.register(new ClasspathIndex(indexed)));
+        model.updateFrom(snapshotModel);
+        indexed = new ArrayList<>();
+      }
 
-    multiFileHandler.process();
+      model.updateLazily(closer.register(new ClasspathIndex(indexed)));
+      modelScanner.scan(Collections.emptyList(), inputs, model);
+      processInputs(environment);
+    }
   }
 
-  private void updateModelWithBaseClasspathElements()
+  // Reads the platform snapshots and returns the model of each dependency a snapshot was made
+  // from, to be used at the position of the dependency instead of scanning it. Snapshots made
+  // from no dependency are loaded into the model, before anything else.
+  private Map<File, Model> loadPlatformSnapshots(List<File> dependencies) throws IOException {
+    Map<File, Model> snapshotModels = new HashMap<>();
+    for (File snapshot : platformSnapshots) {
+      Model snapshotModel = ModelFactory.defaultFactory().make();
+      PlatformSnapshots.Source source = PlatformSnapshots.read(snapshot, snapshotModel);
+      boolean found = false;
+      for (File dependency : dependencies) {
+        if (!snapshotModels.containsKey(dependency) && source.isSourceOf(dependency)) {
+          snapshotModels.put(dependency, snapshotModel);
+          found = true;
+        }
+      }
+
+      source.storeKnownSources();
+      if (!found) {
+        model.updateFrom(snapshotModel);
+      }
+    }
+
+    return snapshotModels;
+  }
+
+  private void processInputs(List<File> environment)
       throws IOException, AnnotationProcessingException {
+    if (incrementalStateFile == null) {
+      multiFileHandler.process(null);
+      return;
+    }
+
+    IncrementalState state =
+        IncrementalState.load(
+            incrementalStateFile,
+            IncrementalState.environmentFingerprint(configurationFile, environment),
+            model);
+    try {
+      multiFileHandler.process(state);
+    } finally {
+      // Stored even if some files failed, so that files processed successfully are not processed
+      // again. Failed files are not in the state.
+      state.store(incrementalStateFile);
+    }
+  }
+
+  private static void addBaseClasspathElements(List<File> files) throws IOException {
     List<ClassLoader> ldrs = new ArrayList<>();
     for (ClassLoader ldr = AnnotationProcessorImpl.class.getClassLoader();
         ldr != null;
@@ -93,7 +194,6 @@ class AnnotationProcessorImpl implements AnnotationProcessor {
 
     // Process the loaders in inverse order to be more likely consistent with class precedence.
     Collections.reverse(ldrs);
-    List<File> files = new ArrayList<>();
     for (ClassLoader ldr : ldrs) {
       if (ldr instanceof URLClassLoader) {
         URL[] urls = ((URLClassLoader) ldr).getURLs();
@@ -114,49 +214,6 @@ class AnnotationProcessorImpl implements AnnotationProcessor {
         }
       }
     }
-
-    updateModel(files);
-  }
-
-  private void updateModelWithClasspathElements()
-      throws IOException, AnnotationProcessingException {
-    updateModel(classpathElements);
-  }
-
-  private void updateModelWithFiles() throws IOException, AnnotationProcessingException {
-    updateModel(inputFiles);
-  }
-
-  private void updateModel(List<File> files) throws IOException, AnnotationProcessingException {
-    for (File file : files) {
-      if (file.isDirectory()) {
-        updateModel(Arrays.asList(file.listFiles()));
-        return;
-      }
-
-      ZipRecursionHandler.handle(
-          file,
-          new ZipRecursionHandler.FileConsumer() {
-            @Override
-            public void consumeFile(boolean isClass, InputStream input)
-                throws IOException, AnnotationProcessingException {
-              if (isClass) {
-                classFileProcessor.updateModel(input, model);
-              }
-            }
-
-            @Override
-            public void consumeZip(ZipRecursionHandler.ZipHandler handler)
-                throws IOException, AnnotationProcessingException {
-              handler.handleZip(
-                  (String path, boolean isClass, InputStream input) -> {
-                    if (isClass) {
-                      classFileProcessor.updateModel(input, model);
-                    }
-                  });
-            }
-          });
-    }
   }
 
   private static void addRecursive(File file, List<File> files) {
@@ -18,6 +18,7 @@ import java.util.Arrays;
 class AnnotationProcessorModules {
   private AnnotationProcessorModules() {}
 
+  // Injectors run in the order of their modules.
   static Iterable<Module<?>> getModules() {
     return Arrays.asList(
         new CrashShieldModule(),
@@ -17,7 +17,7 @@ public class AsmNameUtils {
   private AsmNameUtils() {}
 
   public static String classJavaNameToInternalName(String name) {
-    return name.replaceAll("\\.", "/");
+    return name.replace('.', '/');
   }
 
   public static String classJavaNameToDescriptor(String name) {
@@ -25,7 +25,7 @@ public class AsmNameUtils {
   }
 
   public static String classInternalNameToJavaName(String iname) {
-    return iname.replaceAll("/", ".");
+    return iname.replace('/', '.');
   }
 
   static String classDescriptorToJavaName(String descriptor) {
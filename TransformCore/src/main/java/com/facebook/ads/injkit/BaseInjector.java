@@ -10,7 +10,9 @@ package com.facebook.ads.injkit;
 import com.facebook.ads.injkit.model.Model;
 import com.facebook.infer.annotation.Nullsafe;
 import java.util.function.Predicate;
+import javax.annotation.Nullable;
 import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
 
 @Nullsafe(Nullsafe.Mode.LOCAL)
 public abstract class BaseInjector implements Injector {
@@ -21,26 +23,46 @@ public abstract class BaseInjector implements Injector {
   }
 
   @Override
-  public final void process(ClassNode clsNode, Model model) throws AnnotationProcessingException {
-    if (isPackageIgnored.test(
-        AsmNameUtils.packageJavaNameFromClassJavaName(
-            // NULLSAFE_FIXME[Not Vetted Third-Party]
-            AsmNameUtils.classInternalNameToJavaName(clsNode.name)))) {
-      return;
+  public final boolean process(ClassNode clsNode, Model model)
+      throws AnnotationProcessingException {
+    ClassPass pass = startClass(clsNode, new ClassContext(clsNode, model));
+    if (pass == null) {
+      return false;
     }
 
-    if (shouldSkipClass(clsNode)) {
-      return;
+    boolean changed = pass.beginClass();
+    // NULLSAFE_FIXME[Not Vetted Third-Party]
+    for (MethodNode method : clsNode.methods) {
+      changed |= pass.processMethod(method);
     }
 
-    processImpl(clsNode, model);
+    changed |= pass.endClass();
+    return changed;
   }
 
-  protected abstract void processImpl(ClassNode clsNode, Model model)
-      throws AnnotationProcessingException;
-
-  private static boolean shouldSkipClass(ClassNode classNode) {
+  // Returns null if the injector leaves the class alone.
+  @Nullable
+  final ClassPass startClass(ClassNode clsNode, ClassContext context)
+      throws AnnotationProcessingException {
     // NULLSAFE_FIXME[Not Vetted Third-Party]
-    return AsmNameUtils.classInternalNameToJavaName(classNode.name).endsWith(".package-info");
+    if (isClassIgnored(clsNode.name)) {
+      return null;
+    }
+
+    return startClassImpl(clsNode, context);
   }
+
+  // Whether the injector leaves the class alone whatever it has: classes in ignored packages and
+  // package-info classes. Streaming processing skips the same classes.
+  final boolean isClassIgnored(String iName) {
+    String javaName = AsmNameUtils.classInternalNameToJavaName(iName);
+    return isPackageIgnored.test(AsmNameUtils.packageJavaNameFromClassJavaName(javaName))
+        || javaName.endsWith(".package-info");
+  }
+
+  // Returns the work to do on the class, or null if the injector leaves it alone. The class must
+  // not be changed yet.
+  @Nullable
+  protected abstract ClassPass startClassImpl(ClassNode clsNode, ClassContext context)
+      throws AnnotationProcessingException;
 }
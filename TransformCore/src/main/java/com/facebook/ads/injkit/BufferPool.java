@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.ads.injkit;
+
+import com.facebook.infer.annotation.Nullsafe;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+// Buffers reused by the files processed on the same thread. Once they have grown to the largest
+// class seen, reading, transforming and writing a class allocates nothing here. A thread works on
+// one file at a time, so each buffer holds at most one file. Buffers that grew past
+// MAX_RETAINED_SIZE are dropped the next time they are used, so that one large file does not
+// keep memory for the rest of the run.
+@Nullsafe(Nullsafe.Mode.LOCAL)
+final class BufferPool {
+  private static final int INITIAL_SIZE = 16 * 1024;
+  private static final int COPY_SIZE = 8 * 1024;
+  static final int MAX_RETAINED_SIZE = 1024 * 1024;
+  private static final ThreadLocal<BufferPool> POOLS = ThreadLocal.withInitial(BufferPool::new);
+
+  private byte[] input = new byte[INITIAL_SIZE];
+  private final byte[] copy = new byte[COPY_SIZE];
+  private Output output = new Output();
+
+  private BufferPool() {}
+
+  static BufferPool get() {
+    return POOLS.get();
+  }
+
+  // Reads the stream to its end into the input buffer and returns the number of bytes read. The
+  // expected size, or -1 if not known, saves growing the buffer while reading.
+  int read(InputStream stream, long expectedSize) throws IOException {
+    if (input.length > MAX_RETAINED_SIZE) {
+      input = new byte[INITIAL_SIZE];
+    }
+
+    if (expectedSize >= input.length && expectedSize < Integer.MAX_VALUE) {
+      input = new byte[(int) expectedSize + 1];
+    }
+
+    int length = 0;
+    while (true) {
+      if (length == input.length) {
+        input = Arrays.copyOf(input, input.length * 2);
+      }
+
+      int r = stream.read(input, length, input.length - length);
+      if (r == -1) {
+        return length;
+      }
+
+      length += r;
+    }
+  }
+
+  // What the last read put in it, valid until the next read.
+  byte[] getInput() {
+    return input;
+  }
+
+  // The output buffer, emptied.
+  Output output() {
+    if (output.getBuffer().length > MAX_RETAINED_SIZE) {
+      output = new Output();
+    } else {
+      output.reset();
+    }
+
+    return output;
+  }
+
+  void copy(InputStream stream, OutputStream output) throws IOException {
+    int r;
+    while ((r = stream.read(copy)) > 0) {
+      output.write(copy, 0, r);
+    }
+  }
+
+  // An output stream whose content can be used without copying it.
+  static final class Output extends ByteArrayOutputStream {
+    private Output() {
+      super(INITIAL_SIZE);
+    }
+
+    byte[] getBuffer() {
+      return buf;
+    }
+
+    boolean contentEquals(byte[] data, int length) {
+      if (count != length) {
+        return false;
+      }
+
+      for (int i = 0; i < length; i++) {
+        if (buf[i] != data[i]) {
+          return false;
+        }
+      }
+
+      return true;
+    }
+  }
+}
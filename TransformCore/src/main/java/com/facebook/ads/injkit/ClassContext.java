@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.ads.injkit;
+
+import com.facebook.ads.injkit.model.InheritedMethodAnnotations;
+import com.facebook.ads.injkit.model.Model;
+import com.facebook.infer.annotation.Nullsafe;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nullable;
+import org.objectweb.asm.tree.AnnotationNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+
+// What injectors look up about the class being processed. Each lookup is made once and shared by
+// every injector given the same context. Annotations are those the class had when the context was
+// made: injectors that remove annotations afterwards do not change what the others see.
+@Nullsafe(Nullsafe.Mode.LOCAL)
+public final class ClassContext {
+  private final ClassNode clsNode;
+  private final Model model;
+  // Descriptors of the annotations of the class and of its methods.
+  private final Set<String> annotationDescs = new HashSet<>();
+  private final Map<String, Boolean> closureUsesAnnotation = new HashMap<>();
+  private final Map<String, InheritedMethodAnnotations> inheritedMethodAnnotations =
+      new HashMap<>();
+  @Nullable private Set<String> hierarchicalClosure;
+
+  ClassContext(ClassNode clsNode, Model model) {
+    this.clsNode = clsNode;
+    this.model = model;
+    // NULLSAFE_FIXME[Not Vetted Third-Party]
+    addDescs(clsNode.visibleAnnotations);
+    // NULLSAFE_FIXME[Not Vetted Third-Party]
+    addDescs(clsNode.invisibleAnnotations);
+    // NULLSAFE_FIXME[Not Vetted Third-Party]
+    for (MethodNode method : clsNode.methods) {
+      // NULLSAFE_FIXME[Not Vetted Third-Party]
+      addDescs(method.visibleAnnotations);
+      // NULLSAFE_FIXME[Not Vetted Third-Party]
+      addDescs(method.invisibleAnnotations);
+    }
+  }
+
+  private void addDescs(@Nullable List<AnnotationNode> annotations) {
+    if (annotations == null) {
+      return;
+    }
+
+    for (AnnotationNode annotation : annotations) {
+      annotationDescs.add(annotation.desc);
+    }
+  }
+
+  public Model getModel() {
+    return model;
+  }
+
+  public Set<String> getHierarchicalClosure() {
+    Set<String> closure = hierarchicalClosure;
+    if (closure == null) {
+      // NULLSAFE_FIXME[Not Vetted Third-Party]
+      closure = model.hierarchicalClosure(clsNode.name);
+      hierarchicalClosure = closure;
+    }
+
+    return closure;
+  }
+
+  // Whether the class, its ancestors or any of their methods may have one of the annotations.
+  // Injectors that only act on their own annotations can leave the class alone otherwise. The
+  // class itself is checked in the node, as the model may know another definition of it.
+  public boolean mayUseAnnotations(Collection<String> descs) {
+    for (String desc : descs) {
+      if (annotationDescs.contains(desc)) {
+        return true;
+      }
+    }
+
+    for (String desc : descs) {
+      Boolean uses = closureUsesAnnotation.get(desc);
+      if (uses == null) {
+        // NULLSAFE_FIXME[Not Vetted Third-Party]
+        uses = model.closureUsesAnnotation(clsNode.name, desc);
+        closureUsesAnnotation.put(desc, uses);
+      }
+
+      if (uses) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  public InheritedMethodAnnotations inheritedMethodAnnotations(String annotationDesc) {
+    InheritedMethodAnnotations annotations = inheritedMethodAnnotations.get(annotationDesc);
+    if (annotations == null) {
+      // NULLSAFE_FIXME[Not Vetted Third-Party]
+      annotations = model.inheritedMethodAnnotations(clsNode.name, annotationDesc);
+      inheritedMethodAnnotations.put(annotationDesc, annotations);
+    }
+
+    return annotations;
+  }
+}
@@ -42,6 +42,21 @@ class ClassFileDetectorStream extends InputStream {
     return isClass;
   }
 
+  // Same detection as the stream, on the first length bytes of a file already read.
+  static boolean isClass(String name, byte[] data, int length) {
+    if (!name.endsWith(".class") || length < CLASS_FILE_MAGIC.length) {
+      return false;
+    }
+
+    for (int i = 0; i < CLASS_FILE_MAGIC.length; i++) {
+      if (data[i] != CLASS_FILE_MAGIC[i]) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
   @Override
   public int read(byte[] bytes) throws IOException {
     return read(bytes, 0, bytes.length);
@@ -55,7 +70,8 @@ class ClassFileDetectorStream extends InputStream {
       System.arraycopy(initial, initialReadIdx, bytes, offset, readBytes);
       initialReadIdx += readBytes;
       if (readBytes < length) {
-        return readBytes + read(bytes, offset + readBytes, length - readBytes);
+        int more = read(bytes, offset + readBytes, length - readBytes);
+        return more == -1 ? readBytes : readBytes + more;
       } else {
         return readBytes;
       }
@@ -8,14 +8,22 @@
 package com.facebook.ads.injkit;
 
 import com.facebook.ads.injkit.model.Model;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 
+// One processor is shared by all inputs, which may be processed concurrently.
 public interface ClassFileProcessor {
   void process(InputStream input, OutputStream output)
       throws IOException, AnnotationProcessingException;
 
+  // Processes the first length bytes of classFile, which the caller may reuse afterwards.
+  default void process(byte[] classFile, int length, OutputStream output)
+      throws IOException, AnnotationProcessingException {
+    process(new ByteArrayInputStream(classFile, 0, length), output);
+  }
+
   void updateModel(InputStream input, Model model)
       throws IOException, AnnotationProcessingException;
 }
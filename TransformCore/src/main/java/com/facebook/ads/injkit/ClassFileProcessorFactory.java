@@ -21,4 +21,10 @@ public interface ClassFileProcessorFactory {
   static ClassFileProcessorFactory getDefault() {
     return ClassFileProcessorImpl::new;
   }
+
+  // Walks the methods of each class once for all injectors.
+  static ClassFileProcessorFactory getFused() {
+    return (configuration, classLoader, model) ->
+        new ClassFileProcessorImpl(configuration, classLoader, model, true);
+  }
 }
@@ -9,95 +9,287 @@ package com.facebook.ads.injkit;
 
 import com.facebook.ads.injkit.model.Model;
 import com.facebook.infer.annotation.Nullsafe;
+import com.google.common.io.ByteStreams;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URLClassLoader;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Set;
+import javax.annotation.Nullable;
 import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
 
 @Nullsafe(Nullsafe.Mode.LOCAL)
 class ClassFileProcessorImpl implements ClassFileProcessor {
   private final URLClassLoader classLoader;
-  private final Collection<Injector> injectors;
+  private final List<Injector> injectors;
+  private final ClassPrefilter prefilter;
+  private final boolean fused;
+  // Set when every injector streams. Classes are then not read into trees.
+  @Nullable private final List<ClassPrefilter> streamingPrefilters;
   private final Model model;
+  private final CommonSuperClassResolver commonSuperClassResolver;
 
   ClassFileProcessorImpl(
       AnnotationProcessorConfiguration configuration, URLClassLoader classLoader, Model model)
       throws InvalidAnnotationProcessorConfigurationException {
+    this(configuration, classLoader, model, false);
+  }
+
+  // In fused mode the methods of each class are walked once for all injectors, see
+  // transformClassNodeFused.
+  ClassFileProcessorImpl(
+      AnnotationProcessorConfiguration configuration,
+      URLClassLoader classLoader,
+      Model model,
+      boolean fused)
+      throws InvalidAnnotationProcessorConfigurationException {
     this.classLoader = classLoader;
-    this.injectors = new ArrayList<>(configuration.makeInjectors(classLoader));
+    this.injectors = configuration.makeInjectors(classLoader);
+    this.prefilter = new ClassPrefilter(injectors);
+    this.fused = fused;
+    this.streamingPrefilters = makeStreamingPrefilters(injectors);
     this.model = model;
+    this.commonSuperClassResolver = new CommonSuperClassResolver(model, classLoader);
+  }
+
+  // One prefilter per injector, or null if any injector does not stream.
+  @Nullable
+  private static List<ClassPrefilter> makeStreamingPrefilters(List<Injector> injectors) {
+    List<ClassPrefilter> prefilters = new ArrayList<>(injectors.size());
+    for (Injector injector : injectors) {
+      if (!(injector instanceof StreamingInjector)) {
+        return null;
+      }
+
+      prefilters.add(new ClassPrefilter(Collections.singletonList(injector)));
+    }
+
+    return prefilters;
   }
 
   @Override
   public void process(InputStream input, OutputStream output)
       throws IOException, AnnotationProcessingException {
-    ClassReader classReader = new ClassReader(input);
+    byte[] original = ByteStreams.toByteArray(input);
+    process(original, original.length, output);
+  }
+
+  @Override
+  public void process(byte[] classFile, int length, OutputStream output)
+      throws IOException, AnnotationProcessingException {
+    ClassReader classReader = new ClassReader(classFile, 0, length);
+    // Classes no injector is interested in are not even parsed.
+    if (!prefilter.mayBeProcessed(classFile, classReader, model)) {
+      output.write(classFile, 0, length);
+      return;
+    }
+
+    if (streamingPrefilters != null) {
+      byte[] streamed = stream(classFile, classReader, streamingPrefilters);
+      if (streamed == null) {
+        output.write(classFile, 0, length);
+      } else {
+        output.write(streamed);
+      }
+
+      return;
+    }
+
     ClassNode node = new ClassNode();
     classReader.accept(node, 0);
 
-    transformClassNode(node);
+    MethodChanges methodChanges = MethodChanges.record(node);
 
-    ClassWriter classWriter =
-        new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS) {
-          @Override
-          protected ClassLoader getClassLoader() {
-            return classLoader;
-          }
+    // Classes no injector changes are written as they were read, which avoids computing their
+    // frames and keeps them byte for byte identical.
+    if (!(fused ? transformClassNodeFused(node) : transformClassNode(node))) {
+      output.write(classFile, 0, length);
+      return;
+    }
 
-          @Override
-          protected String getCommonSuperClass(String type1, String type2) {
-            Class<?> class1;
-            try {
-              class1 = classLoader.loadClass(AsmNameUtils.classInternalNameToJavaName(type1));
-            } catch (Exception e) {
-              throw new TypeNotPresentException(type1, e);
-            }
-            Class<?> class2;
-            try {
-              class2 = classLoader.loadClass(AsmNameUtils.classInternalNameToJavaName(type2));
-            } catch (Exception e) {
-              throw new TypeNotPresentException(type2, e);
-            }
-            if (class1.isAssignableFrom(class2)) {
-              return type1;
-            }
-            if (class2.isAssignableFrom(class1)) {
-              return type2;
-            }
-            if (class1.isInterface() || class2.isInterface()) {
-              return "java/lang/Object";
-            } else {
-              do {
-                // NULLSAFE_FIXME[Not Vetted Third-Party]
-                class1 = class1.getSuperclass();
-              } while (!class1.isAssignableFrom(class2));
-
-              return AsmNameUtils.classJavaNameToInternalName(class1.getName());
-            }
-          }
-        };
+    // Frames and maxs are only computed for the methods injectors changed. The other methods keep
+    // the frames they were read with. Seeding the writer with the constant pool of the original
+    // class keeps the constants of those methods where they were.
+    computeFrames(node, methodChanges.changedMethods(node));
+    ClassWriter classWriter = newClassWriter(classReader, 0);
     node.accept(classWriter);
     output.write(classWriter.toByteArray());
   }
 
+  // Reads the class through the visitors of the injectors into a writer seeded with the original
+  // class, which copies the methods no visitor wraps without parsing them, so visitors only wrap
+  // the methods they change. Returns null if no visitor changed the class.
+  @Nullable
+  private byte[] stream(byte[] classFile, ClassReader classReader, List<ClassPrefilter> prefilters)
+      throws AnnotationProcessingException {
+    ClassWriter classWriter = newClassWriter(classReader, 0);
+    List<StreamingClassVisitor> visitors = new ArrayList<>();
+    ClassVisitor chain = classWriter;
+    // The chain is built from the last injector, so the first one sees the class first.
+    for (int i = injectors.size() - 1; i >= 0; i--) {
+      Injector injector = injectors.get(i);
+      if ((injector instanceof BaseInjector
+              && ((BaseInjector) injector).isClassIgnored(classReader.getClassName()))
+          || !prefilters.get(i).mayBeProcessed(classFile, classReader, model)) {
+        continue;
+      }
+
+      StreamingClassVisitor visitor =
+          ((StreamingInjector) injector).makeVisitor(classReader, model, chain);
+      if (visitor != null) {
+        visitors.add(visitor);
+        chain = visitor;
+      }
+    }
+
+    if (visitors.isEmpty()) {
+      return null;
+    }
+
+    try {
+      classReader.accept(chain, 0);
+    } catch (StreamingClassVisitor.Failure e) {
+      throw e.getException();
+    }
+
+    for (StreamingClassVisitor visitor : visitors) {
+      if (visitor.isChanged()) {
+        return classWriter.toByteArray();
+      }
+    }
+
+    return null;
+  }
+
+  // Replaces the given methods of the node with copies that have frames and maxs. The methods are
+  // written in a class with nothing else, so only they are analyzed.
+  private void computeFrames(ClassNode node, List<MethodNode> methods) {
+    if (methods.isEmpty()) {
+      return;
+    }
+
+    ClassNode methodsOnly = new ClassNode();
+    methodsOnly.version = node.version;
+    methodsOnly.access = node.access;
+    methodsOnly.name = node.name;
+    methodsOnly.signature = node.signature;
+    methodsOnly.superName = node.superName;
+    methodsOnly.interfaces = node.interfaces;
+    methodsOnly.methods.addAll(methods);
+    ClassWriter classWriter =
+        newClassWriter(null, ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS);
+    methodsOnly.accept(classWriter);
+
+    ClassNode computed = new ClassNode();
+    new ClassReader(classWriter.toByteArray()).accept(computed, 0);
+    Iterator<MethodNode> computedMethods = computed.methods.iterator();
+    Set<MethodNode> replaced = Collections.newSetFromMap(new IdentityHashMap<>());
+    replaced.addAll(methods);
+    for (ListIterator<MethodNode> it = node.methods.listIterator(); it.hasNext(); ) {
+      if (replaced.contains(it.next())) {
+        it.set(computedMethods.next());
+      }
+    }
+  }
+
+  private ClassWriter newClassWriter(@Nullable ClassReader classReader, int flags) {
+    return new ClassWriter(classReader, flags) {
+      @Override
+      protected ClassLoader getClassLoader() {
+        return classLoader;
+      }
+
+      @Override
+      protected String getCommonSuperClass(String type1, String type2) {
+        return commonSuperClassResolver.getCommonSuperClass(type1, type2);
+      }
+    };
+  }
+
   @Override
   public void updateModel(InputStream input, Model model)
       throws IOException, AnnotationProcessingException {
-    ClassReader classReader = new ClassReader(input);
-    ClassNode node = new ClassNode();
-    classReader.accept(node, 0);
+    model.update(new ClassReader(input));
+  }
 
-    model.update(node);
+  private boolean transformClassNode(ClassNode node) throws AnnotationProcessingException {
+    boolean changed = false;
+    for (Injector injector : injectors) {
+      changed |= injector.process(node, model);
+    }
+
+    return changed;
   }
 
-  private void transformClassNode(ClassNode node) throws AnnotationProcessingException {
+  // Gives each method to every injector in turn, rather than each injector walking all methods,
+  // and shares the lookups about the class between injectors. The class ends up as if the
+  // injectors had run one after the other. Passes that must end before later ones see the class
+  // close a walk, and the later passes walk the methods again. Injectors that are not base
+  // injectors cannot be split and process the whole class between two walks.
+  private boolean transformClassNodeFused(ClassNode node) throws AnnotationProcessingException {
+    ClassContext context = new ClassContext(node, model);
+    List<ClassPass> passes = new ArrayList<>(injectors.size());
+    boolean changed = false;
     for (Injector injector : injectors) {
-      injector.process(node, model);
+      if (injector instanceof BaseInjector) {
+        ClassPass pass = ((BaseInjector) injector).startClass(node, context);
+        if (pass != null) {
+          passes.add(pass);
+          if (pass.endsBeforeLaterPasses()) {
+            changed |= walk(node, passes);
+            passes.clear();
+          }
+        }
+      } else {
+        changed |= walk(node, passes);
+        passes.clear();
+        changed |= injector.process(node, model);
+      }
+    }
+
+    return walk(node, passes) || changed;
+  }
+
+  // Runs the passes over the class, walking its methods once.
+  private static boolean walk(ClassNode node, List<ClassPass> passes)
+      throws AnnotationProcessingException {
+    if (passes.isEmpty()) {
+      return false;
     }
+
+    boolean changed = false;
+    for (ClassPass pass : passes) {
+      changed |= pass.beginClass();
+    }
+
+    int walkedMethods = node.methods.size();
+    for (int i = 0; i < walkedMethods; i++) {
+      MethodNode method = node.methods.get(i);
+      for (ClassPass pass : passes) {
+        changed |= pass.processMethod(method);
+      }
+    }
+
+    for (ClassPass pass : passes) {
+      // Methods added when earlier passes ended are processed by the later ones, as if each
+      // injector walked the methods after the previous one was done.
+      for (int i = walkedMethods; i < node.methods.size(); i++) {
+        changed |= pass.processMethod(node.methods.get(i));
+      }
+
+      changed |= pass.endClass();
+    }
+
+    return changed;
   }
 }
@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.ads.injkit;
+
+import com.facebook.infer.annotation.Nullsafe;
+import org.objectweb.asm.tree.MethodNode;
+
+// The work of an injector on one class, split so that the methods of the class can be walked once
+// for all injectors. Each method returns whether it changed the class.
+@Nullsafe(Nullsafe.Mode.LOCAL)
+public abstract class ClassPass {
+  // Called before any method is processed.
+  public boolean beginClass() throws AnnotationProcessingException {
+    return false;
+  }
+
+  // Methods must not be added nor removed here.
+  public abstract boolean processMethod(MethodNode method) throws AnnotationProcessingException;
+
+  // Called after every method was processed. Methods can be added here.
+  public boolean endClass() throws AnnotationProcessingException {
+    return false;
+  }
+
+  // Whether later passes must only be given the class once this one ended, because it changes
+  // what they look at while processing methods, such as the super class.
+  public boolean endsBeforeLaterPasses() {
+    return false;
+  }
+}
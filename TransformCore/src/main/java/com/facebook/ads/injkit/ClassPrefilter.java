@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.ads.injkit;
+
+import com.facebook.ads.injkit.model.Model;
+import com.facebook.infer.annotation.Nullsafe;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.objectweb.asm.ClassReader;
+
+// Decides, from the raw class file and the model, whether any injector may change a class. Every
+// annotation descriptor and method name a class refers to is a UTF-8 constant in its constant
+// pool, so the pool is scanned for the names of interest by comparing bytes, without decoding
+// any constant. The hierarchy is looked up in the model. May accept a class no injector changes,
+// never rejects one an injector would change.
+@Nullsafe(Nullsafe.Mode.LOCAL)
+class ClassPrefilter {
+  private static final int CONSTANT_UTF8_TAG = 1;
+
+  private final boolean everything;
+  private final Set<String> annotationDescs = new HashSet<>();
+  private final Set<String> supertypes = new HashSet<>();
+  // Annotation descriptors and method names, in modified UTF-8 as they are in the class file.
+  private final byte[][] constants;
+
+  ClassPrefilter(Collection<Injector> injectors) {
+    boolean everything = false;
+    Set<String> names = new HashSet<>();
+    for (Injector injector : injectors) {
+      InjectorInterest interest = injector.getInterest();
+      everything |= interest.isEverything();
+      annotationDescs.addAll(interest.getAnnotationDescs());
+      supertypes.addAll(interest.getSupertypes());
+      names.addAll(interest.getAnnotationDescs());
+      names.addAll(interest.getMethodNames());
+    }
+
+    this.everything = everything;
+    List<byte[]> constants = new ArrayList<>(names.size());
+    for (String name : names) {
+      constants.add(modifiedUtf8(name));
+    }
+
+    this.constants = constants.toArray(new byte[0][]);
+  }
+
+  // The reader must read classFile from its start.
+  boolean mayBeProcessed(byte[] classFile, ClassReader reader, Model model) {
+    if (everything || refersToConstant(classFile, reader)) {
+      return true;
+    }
+
+    String iName = reader.getClassName();
+    if (!supertypes.isEmpty()) {
+      if (supertypes.contains(reader.getSuperName())
+          || containsAny(Arrays.asList(reader.getInterfaces()))
+          || containsAny(model.hierarchicalClosure(iName))) {
+        return true;
+      }
+    }
+
+    for (String desc : annotationDescs) {
+      if (model.closureUsesAnnotation(iName, desc)) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  private boolean containsAny(Collection<String> iNames) {
+    for (String iName : iNames) {
+      if (supertypes.contains(iName)) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  private boolean refersToConstant(byte[] classFile, ClassReader reader) {
+    if (constants.length == 0) {
+      return false;
+    }
+
+    // Item 0 does not exist and the item after a long or double has offset 0.
+    for (int i = 1; i < reader.getItemCount(); i++) {
+      int offset = reader.getItem(i);
+      if (offset == 0 || classFile[offset - 1] != CONSTANT_UTF8_TAG) {
+        continue;
+      }
+
+      int length = reader.readUnsignedShort(offset);
+      for (byte[] constant : constants) {
+        if (constant.length == length && equalsAt(classFile, offset + 2, constant)) {
+          return true;
+        }
+      }
+    }
+
+    return false;
+  }
+
+  private static boolean equalsAt(byte[] classFile, int offset, byte[] constant) {
+    for (int i = 0; i < constant.length; i++) {
+      if (classFile[offset + i] != constant[i]) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  // Modified UTF-8: the null character takes two bytes and each half of a surrogate pair is
+  // encoded on its own.
+  private static byte[] modifiedUtf8(String s) {
+    byte[] bytes = new byte[s.length() * 3];
+    int length = 0;
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if (c >= 0x01 && c <= 0x7f) {
+        bytes[length++] = (byte) c;
+      } else if (c <= 0x7ff) {
+        bytes[length++] = (byte) (0xc0 | (c >> 6));
+        bytes[length++] = (byte) (0x80 | (c & 0x3f));
+      } else {
+        bytes[length++] = (byte) (0xe0 | (c >> 12));
+        bytes[length++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+        bytes[length++] = (byte) (0x80 | (c & 0x3f));
+      }
+    }
+
+    return Arrays.copyOf(bytes, length);
+  }
+}
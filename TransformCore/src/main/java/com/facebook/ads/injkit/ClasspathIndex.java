@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.ads.injkit;
+
+import com.facebook.ads.injkit.model.ClassFileIndex;
+import com.facebook.infer.annotation.Nullsafe;
+import com.google.common.base.Preconditions;
+import com.google.common.io.ByteStreams;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import javax.annotation.Nullable;
+import org.objectweb.asm.ClassReader;
+
+// Index of the classes in a list of files, built without parsing any class. Class names in zips
+// are taken from the entry names in the central directory. Loose class files have no such name,
+// so they are read once to find it. When several files have the same class, the first one wins,
+// as when the files are scanned in order. Zips stay open until the index is closed.
+@Nullsafe(Nullsafe.Mode.LOCAL)
+class ClasspathIndex implements ClassFileIndex, Closeable {
+  private static final String CLASS_SUFFIX = ".class";
+
+  private final List<ZipFile> zips = new ArrayList<>();
+  private final Map<String, Location> locations = new HashMap<>();
+
+  ClasspathIndex(List<File> files) throws IOException {
+    try {
+      for (File file : files) {
+        if (ZipRecursionHandler.isZip(file)) {
+          addZip(file);
+        } else if (file.isFile()) {
+          addClassFile(file);
+        }
+      }
+    } catch (IOException | RuntimeException e) {
+      close();
+      throw e;
+    }
+  }
+
+  private void addZip(File file) throws IOException {
+    ZipFile zip = new ZipFile(file);
+    zips.add(zip);
+    Enumeration<? extends ZipEntry> entries = zip.entries();
+    while (entries.hasMoreElements()) {
+      ZipEntry entry = entries.nextElement();
+      String name = entry.getName();
+      if (!entry.isDirectory() && name.endsWith(CLASS_SUFFIX)) {
+        locations.putIfAbsent(
+            name.substring(0, name.length() - CLASS_SUFFIX.length()), new Location(zip, entry));
+      }
+    }
+  }
+
+  private void addClassFile(File file) throws IOException {
+    String iName;
+    try (FileInputStream input = new FileInputStream(file);
+        ClassFileDetectorStream cfds = new ClassFileDetectorStream(file.getName(), input)) {
+      if (!cfds.isClass()) {
+        return;
+      }
+
+      iName = new ClassReader(cfds).getClassName();
+    } catch (IllegalArgumentException e) {
+      throw new IOException(
+          String.format(Locale.US, "Failed to read class file '%s'", file.getAbsolutePath()), e);
+    }
+
+    locations.putIfAbsent(iName, new Location(file));
+  }
+
+  @Override
+  @Nullable
+  public byte[] find(String iName) throws IOException {
+    Location location = locations.get(iName);
+    if (location == null) {
+      return null;
+    }
+
+    return location.read();
+  }
+
+  @Override
+  public void close() throws IOException {
+    IOException failure = null;
+    for (ZipFile zip : zips) {
+      try {
+        zip.close();
+      } catch (IOException e) {
+        if (failure == null) {
+          failure = e;
+        }
+      }
+    }
+
+    zips.clear();
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  private static class Location {
+    @Nullable private final ZipFile zip;
+    @Nullable private final ZipEntry entry;
+    @Nullable private final File file;
+
+    Location(ZipFile zip, ZipEntry entry) {
+      this.zip = zip;
+      this.entry = entry;
+      this.file = null;
+    }
+
+    Location(File file) {
+      this.zip = null;
+      this.entry = null;
+      this.file = file;
+    }
+
+    byte[] read() throws IOException {
+      if (zip != null && entry != null) {
+        // ZipFile allows reading several entries concurrently.
+        try (InputStream input = zip.getInputStream(entry)) {
+          return ByteStreams.toByteArray(input);
+        }
+      }
+
+      return Files.readAllBytes(Preconditions.checkNotNull(file).toPath());
+    }
+  }
+}
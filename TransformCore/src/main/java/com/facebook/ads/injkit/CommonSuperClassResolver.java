@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.ads.injkit;
+
+import com.facebook.ads.injkit.model.Model;
+import com.facebook.infer.annotation.Nullsafe;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Answers the common super class queries ClassWriter makes when computing frames. Types whose
+// whole hierarchy is in the model are resolved from it, so no class is loaded for them; other
+// types fall back to loading the classes. ClassWriter asks for the same pairs over and over, so
+// answers are memoized.
+@Nullsafe(Nullsafe.Mode.LOCAL)
+class CommonSuperClassResolver {
+  private static final String OBJECT_INAME = "java/lang/Object";
+
+  private final Model model;
+  private final ClassLoader classLoader;
+  private final Map<String, String> cache = new ConcurrentHashMap<>();
+
+  CommonSuperClassResolver(Model model, ClassLoader classLoader) {
+    this.model = model;
+    this.classLoader = classLoader;
+  }
+
+  String getCommonSuperClass(String type1, String type2) {
+    // ';' cannot appear in internal names.
+    return cache.computeIfAbsent(type1 + ";" + type2, __ -> resolve(type1, type2));
+  }
+
+  private String resolve(String type1, String type2) {
+    Set<String> closure1 = model.hierarchicalClosure(type1);
+    Set<String> closure2 = model.hierarchicalClosure(type2);
+    if (!isFullyKnown(closure1) || !isFullyKnown(closure2)) {
+      return resolveByLoading(type1, type2);
+    }
+
+    if (closure2.contains(type1)) {
+      return type1;
+    }
+
+    if (closure1.contains(type2)) {
+      return type2;
+    }
+
+    if (model.isInterface(type1) || model.isInterface(type2)) {
+      return OBJECT_INAME;
+    }
+
+    String superIName = type1;
+    do {
+      superIName = model.superClassOf(superIName);
+    } while (!closure2.contains(superIName));
+
+    return superIName;
+  }
+
+  // java/lang/Object is only in the model when the system path is processed, but nothing about
+  // it is needed to resolve queries.
+  private boolean isFullyKnown(Set<String> closure) {
+    for (String iName : closure) {
+      if (!iName.equals(OBJECT_INAME) && !model.knowsClass(iName)) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  private String resolveByLoading(String type1, String type2) {
+    Class<?> class1;
+    try {
+      class1 = classLoader.loadClass(AsmNameUtils.classInternalNameToJavaName(type1));
+    } catch (Exception e) {
+      throw new TypeNotPresentException(type1, e);
+    }
+    Class<?> class2;
+    try {
+      class2 = classLoader.loadClass(AsmNameUtils.classInternalNameToJavaName(type2));
+    } catch (Exception e) {
+      throw new TypeNotPresentException(type2, e);
+    }
+    if (class1.isAssignableFrom(class2)) {
+      return type1;
+    }
+    if (class2.isAssignableFrom(class1)) {
+      return type2;
+    }
+    if (class1.isInterface() || class2.isInterface()) {
+      return OBJECT_INAME;
+    } else {
+      do {
+        // NULLSAFE_FIXME[Not Vetted Third-Party]
+        class1 = class1.getSuperclass();
+      } while (!class1.isAssignableFrom(class2));
+
+      return AsmNameUtils.classJavaNameToInternalName(class1.getName());
+    }
+  }
+}
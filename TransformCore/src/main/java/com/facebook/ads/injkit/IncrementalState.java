@@ -0,0 +1,465 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.ads.injkit;
+
+import com.facebook.ads.injkit.model.ClassFingerprints;
+import com.facebook.ads.injkit.model.Model;
+import com.facebook.infer.annotation.Nullsafe;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.Nullable;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+// What a previous run produced for each input. An input does not need to be processed again if
+// its content, its output and the model data of every class it contains (including the classes
+// in their hierarchical closure, see ClassFingerprints) are unchanged, and so are the hierarchies
+// of the types its code uses, which frames are computed from. Any change to the configuration or
+// to the system path and classpath files invalidates everything, as those can change the output
+// of any class.
+//
+// Inputs transformed in place are found rewritten by the next run, so their classes are hashed
+// as rewritten rather than as this run's model knows them.
+@Nullsafe(Nullsafe.Mode.LOCAL)
+class IncrementalState {
+  private static final int VERSION = 2;
+
+  private final String environment;
+  private final Model model;
+  // Entries from the previous run, keyed by canonical input path.
+  private final Map<String, Entry> previous;
+  // Entries for inputs that are up to date or were processed successfully in this run. Inputs
+  // that are not in this run are forgotten.
+  private final Map<String, Entry> current = new HashMap<>();
+  // Entries for inputs processed in this run. Their context hashes are only computed when the
+  // state is stored, once every input transformed in place has been rewritten.
+  private final Map<String, Entry> processed = new HashMap<>();
+  // Classes of the inputs transformed in place in this run, as rewritten.
+  private final Model rewritten;
+  // Hierarchy hashes of types, as this run's model knows them.
+  private final Map<String, String> hierarchyHashes = new ConcurrentHashMap<>();
+
+  private IncrementalState(String environment, Model model, Map<String, Entry> previous) {
+    this.environment = environment;
+    this.model = model;
+    this.previous = previous;
+    this.rewritten = ClassFingerprints.newReplacements(model);
+  }
+
+  // Loads the state of the previous run. If there is no state, it cannot be read or it was
+  // created in a different environment, every input is processed.
+  static IncrementalState load(File stateFile, String environment, Model model) {
+    Map<String, Entry> entries = new HashMap<>();
+    if (stateFile.isFile()) {
+      try (DataInputStream input =
+          new DataInputStream(new BufferedInputStream(new FileInputStream(stateFile)))) {
+        if (input.readInt() == VERSION && input.readUTF().equals(environment)) {
+          int count = input.readInt();
+          for (int i = 0; i < count; i++) {
+            Entry entry = Entry.read(input);
+            entries.put(entry.inputPath, entry);
+          }
+        }
+      } catch (IOException e) {
+        // A damaged state only means everything is processed again.
+        entries.clear();
+      }
+    }
+
+    return new IncrementalState(environment, model, entries);
+  }
+
+  static String environmentFingerprint(File configurationFile, List<File> dependencies)
+      throws IOException {
+    Hasher hasher = Hashing.sha256().newHasher();
+    hasher.putString(contentHash(configurationFile), StandardCharsets.UTF_8);
+    for (File dependency : dependencies) {
+      String path = dependency.getCanonicalPath();
+      hasher.putInt(path.length());
+      hasher.putString(path, StandardCharsets.UTF_8);
+      hasher.putLong(dependency.length());
+      hasher.putLong(dependency.lastModified());
+    }
+
+    return hasher.hash().toString();
+  }
+
+  // Checks whether the pair can be skipped. Up to date pairs are kept in the state.
+  boolean isUpToDate(FilePair pair) throws IOException {
+    String inputPath = pair.getInput().getCanonicalPath();
+    Entry entry = previous.get(inputPath);
+    if (entry == null
+        || !entry.outputPath.equals(pair.getOutput().getCanonicalPath())
+        || !entry.output.matches(pair.getOutput())) {
+      return false;
+    }
+
+    if (!entry.input.matches(pair.getInput())) {
+      // The file was touched or rewritten, maybe with the same content.
+      if (entry.input.size != pair.getInput().length()
+          || !entry.inputContentHash.equals(contentHash(pair.getInput()))) {
+        return false;
+      }
+    }
+
+    if (!entry.contextHash.equals(contextHash(entry, null, hierarchyHashes))) {
+      return false;
+    }
+
+    synchronized (current) {
+      current.put(inputPath, entry);
+    }
+
+    return true;
+  }
+
+  // Records that the pair was processed. Must be called after the output has been written.
+  void record(FilePair pair) throws IOException {
+    String inputPath = pair.getInput().getCanonicalPath();
+    String outputPath = pair.getOutput().getCanonicalPath();
+    // When transforming in place, the input now has the transformed content, which is what the
+    // next run will find if the file is not rebuilt.
+    ClassesScan scan =
+        ClassesScan.of(pair.getOutput(), inputPath.equals(outputPath) ? rewritten : null);
+    Entry entry =
+        new Entry(
+            inputPath,
+            outputPath,
+            new FileStamp(pair.getInput()),
+            contentHash(pair.getInput()),
+            new FileStamp(pair.getOutput()),
+            scan.classes,
+            new ArrayList<>(scan.usedTypes),
+            "");
+    synchronized (current) {
+      processed.put(inputPath, entry);
+    }
+  }
+
+  void store(File stateFile) throws IOException {
+    File parent = stateFile.getAbsoluteFile().getParentFile();
+    if (parent != null && !parent.mkdirs() && !parent.isDirectory()) {
+      throw new IOException(
+          String.format(Locale.US, "Failed to create directory '%s'", parent.getPath()));
+    }
+
+    File temporary = File.createTempFile("state", ".tmp", parent);
+    try {
+      try (DataOutputStream output =
+          new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)))) {
+        output.writeInt(VERSION);
+        output.writeUTF(environment);
+        synchronized (current) {
+          Map<String, String> rewrittenHierarchyHashes = new HashMap<>();
+          for (Entry entry : processed.values()) {
+            current.put(
+                entry.inputPath,
+                entry.withContextHash(contextHash(entry, rewritten, rewrittenHierarchyHashes)));
+          }
+
+          processed.clear();
+          output.writeInt(current.size());
+          for (Entry entry : current.values()) {
+            entry.write(output);
+          }
+        }
+      }
+
+      Files.move(
+          temporary.toPath(),
+          stateFile.toPath(),
+          StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(temporary.toPath());
+    }
+  }
+
+  private String contextHash(
+      Entry entry, @Nullable Model replacements, Map<String, String> hierarchyHashes) {
+    Hasher hasher = Hashing.sha256().newHasher();
+    for (String iName : entry.classes) {
+      hasher.putString(
+          replacements == null
+              ? ClassFingerprints.of(model, iName)
+              : ClassFingerprints.of(model, replacements, iName),
+          StandardCharsets.UTF_8);
+    }
+
+    for (String iName : entry.usedTypes) {
+      hasher.putString(
+          hierarchyHashes.computeIfAbsent(
+              iName, __ -> ClassFingerprints.ofHierarchy(model, replacements, iName)),
+          StandardCharsets.UTF_8);
+    }
+
+    return hasher.hash().toString();
+  }
+
+  private static String contentHash(File file) throws IOException {
+    return com.google.common.io.Files.asByteSource(file).hash(Hashing.sha256()).toString();
+  }
+
+  // The classes in a file and the types their code uses.
+  private static class ClassesScan extends ClassVisitor {
+    private final List<String> classes = new ArrayList<>();
+    private final Set<String> usedTypes = new TreeSet<>();
+    @Nullable private final Model rewritten;
+
+    private ClassesScan(@Nullable Model rewritten) {
+      super(Opcodes.ASM9);
+      this.rewritten = rewritten;
+    }
+
+    // If rewritten is given, the classes are also added to it.
+    static ClassesScan of(File file, @Nullable Model rewritten) throws IOException {
+      ClassesScan scan = new ClassesScan(rewritten);
+      try {
+        ZipRecursionHandler.handle(
+            file,
+            new ZipRecursionHandler.FileConsumer() {
+              @Override
+              public void consumeFile(boolean isClass, InputStream input) throws IOException {
+                if (isClass) {
+                  scan.read(input);
+                }
+              }
+
+              @Override
+              public void consumeZip(ZipRecursionHandler.ZipHandler handler)
+                  throws IOException, AnnotationProcessingException {
+                handler.handleZip(
+                    (path, isClass, size, input) -> {
+                      if (isClass) {
+                        scan.read(input);
+                      }
+                    });
+              }
+            });
+      } catch (AnnotationProcessingException e) {
+        // The consumers above never throw it.
+        throw new IOException(e);
+      }
+
+      return scan;
+    }
+
+    private void read(InputStream input) throws IOException {
+      ClassReader reader = new ClassReader(input);
+      classes.add(reader.getClassName());
+      reader.accept(this, ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+      if (rewritten != null) {
+        rewritten.update(reader);
+      }
+    }
+
+    // Types of constants other than classes, such as strings, come from the system path, which
+    // is part of the environment.
+    private void addType(Type type) {
+      if (type.getSort() == Type.ARRAY) {
+        type = type.getElementType();
+      }
+
+      if (type.getSort() == Type.OBJECT) {
+        usedTypes.add(type.getInternalName());
+      }
+    }
+
+    private void addMethodTypes(String desc) {
+      for (Type argumentType : Type.getArgumentTypes(desc)) {
+        addType(argumentType);
+      }
+
+      addType(Type.getReturnType(desc));
+    }
+
+    @Override
+    public MethodVisitor visitMethod(
+        int access,
+        String name,
+        String descriptor,
+        @Nullable String signature,
+        @Nullable String[] exceptions) {
+      addMethodTypes(descriptor);
+      return new MethodVisitor(Opcodes.ASM9) {
+        @Override
+        public void visitTypeInsn(int opcode, String type) {
+          addType(Type.getObjectType(type));
+        }
+
+        @Override
+        public void visitFieldInsn(int opcode, String owner, String name, String descriptor) {
+          addType(Type.getObjectType(owner));
+          addType(Type.getType(descriptor));
+        }
+
+        @Override
+        public void visitMethodInsn(
+            int opcode, String owner, String name, String descriptor, boolean isInterface) {
+          addType(Type.getObjectType(owner));
+          addMethodTypes(descriptor);
+        }
+
+        @Override
+        public void visitInvokeDynamicInsn(
+            String name, String descriptor, Handle bootstrapMethodHandle, Object... arguments) {
+          addMethodTypes(descriptor);
+        }
+
+        @Override
+        public void visitLdcInsn(Object value) {
+          if (value instanceof Type && ((Type) value).getSort() != Type.METHOD) {
+            addType((Type) value);
+          }
+        }
+
+        @Override
+        public void visitMultiANewArrayInsn(String descriptor, int numDimensions) {
+          addType(Type.getType(descriptor));
+        }
+
+        @Override
+        public void visitTryCatchBlock(
+            Label start, Label end, Label handler, @Nullable String type) {
+          if (type != null) {
+            addType(Type.getObjectType(type));
+          }
+        }
+      };
+    }
+  }
+
+  private static class FileStamp {
+    private final long size;
+    private final long lastModified;
+
+    FileStamp(File file) {
+      this(file.length(), file.lastModified());
+    }
+
+    FileStamp(long size, long lastModified) {
+      this.size = size;
+      this.lastModified = lastModified;
+    }
+
+    boolean matches(File file) {
+      return file.isFile() && file.length() == size && file.lastModified() == lastModified;
+    }
+  }
+
+  private static class Entry {
+    private final String inputPath;
+    private final String outputPath;
+    private final FileStamp input;
+    private final String inputContentHash;
+    private final FileStamp output;
+    private final List<String> classes;
+    // Types used by the code of the classes, whose common super classes frames may need.
+    private final List<String> usedTypes;
+    private final String contextHash;
+
+    Entry(
+        String inputPath,
+        String outputPath,
+        FileStamp input,
+        String inputContentHash,
+        FileStamp output,
+        List<String> classes,
+        List<String> usedTypes,
+        String contextHash) {
+      this.inputPath = inputPath;
+      this.outputPath = outputPath;
+      this.input = input;
+      this.inputContentHash = inputContentHash;
+      this.output = output;
+      this.classes = classes;
+      this.usedTypes = usedTypes;
+      this.contextHash = contextHash;
+    }
+
+    Entry withContextHash(String contextHash) {
+      return new Entry(
+          inputPath, outputPath, input, inputContentHash, output, classes, usedTypes, contextHash);
+    }
+
+    void write(DataOutputStream output) throws IOException {
+      output.writeUTF(inputPath);
+      output.writeUTF(outputPath);
+      output.writeLong(input.size);
+      output.writeLong(input.lastModified);
+      output.writeUTF(inputContentHash);
+      output.writeLong(this.output.size);
+      output.writeLong(this.output.lastModified);
+      writeNames(output, classes);
+      writeNames(output, usedTypes);
+      output.writeUTF(contextHash);
+    }
+
+    static Entry read(DataInputStream input) throws IOException {
+      String inputPath = input.readUTF();
+      String outputPath = input.readUTF();
+      FileStamp inputStamp = new FileStamp(input.readLong(), input.readLong());
+      String inputContentHash = input.readUTF();
+      FileStamp outputStamp = new FileStamp(input.readLong(), input.readLong());
+      List<String> classes = readNames(input);
+      List<String> usedTypes = readNames(input);
+      return new Entry(
+          inputPath,
+          outputPath,
+          inputStamp,
+          inputContentHash,
+          outputStamp,
+          classes,
+          usedTypes,
+          input.readUTF());
+    }
+
+    private static void writeNames(DataOutputStream output, List<String> names)
+        throws IOException {
+      output.writeInt(names.size());
+      for (String name : names) {
+        output.writeUTF(name);
+      }
+    }
+
+    private static List<String> readNames(DataInputStream input) throws IOException {
+      int count = input.readInt();
+      List<String> names = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+        names.add(input.readUTF());
+      }
+
+      return names;
+    }
+  }
+}
@@ -10,6 +10,16 @@ package com.facebook.ads.injkit;
 import com.facebook.ads.injkit.model.Model;
 import org.objectweb.asm.tree.ClassNode;
 
+// Injectors are made once and shared by all threads processing classes, so anything they keep
+// between classes must be safe to use concurrently.
 public interface Injector {
-  void process(ClassNode clsNode, Model model) throws AnnotationProcessingException;
+  // Returns whether the class node was changed. Classes no injector changes are written with
+  // their original bytes.
+  boolean process(ClassNode clsNode, Model model) throws AnnotationProcessingException;
+
+  // The classes the injector may change. Classes outside the interest of every injector are not
+  // parsed nor given to process. Injectors that do not tell are given every class.
+  default InjectorInterest getInterest() {
+    return InjectorInterest.everything();
+  }
 }
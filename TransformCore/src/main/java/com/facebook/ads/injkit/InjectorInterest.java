@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.ads.injkit;
+
+import com.facebook.infer.annotation.Nullsafe;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+// The classes an injector may change. A class is of interest if it refers to one of the
+// annotation descriptors or method names anywhere in its constant pool, if it or one of its
+// ancestors uses one of the annotations, or if one of the supertypes is in its hierarchy. Classes
+// no injector is interested in are written as they were read, without being parsed.
+@Nullsafe(Nullsafe.Mode.LOCAL)
+public final class InjectorInterest {
+  private static final InjectorInterest EVERYTHING =
+      new InjectorInterest(
+          true, Collections.emptySet(), Collections.emptySet(), Collections.emptySet());
+  private static final InjectorInterest NOTHING =
+      new InjectorInterest(
+          false, Collections.emptySet(), Collections.emptySet(), Collections.emptySet());
+
+  private final boolean everything;
+  private final Set<String> annotationDescs;
+  private final Set<String> supertypes;
+  private final Set<String> methodNames;
+
+  private InjectorInterest(
+      boolean everything,
+      Set<String> annotationDescs,
+      Set<String> supertypes,
+      Set<String> methodNames) {
+    this.everything = everything;
+    this.annotationDescs = annotationDescs;
+    this.supertypes = supertypes;
+    this.methodNames = methodNames;
+  }
+
+  public static InjectorInterest everything() {
+    return EVERYTHING;
+  }
+
+  public static InjectorInterest nothing() {
+    return NOTHING;
+  }
+
+  // Supertypes are internal names.
+  public static InjectorInterest of(
+      Collection<String> annotationDescs,
+      Collection<String> supertypes,
+      Collection<String> methodNames) {
+    return new InjectorInterest(
+        false,
+        Collections.unmodifiableSet(new HashSet<>(annotationDescs)),
+        Collections.unmodifiableSet(new HashSet<>(supertypes)),
+        Collections.unmodifiableSet(new HashSet<>(methodNames)));
+  }
+
+  public static InjectorInterest annotations(Collection<String> annotationDescs) {
+    return of(annotationDescs, Collections.emptySet(), Collections.emptySet());
+  }
+
+  boolean isEverything() {
+    return everything;
+  }
+
+  Set<String> getAnnotationDescs() {
+    return annotationDescs;
+  }
+
+  Set<String> getSupertypes() {
+    return supertypes;
+  }
+
+  Set<String> getMethodNames() {
+    return methodNames;
+  }
+}
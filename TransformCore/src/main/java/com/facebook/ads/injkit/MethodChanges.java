@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.ads.injkit;
+
+import com.facebook.infer.annotation.Nullsafe;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.IincInsnNode;
+import org.objectweb.asm.tree.IntInsnNode;
+import org.objectweb.asm.tree.InvokeDynamicInsnNode;
+import org.objectweb.asm.tree.JumpInsnNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.LookupSwitchInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.MultiANewArrayInsnNode;
+import org.objectweb.asm.tree.TableSwitchInsnNode;
+import org.objectweb.asm.tree.TryCatchBlockNode;
+import org.objectweb.asm.tree.TypeInsnNode;
+import org.objectweb.asm.tree.VarInsnNode;
+
+// Records the code of the methods of a class before injectors run, to find the methods whose
+// frames have to be computed again afterwards. A method is changed if it was added, if
+// instructions or try/catch blocks were added to it, removed from it or replaced, if the
+// opcode or operands of an instruction were edited in place, such as the owner of a call, or if
+// its descriptor or whether it is static changed, since both set the locals its frames start
+// with. Renaming a method does not change its frames, so those methods are not reported.
+@Nullsafe(Nullsafe.Mode.LOCAL)
+class MethodChanges {
+  private final Map<MethodNode, CodeSnapshot> snapshots = new IdentityHashMap<>();
+
+  private MethodChanges() {}
+
+  static MethodChanges record(ClassNode node) {
+    MethodChanges changes = new MethodChanges();
+    for (MethodNode method : node.methods) {
+      changes.snapshots.put(method, new CodeSnapshot(method));
+    }
+
+    return changes;
+  }
+
+  // Changed methods, in the order of the class.
+  List<MethodNode> changedMethods(ClassNode node) {
+    List<MethodNode> changed = new ArrayList<>();
+    for (MethodNode method : node.methods) {
+      CodeSnapshot snapshot = snapshots.get(method);
+      if (snapshot == null || !snapshot.matches(method)) {
+        changed.add(method);
+      }
+    }
+
+    return changed;
+  }
+
+  private static class CodeSnapshot {
+    private final String desc;
+    private final boolean isStatic;
+    private final AbstractInsnNode[] instructions;
+    private final List<Object>[] operands;
+    private final List<Object>[] tryCatchBlocks;
+
+    CodeSnapshot(MethodNode method) {
+      desc = method.desc;
+      isStatic = (method.access & Opcodes.ACC_STATIC) != 0;
+      instructions = method.instructions.toArray();
+      operands = operandsOf(instructions);
+      tryCatchBlocks = tryCatchBlocksOf(method);
+    }
+
+    boolean matches(MethodNode method) {
+      if (!method.desc.equals(desc)
+          || ((method.access & Opcodes.ACC_STATIC) != 0) != isStatic
+          || method.instructions.size() != instructions.length
+          || !Arrays.equals(tryCatchBlocksOf(method), tryCatchBlocks)) {
+        return false;
+      }
+
+      int i = 0;
+      for (AbstractInsnNode instruction : method.instructions) {
+        if (instruction != instructions[i] || !operandsOf(instruction).equals(operands[i])) {
+          return false;
+        }
+
+        i++;
+      }
+
+      return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Object>[] operandsOf(AbstractInsnNode[] instructions) {
+      List<Object>[] operands = new List[instructions.length];
+      for (int i = 0; i < instructions.length; i++) {
+        operands[i] = operandsOf(instructions[i]);
+      }
+
+      return operands;
+    }
+
+    // The opcode and the operands of an instruction, so edits made in place are seen. Labels are
+    // compared by identity.
+    private static List<Object> operandsOf(AbstractInsnNode instruction) {
+      int opcode = instruction.getOpcode();
+      switch (instruction.getType()) {
+        case AbstractInsnNode.INT_INSN:
+          return Arrays.asList(opcode, ((IntInsnNode) instruction).operand);
+        case AbstractInsnNode.VAR_INSN:
+          return Arrays.asList(opcode, ((VarInsnNode) instruction).var);
+        case AbstractInsnNode.TYPE_INSN:
+          return Arrays.asList(opcode, ((TypeInsnNode) instruction).desc);
+        case AbstractInsnNode.FIELD_INSN:
+          FieldInsnNode field = (FieldInsnNode) instruction;
+          return Arrays.asList(opcode, field.owner, field.name, field.desc);
+        case AbstractInsnNode.METHOD_INSN:
+          MethodInsnNode method = (MethodInsnNode) instruction;
+          return Arrays.asList(opcode, method.owner, method.name, method.desc, method.itf);
+        case AbstractInsnNode.INVOKE_DYNAMIC_INSN:
+          InvokeDynamicInsnNode dynamic = (InvokeDynamicInsnNode) instruction;
+          return Arrays.asList(
+              opcode,
+              dynamic.name,
+              dynamic.desc,
+              dynamic.bsm,
+              Arrays.asList(dynamic.bsmArgs.clone()));
+        case AbstractInsnNode.JUMP_INSN:
+          return Arrays.asList(opcode, ((JumpInsnNode) instruction).label);
+        case AbstractInsnNode.LDC_INSN:
+          return Arrays.asList(opcode, ((LdcInsnNode) instruction).cst);
+        case AbstractInsnNode.IINC_INSN:
+          IincInsnNode iinc = (IincInsnNode) instruction;
+          return Arrays.asList(opcode, iinc.var, iinc.incr);
+        case AbstractInsnNode.TABLESWITCH_INSN:
+          TableSwitchInsnNode table = (TableSwitchInsnNode) instruction;
+          return Arrays.asList(
+              opcode, table.min, table.max, table.dflt, new ArrayList<>(table.labels));
+        case AbstractInsnNode.LOOKUPSWITCH_INSN:
+          LookupSwitchInsnNode lookup = (LookupSwitchInsnNode) instruction;
+          return Arrays.asList(
+              opcode, new ArrayList<>(lookup.keys), lookup.dflt, new ArrayList<>(lookup.labels));
+        case AbstractInsnNode.MULTIANEWARRAY_INSN:
+          MultiANewArrayInsnNode array = (MultiANewArrayInsnNode) instruction;
+          return Arrays.asList(opcode, array.desc, array.dims);
+        default:
+          return Collections.singletonList(opcode);
+      }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Object>[] tryCatchBlocksOf(MethodNode method) {
+      if (method.tryCatchBlocks == null) {
+        return new List[0];
+      }
+
+      List<Object>[] blocks = new List[method.tryCatchBlocks.size()];
+      int i = 0;
+      for (TryCatchBlockNode block : method.tryCatchBlocks) {
+        blocks[i++] = Arrays.asList(block.start, block.end, block.handler, block.type);
+      }
+
+      return blocks;
+    }
+  }
+}
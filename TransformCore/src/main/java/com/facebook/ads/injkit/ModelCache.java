@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.ads.injkit;
+
+import com.facebook.ads.injkit.model.Model;
+import com.facebook.ads.injkit.model.ModelFactory;
+import com.facebook.ads.injkit.model.ModelSnapshots;
+import com.facebook.infer.annotation.Nullsafe;
+import com.google.common.hash.Hashing;
+import com.google.common.io.CountingInputStream;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Locale;
+import javax.annotation.Nullable;
+
+// Directory of model snapshots for files that rarely change between runs, such as the platform
+// jar and library dependencies. There is one snapshot per file path. A snapshot is used if the
+// file still has the size recorded with it and either the same modification time or, failing
+// that, the same content. In the latter case, the new modification time is recorded.
+@Nullsafe(Nullsafe.Mode.LOCAL)
+class ModelCache {
+  private static final int HEADER_VERSION = 1;
+
+  private final File directory;
+
+  ModelCache(File directory) {
+    this.directory = directory;
+  }
+
+  // Returns a model with the classes in the file, or null if there is no usable snapshot.
+  @Nullable
+  Model load(File file) throws IOException {
+    File snapshot = snapshotFile(file);
+    if (!snapshot.isFile()) {
+      return null;
+    }
+
+    long fileLastModified = file.lastModified();
+    long lastModifiedOffset;
+    boolean touched;
+    Model model = ModelFactory.defaultFactory().make();
+    try (CountingInputStream counting =
+            new CountingInputStream(new BufferedInputStream(new FileInputStream(snapshot)));
+        DataInputStream input = new DataInputStream(counting)) {
+      if (input.readInt() != HEADER_VERSION
+          || !input.readUTF().equals(file.getCanonicalPath())
+          || input.readLong() != file.length()) {
+        return null;
+      }
+
+      lastModifiedOffset = counting.getCount();
+      long lastModified = input.readLong();
+      String contentHash = input.readUTF();
+      touched = lastModified != fileLastModified;
+      if (touched && !contentHash.equals(contentHash(file))) {
+        return null;
+      }
+
+      ModelSnapshots.read(input, model);
+    } catch (IOException e) {
+      // A truncated or otherwise unreadable snapshot is simply rebuilt.
+      return null;
+    }
+
+    if (touched) {
+      updateLastModified(snapshot, lastModifiedOffset, fileLastModified);
+    }
+
+    return model;
+  }
+
+  // Records the modification time of a file whose content did not change, so that it is not
+  // hashed again on the next runs. Only the time is written, in place: a concurrent run reading
+  // the snapshot at worst sees a time that does not match and hashes the file.
+  private static void updateLastModified(File snapshot, long offset, long lastModified) {
+    try (RandomAccessFile output = new RandomAccessFile(snapshot, "rw")) {
+      output.seek(offset);
+      output.writeLong(lastModified);
+    } catch (IOException e) {
+      // The snapshot is still usable, the file is just hashed again on the next run.
+    }
+  }
+
+  void store(File file, List<Model> models) throws IOException {
+    if (!directory.mkdirs() && !directory.isDirectory()) {
+      throw new IOException(
+          String.format(
+              Locale.US, "Failed to create model cache directory '%s'", directory.getPath()));
+    }
+
+    // Snapshots are written to a temporary file first so that concurrent runs sharing the cache
+    // never see partial snapshots.
+    File temporary = File.createTempFile("snapshot", ".tmp", directory);
+    try {
+      try (DataOutputStream output =
+          new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)))) {
+        output.writeInt(HEADER_VERSION);
+        output.writeUTF(file.getCanonicalPath());
+        output.writeLong(file.length());
+        output.writeLong(file.lastModified());
+        output.writeUTF(contentHash(file));
+        ModelSnapshots.write(models, output);
+      }
+
+      Files.move(
+          temporary.toPath(),
+          snapshotFile(file).toPath(),
+          StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(temporary.toPath());
+    }
+  }
+
+  private File snapshotFile(File file) throws IOException {
+    String name =
+        Hashing.sha256().hashString(file.getCanonicalPath(), StandardCharsets.UTF_8).toString();
+    return new File(directory, name + ".model");
+  }
+
+  static String contentHash(File file) throws IOException {
+    return com.google.common.io.Files.asByteSource(file).hash(Hashing.sha256()).toString();
+  }
+}
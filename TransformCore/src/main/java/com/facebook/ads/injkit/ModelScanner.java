@@ -0,0 +1,393 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.ads.injkit;
+
+import com.facebook.ads.injkit.model.Model;
+import com.facebook.ads.injkit.model.ModelFactory;
+import com.facebook.infer.annotation.Nullsafe;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import javax.annotation.Nullable;
+
+// Feeds every class in a list of files to the model. With parallelism enabled, files are read
+// concurrently and their classes are parsed in chunks, each into its own staging model. Staging
+// models are merged into the target model in file and entry order, so the model ends up exactly
+// as a serial scan would leave it: the first definition of a class wins.
+//
+// Dependencies, unlike inputs, are not expected to change between runs. If a model cache is
+// configured, dependency jars are loaded from their snapshots instead of being parsed.
+@Nullsafe(Nullsafe.Mode.LOCAL)
+class ModelScanner {
+  // Class files parsed together into one staging model.
+  private static final int CHUNK_CLASSES = 256;
+  private static final int CHUNK_BYTES = 1024 * 1024;
+
+  // Upper bound on the bytes of class files read but not merged into the model yet.
+  private static final int MAX_PENDING_BYTES = 64 * 1024 * 1024;
+
+  // Ends the chunks of a file. It is only compared, never completed.
+  private static final Future<Chunk> END_OF_FILE = new CompletableFuture<>();
+
+  private final ClassFileProcessor classFileProcessor;
+  private final ProcessingOptions options;
+  @Nullable private final ModelCache cache;
+
+  ModelScanner(ClassFileProcessor classFileProcessor, ProcessingOptions options) {
+    this.classFileProcessor = classFileProcessor;
+    this.options = options;
+    File cacheDirectory = options.getModelCacheDirectory();
+    this.cache = cacheDirectory == null ? null : new ModelCache(cacheDirectory);
+  }
+
+  void scan(List<File> dependencies, List<File> inputs, Model model)
+      throws IOException, AnnotationProcessingException {
+    scan(dependencies, inputs, Collections.emptyMap(), model);
+  }
+
+  // Same as scan(List, List, Model), but the dependencies with a preloaded model, such as those a
+  // platform snapshot was made from, are not read: their models are merged at their position.
+  void scan(
+      List<File> dependencies, List<File> inputs, Map<File, Model> preloaded, Model model)
+      throws IOException, AnnotationProcessingException {
+    List<File> files = new ArrayList<>(dependencies);
+    files.addAll(inputs);
+    Set<File> cacheable = new HashSet<>();
+    if (cache != null) {
+      for (File dependency : dependencies) {
+        if (ZipRecursionHandler.isZip(dependency)) {
+          cacheable.add(dependency);
+        }
+      }
+    }
+
+    if (options.getParallelism() > 1 && !files.isEmpty()) {
+      scanInParallel(files, cacheable, preloaded, model);
+      return;
+    }
+
+    for (File file : files) {
+      Model preloadedModel = preloaded.get(file);
+      if (preloadedModel != null) {
+        model.updateFrom(preloadedModel);
+        continue;
+      }
+
+      ModelCache fileCache = cacheable.contains(file) ? cache : null;
+      if (fileCache == null) {
+        forEachClass(file, input -> classFileProcessor.updateModel(input, model));
+        continue;
+      }
+
+      Model fileModel = fileCache.load(file);
+      if (fileModel == null) {
+        Model parsed = ModelFactory.defaultFactory().make();
+        forEachClass(file, input -> classFileProcessor.updateModel(input, parsed));
+        fileCache.store(file, Collections.singletonList(parsed));
+        fileModel = parsed;
+      }
+
+      model.updateFrom(fileModel);
+    }
+  }
+
+  private void scanInParallel(
+      List<File> files, Set<File> cacheable, Map<File, Model> preloaded, Model model)
+      throws IOException, AnnotationProcessingException {
+    ExecutorService readers =
+        Executors.newFixedThreadPool(
+            Math.min(options.getParallelism(), files.size()),
+            new ThreadFactoryBuilder()
+                .setNameFormat("injkit-scan-read-%d")
+                .setDaemon(true)
+                .build());
+    ExecutorService parsers =
+        Executors.newFixedThreadPool(
+            options.getParallelism(),
+            new ThreadFactoryBuilder().setNameFormat("injkit-scan-%d").setDaemon(true).build());
+    PendingBytes pendingBytes = new PendingBytes(files.size());
+    try {
+      List<FileScan> fileScans = new ArrayList<>();
+      for (int i = 0; i < files.size(); i++) {
+        File file = files.get(i);
+        Model preloadedModel = preloaded.get(file);
+        FileScan fileScan = new FileScan();
+        if (preloadedModel == null) {
+          int fileIndex = i;
+          fileScan.reading =
+              readers.submit(
+                  () -> {
+                    scanFile(
+                        fileIndex, file, cacheable.contains(file), parsers, pendingBytes, fileScan);
+                    return null;
+                  });
+        } else {
+          fileScan.chunks.add(Futures.immediateFuture(new Chunk(preloadedModel, 0)));
+          fileScan.chunks.add(END_OF_FILE);
+        }
+
+        fileScans.add(fileScan);
+      }
+
+      for (int i = 0; i < files.size(); i++) {
+        pendingBytes.startMerging(i);
+        FileScan fileScan = fileScans.get(i);
+        List<Model> chunkModels = new ArrayList<>();
+        int chunkModelsBytes = 0;
+        for (Future<Chunk> chunkResult = take(fileScan);
+            chunkResult != END_OF_FILE;
+            chunkResult = take(fileScan)) {
+          Chunk chunk = await(chunkResult);
+          model.updateFrom(chunk.model);
+          pendingBytes.merged();
+          // Chunks to be cached are kept until the whole file is merged, and so are their bytes.
+          if (fileScan.cacheToUpdate == null) {
+            pendingBytes.release(chunk.bytes);
+          } else {
+            chunkModels.add(chunk.model);
+            chunkModelsBytes += chunk.bytes;
+          }
+        }
+
+        await(fileScan.reading);
+        ModelCache fileCache = fileScan.cacheToUpdate;
+        if (fileCache != null) {
+          fileCache.store(files.get(i), chunkModels);
+          pendingBytes.release(chunkModelsBytes);
+        }
+      }
+    } finally {
+      readers.shutdownNow();
+      parsers.shutdownNow();
+    }
+  }
+
+  private static Future<Chunk> take(FileScan fileScan) throws IOException {
+    try {
+      return fileScan.chunks.take();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while updating model", e);
+    }
+  }
+
+  // Runs on a reader thread, like readChunks.
+  private void scanFile(
+      int fileIndex,
+      File file,
+      boolean cacheable,
+      ExecutorService parsers,
+      PendingBytes pendingBytes,
+      FileScan fileScan)
+      throws IOException, AnnotationProcessingException {
+    try {
+      ModelCache fileCache = cacheable ? cache : null;
+      if (fileCache != null) {
+        Model cached = fileCache.load(file);
+        if (cached != null) {
+          fileScan.chunks.add(Futures.immediateFuture(new Chunk(cached, 0)));
+          return;
+        }
+      }
+
+      fileScan.cacheToUpdate = fileCache;
+      readChunks(fileIndex, file, parsers, pendingBytes, fileScan);
+    } finally {
+      fileScan.chunks.add(END_OF_FILE);
+    }
+  }
+
+  // Runs on a reader thread. Parsing is handed over to the parsers so that a single large jar
+  // still keeps every core busy. Chunks are handed over to the merging thread as they are
+  // submitted.
+  private void readChunks(
+      int fileIndex,
+      File file,
+      ExecutorService parsers,
+      PendingBytes pendingBytes,
+      FileScan fileScan)
+      throws IOException, AnnotationProcessingException {
+    List<byte[]> chunk = new ArrayList<>();
+    int[] chunkBytes = new int[1];
+    forEachClass(
+        file,
+        input -> {
+          byte[] data = ByteStreams.toByteArray(input);
+          chunk.add(data);
+          chunkBytes[0] += data.length;
+          if (chunk.size() >= CHUNK_CLASSES || chunkBytes[0] >= CHUNK_BYTES) {
+            fileScan.chunks.add(
+                submitChunk(
+                    fileIndex, new ArrayList<>(chunk), chunkBytes[0], parsers, pendingBytes));
+            chunk.clear();
+            chunkBytes[0] = 0;
+          }
+        });
+
+    if (!chunk.isEmpty()) {
+      fileScan.chunks.add(submitChunk(fileIndex, chunk, chunkBytes[0], parsers, pendingBytes));
+    }
+  }
+
+  // The bytes of the chunk stay acquired until the merging thread releases them.
+  private Future<Chunk> submitChunk(
+      int fileIndex,
+      List<byte[]> classes,
+      int bytes,
+      ExecutorService parsers,
+      PendingBytes pendingBytes)
+      throws IOException {
+    try {
+      pendingBytes.acquire(fileIndex, bytes);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while reading class files", e);
+    }
+
+    return parsers.submit(
+        () -> {
+          Model staging = ModelFactory.defaultFactory().make();
+          for (byte[] data : classes) {
+            classFileProcessor.updateModel(new ByteArrayInputStream(data), staging);
+          }
+
+          return new Chunk(staging, bytes);
+        });
+  }
+
+  private static <T> T await(Future<T> result) throws IOException, AnnotationProcessingException {
+    try {
+      return result.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while updating model", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof AnnotationProcessingException) {
+        throw (AnnotationProcessingException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+
+      throw new IOException("Error updating model", cause);
+    }
+  }
+
+  static void forEachClass(File file, ClassConsumer consumer)
+      throws IOException, AnnotationProcessingException {
+    ZipRecursionHandler.handle(
+        file,
+        new ZipRecursionHandler.FileConsumer() {
+          @Override
+          public void consumeFile(boolean isClass, InputStream input)
+              throws IOException, AnnotationProcessingException {
+            if (isClass) {
+              consumer.consumeClass(input);
+            }
+          }
+
+          @Override
+          public void consumeZip(ZipRecursionHandler.ZipHandler handler)
+              throws IOException, AnnotationProcessingException {
+            handler.handleZip(
+                (String path, boolean isClass, long size, InputStream input) -> {
+                  if (isClass) {
+                    consumer.consumeClass(input);
+                  }
+                });
+          }
+        });
+  }
+
+  // The chunks of a file, in entry order and ended by END_OF_FILE.
+  private static class FileScan {
+    private final BlockingQueue<Future<Chunk>> chunks = new LinkedBlockingQueue<>();
+    // Fails if reading the file failed.
+    private Future<?> reading = Futures.immediateFuture(null);
+    // Cache to store the parsed chunks in, if the file is cacheable but was not cached.
+    @Nullable private volatile ModelCache cacheToUpdate;
+  }
+
+  private static class Chunk {
+    private final Model model;
+    // Bytes of class files the model was parsed from, acquired from PendingBytes.
+    private final int bytes;
+
+    Chunk(Model model, int bytes) {
+      this.model = model;
+      this.bytes = bytes;
+    }
+  }
+
+  // Bounds the bytes of class files read but whose models are not merged yet. Readers of later
+  // files wait for the bytes to be released, but the reader of the file being merged only waits
+  // if one of its own chunks is still to be merged: it would otherwise wait for later files that
+  // cannot be merged before it. The bound may thus be exceeded by one chunk.
+  private static class PendingBytes {
+    private final int[] acquiredChunks;
+    private long available = MAX_PENDING_BYTES;
+    private int mergingFile;
+    private int mergedChunks;
+
+    PendingBytes(int files) {
+      acquiredChunks = new int[files];
+    }
+
+    synchronized void acquire(int file, int bytes) throws InterruptedException {
+      while (available < bytes
+          && (file != mergingFile || acquiredChunks[file] > mergedChunks)) {
+        wait();
+      }
+
+      available -= bytes;
+      acquiredChunks[file]++;
+    }
+
+    synchronized void startMerging(int file) {
+      mergingFile = file;
+      mergedChunks = 0;
+      notifyAll();
+    }
+
+    synchronized void merged() {
+      mergedChunks++;
+      notifyAll();
+    }
+
+    synchronized void release(int bytes) {
+      available += bytes;
+      notifyAll();
+    }
+  }
+
+  @FunctionalInterface
+  interface ClassConsumer {
+    void consumeClass(InputStream input) throws IOException, AnnotationProcessingException;
+  }
+}
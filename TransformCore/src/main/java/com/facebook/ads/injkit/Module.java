@@ -7,8 +7,18 @@
 
 package com.facebook.ads.injkit;
 
+import java.util.Collection;
+import javax.annotation.Nullable;
+
 public interface Module<ConfigurationT> {
   ConfigurationParser<ConfigurationT> makeConfigurationParser();
 
   InjectorFactory<ConfigurationT> makeInjectorFactory();
+
+  // Names of the annotation classes whose uses the module's injectors look up in the model. The
+  // model drops every other annotation. Null, the default, makes the model keep all of them.
+  @Nullable
+  default Collection<String> getModelAnnotationClasses(ConfigurationT configuration) {
+    return null;
+  }
 }
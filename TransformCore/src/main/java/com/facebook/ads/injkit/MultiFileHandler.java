@@ -7,56 +7,134 @@
 
 package com.facebook.ads.injkit;
 
-import com.facebook.ads.injkit.model.Model;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.io.IOException;
-import java.net.URLClassLoader;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.annotation.Nullable;
 
 class MultiFileHandler {
   private final List<SingleFileHandler> fileHandlers;
+  private final ProcessingOptions options;
 
   MultiFileHandler(
-      List<FilePair> files,
-      AnnotationProcessorConfiguration configuration,
-      URLClassLoader classpath,
-      Model model,
-      ClassFileProcessorFactory classFileProcessorFactory)
-      throws InvalidAnnotationProcessorConfigurationException {
+      List<FilePair> files, ClassFileProcessor classFileProcessor, ProcessingOptions options) {
     fileHandlers = new ArrayList<>();
     for (FilePair filePair : files) {
       for (FilePair ioPair : filePair.expandIfDirectory()) {
-        fileHandlers.add(
-            new SingleFileHandler(
-                ioPair, configuration, classpath, model, classFileProcessorFactory));
+        fileHandlers.add(new SingleFileHandler(ioPair, classFileProcessor, options));
       }
     }
+
+    this.options = options;
   }
 
-  public void process() throws IOException, AnnotationProcessingException {
-    List<String> errors = new ArrayList<>();
-    IOException first = null;
+  // If there is an incremental state, files that are up to date are skipped and files that are
+  // processed successfully are recorded in it.
+  public void process(@Nullable IncrementalState state)
+      throws IOException, AnnotationProcessingException {
+    List<SingleFileHandler> outdated = fileHandlers;
+    if (state != null) {
+      outdated = new ArrayList<>();
+      for (SingleFileHandler fileHandler : fileHandlers) {
+        if (!state.isUpToDate(fileHandler.getInputOutputPair())) {
+          outdated.add(fileHandler);
+        }
+      }
+    }
+
+    if (options.getParallelism() > 1 && outdated.size() > 1) {
+      processInParallel(outdated, state);
+      return;
+    }
 
-    for (SingleFileHandler fileHandler : fileHandlers) {
+    List<IOException> errors = new ArrayList<>();
+    for (SingleFileHandler fileHandler : outdated) {
       try {
-        fileHandler.process();
+        processFile(fileHandler, state);
       } catch (IOException e) {
-        errors.add(e.getMessage());
-        if (first == null) {
-          first = e;
+        errors.add(e);
+      }
+    }
+
+    throwIfErrors(errors);
+  }
+
+  // The class file processor is shared and thread-safe, and the model is only read while
+  // files are processed, so handlers can safely run concurrently. Results are inspected in
+  // input order so errors are reported exactly as a serial run would report them.
+  private void processInParallel(
+      List<SingleFileHandler> handlers, @Nullable IncrementalState state)
+      throws IOException, AnnotationProcessingException {
+    ExecutorService executor =
+        Executors.newFixedThreadPool(
+            Math.min(options.getParallelism(), handlers.size()),
+            new ThreadFactoryBuilder().setNameFormat("injkit-file-%d").setDaemon(true).build());
+    try {
+      List<Future<?>> results = new ArrayList<>();
+      for (SingleFileHandler fileHandler : handlers) {
+        results.add(
+            executor.submit(
+                () -> {
+                  processFile(fileHandler, state);
+                  return null;
+                }));
+      }
+
+      List<IOException> errors = new ArrayList<>();
+      for (Future<?> result : results) {
+        try {
+          result.get();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IOException("Interrupted while running annotation processor", e);
+        } catch (ExecutionException e) {
+          Throwable cause = e.getCause();
+          if (cause instanceof IOException) {
+            errors.add((IOException) cause);
+          } else if (cause instanceof AnnotationProcessingException) {
+            throw (AnnotationProcessingException) cause;
+          } else if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+          } else if (cause instanceof Error) {
+            throw (Error) cause;
+          } else {
+            throw new IOException("Error running annotation processor", cause);
+          }
         }
       }
+
+      throwIfErrors(errors);
+    } finally {
+      executor.shutdownNow();
     }
+  }
 
-    if (!errors.isEmpty()) {
-      StringBuilder sb = new StringBuilder();
-      errors.forEach(
-          e -> {
-            sb.append(System.lineSeparator());
-            sb.append(e);
-          });
+  private static void processFile(
+      SingleFileHandler fileHandler, @Nullable IncrementalState state)
+      throws IOException, AnnotationProcessingException {
+    fileHandler.process();
+    if (state != null) {
+      state.record(fileHandler.getInputOutputPair());
+    }
+  }
 
-      throw new IOException("Error running annotation processor:" + sb.toString(), first);
+  private static void throwIfErrors(List<IOException> errors) throws IOException {
+    if (errors.isEmpty()) {
+      return;
     }
+
+    StringBuilder sb = new StringBuilder();
+    errors.forEach(
+        e -> {
+          sb.append(System.lineSeparator());
+          sb.append(e.getMessage());
+        });
+
+    throw new IOException("Error running annotation processor:" + sb.toString(), errors.get(0));
   }
 }
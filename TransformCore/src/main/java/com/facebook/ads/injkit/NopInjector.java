@@ -9,15 +9,32 @@ package com.facebook.ads.injkit;
 
 import com.facebook.ads.injkit.model.Model;
 import com.facebook.infer.annotation.Nullsafe;
+import javax.annotation.Nullable;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.tree.ClassNode;
 
 @Nullsafe(Nullsafe.Mode.LOCAL)
-public class NopInjector extends BaseInjector {
+public class NopInjector extends BaseInjector implements StreamingInjector {
 
   public NopInjector() {
     super((__) -> true);
   }
 
   @Override
-  protected void processImpl(ClassNode clsNode, Model model) throws AnnotationProcessingException {}
+  public InjectorInterest getInterest() {
+    return InjectorInterest.nothing();
+  }
+
+  @Override
+  @Nullable
+  protected ClassPass startClassImpl(ClassNode clsNode, ClassContext context) {
+    return null;
+  }
+
+  @Override
+  @Nullable
+  public StreamingClassVisitor makeVisitor(ClassReader reader, Model model, ClassVisitor next) {
+    return null;
+  }
 }
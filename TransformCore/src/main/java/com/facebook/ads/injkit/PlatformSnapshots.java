@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.ads.injkit;
+
+import com.facebook.ads.injkit.model.Model;
+import com.facebook.ads.injkit.model.ModelFactory;
+import com.facebook.ads.injkit.model.ModelSnapshots;
+import com.facebook.infer.annotation.Nullsafe;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import org.objectweb.asm.ClassReader;
+
+// Prebuilt model snapshots of platform jars, such as android-all or a JDK, whose classes never
+// change for a given version. A snapshot is written once and then loaded into the model at the
+// start of every run instead of parsing the jar. Unlike the model cache, snapshots are not tied
+// to a path: the jar a snapshot was made from is recognized by its size and content, wherever it
+// is, and its classes are then taken from the snapshot instead of scanning it. The paths of the
+// files recognized are kept next to the snapshot with their modification time, so that their
+// content is only hashed again once they are modified.
+@Nullsafe(Nullsafe.Mode.LOCAL)
+public final class PlatformSnapshots {
+  private static final int MAGIC = 0x494e4a50;
+  private static final int VERSION = 1;
+
+  private PlatformSnapshots() {}
+
+  // Writes a snapshot of every class in the jar. All annotations are kept, so the snapshot can
+  // be used with any configuration.
+  public static void write(File platformJar, File snapshot)
+      throws IOException, AnnotationProcessingException {
+    Model model = ModelFactory.defaultFactory().make();
+    ModelScanner.forEachClass(platformJar, input -> model.update(new ClassReader(input)));
+
+    try (DataOutputStream output =
+        new DataOutputStream(new BufferedOutputStream(new FileOutputStream(snapshot)))) {
+      output.writeInt(MAGIC);
+      output.writeInt(VERSION);
+      output.writeUTF(platformJar.getName());
+      output.writeLong(platformJar.length());
+      output.writeUTF(ModelCache.contentHash(platformJar));
+      ModelSnapshots.write(Collections.singletonList(model), output);
+    }
+  }
+
+  // Reads the classes in the snapshot into the model, which keeps the classes it already knows.
+  static Source read(File snapshot, Model model) throws IOException {
+    try (DataInputStream input =
+        new DataInputStream(new BufferedInputStream(new FileInputStream(snapshot)))) {
+      if (input.readInt() != MAGIC) {
+        throw new IOException(
+            String.format(Locale.US, "'%s' is not a platform snapshot", snapshot.getPath()));
+      }
+
+      int version = input.readInt();
+      if (version != VERSION) {
+        throw new IOException(
+            String.format(
+                Locale.US,
+                "Platform snapshot '%s' has unsupported version %d, write it again",
+                snapshot.getPath(),
+                version));
+      }
+
+      // The name of the jar is only there for people looking at the snapshot.
+      input.readUTF();
+      Source source = new Source(snapshot, input.readLong(), input.readUTF());
+      ModelSnapshots.read(input, model);
+      return source;
+    }
+  }
+
+  // The jar a snapshot was written from.
+  static class Source {
+    private final File knownSourcesFile;
+    private final long length;
+    private final String contentHash;
+    // Modification times of the files found to be the source, by canonical path.
+    private final Map<String, Long> knownSources = new HashMap<>();
+    private boolean knownSourcesChanged;
+
+    Source(File snapshot, long length, String contentHash) {
+      this.knownSourcesFile = new File(snapshot.getPath() + ".sources");
+      this.length = length;
+      this.contentHash = contentHash;
+      readKnownSources();
+    }
+
+    // The content is only hashed if the size matches and the file was not found to be the source
+    // with the same modification time before, so that checking the other files on the path is
+    // cheap.
+    boolean isSourceOf(File file) throws IOException {
+      if (file.length() != length) {
+        return false;
+      }
+
+      String path = file.getCanonicalPath();
+      long lastModified = file.lastModified();
+      Long knownLastModified = knownSources.get(path);
+      if (knownLastModified != null && knownLastModified == lastModified) {
+        return true;
+      }
+
+      if (!ModelCache.contentHash(file).equals(contentHash)) {
+        return false;
+      }
+
+      knownSources.put(path, lastModified);
+      knownSourcesChanged = true;
+      return true;
+    }
+
+    // Keeps the files found to be the source for later runs.
+    void storeKnownSources() {
+      if (!knownSourcesChanged) {
+        return;
+      }
+
+      File parent = knownSourcesFile.getAbsoluteFile().getParentFile();
+      try {
+        File temporary = File.createTempFile("sources", ".tmp", parent);
+        try {
+          try (DataOutputStream output =
+              new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)))) {
+            output.writeUTF(contentHash);
+            output.writeInt(knownSources.size());
+            for (Map.Entry<String, Long> entry : knownSources.entrySet()) {
+              output.writeUTF(entry.getKey());
+              output.writeLong(entry.getValue());
+            }
+          }
+
+          Files.move(
+              temporary.toPath(),
+              knownSourcesFile.toPath(),
+              StandardCopyOption.REPLACE_EXISTING,
+              StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+          Files.deleteIfExists(temporary.toPath());
+        }
+
+        knownSourcesChanged = false;
+      } catch (IOException e) {
+        // Snapshots may be somewhere that cannot be written to, which only means the files are
+        // hashed again.
+      }
+    }
+
+    private void readKnownSources() {
+      if (!knownSourcesFile.isFile()) {
+        return;
+      }
+
+      try (DataInputStream input =
+          new DataInputStream(new BufferedInputStream(new FileInputStream(knownSourcesFile)))) {
+        // Files known for a different jar are of no use once the snapshot is written again.
+        if (!input.readUTF().equals(contentHash)) {
+          return;
+        }
+
+        int count = input.readInt();
+        for (int i = 0; i < count; i++) {
+          knownSources.put(input.readUTF(), input.readLong());
+        }
+      } catch (IOException e) {
+        // Unreadable known sources only mean the files are hashed again.
+        knownSources.clear();
+      }
+    }
+  }
+}
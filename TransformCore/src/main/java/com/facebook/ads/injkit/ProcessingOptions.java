@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.ads.injkit;
+
+import com.facebook.infer.annotation.Nullsafe;
+import java.io.File;
+import javax.annotation.Nullable;
+
+// Execution settings that affect how inputs are processed, but not what the output is.
+@Nullsafe(Nullsafe.Mode.LOCAL)
+class ProcessingOptions {
+  static final long DEFAULT_ZIP_PIPELINE_MAX_IN_FLIGHT_BYTES = 64L * 1024 * 1024;
+
+  private final int parallelism;
+  private final int zipPipelineThreads;
+  private final long zipPipelineMaxInFlightBytes;
+  @Nullable private final File modelCacheDirectory;
+  @Nullable private final File incrementalStateFile;
+  private final boolean lazyModel;
+
+  ProcessingOptions(
+      int parallelism,
+      int zipPipelineThreads,
+      long zipPipelineMaxInFlightBytes,
+      @Nullable File modelCacheDirectory,
+      @Nullable File incrementalStateFile,
+      boolean lazyModel) {
+    this.parallelism = parallelism;
+    this.zipPipelineThreads = zipPipelineThreads;
+    this.zipPipelineMaxInFlightBytes = zipPipelineMaxInFlightBytes;
+    this.modelCacheDirectory = modelCacheDirectory;
+    this.incrementalStateFile = incrementalStateFile;
+    this.lazyModel = lazyModel;
+  }
+
+  int getParallelism() {
+    return parallelism;
+  }
+
+  boolean isZipPipelineEnabled() {
+    return zipPipelineThreads > 0;
+  }
+
+  int getZipPipelineThreads() {
+    return zipPipelineThreads;
+  }
+
+  long getZipPipelineMaxInFlightBytes() {
+    return zipPipelineMaxInFlightBytes;
+  }
+
+  @Nullable
+  File getModelCacheDirectory() {
+    return modelCacheDirectory;
+  }
+
+  @Nullable
+  File getIncrementalStateFile() {
+    return incrementalStateFile;
+  }
+
+  boolean isLazyModel() {
+    return lazyModel;
+  }
+}
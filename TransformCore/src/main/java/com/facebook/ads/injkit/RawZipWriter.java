@@ -0,0 +1,253 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.ads.injkit;
+
+import com.facebook.infer.annotation.Nullsafe;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+// Writes a zip made of entries of another zip. Entries can either be copied with their original
+// compressed data, which is transferred between the file channels without being inflated, or
+// be replaced by new content, which is deflated. Entry names, times and attributes are always
+// those of the original entry.
+@Nullsafe(Nullsafe.Mode.LOCAL)
+class RawZipWriter {
+  private static final int VERSION_DEFLATED = 20;
+  private static final long MAX_OFFSET = 0xffffffffL;
+
+  private final FileChannel input;
+  private final FileChannel output;
+  private final List<CentralRecord> records = new ArrayList<>();
+  private long position;
+
+  RawZipWriter(FileChannel input, FileChannel output) {
+    this.input = input;
+    this.output = output;
+  }
+
+  void copy(ZipCentralDirectory.Entry entry) throws IOException {
+    ZipCentralDirectory.LocalHeader localHeader = entry.readLocalHeader(input);
+    // Sizes are known, so any data descriptor after the data is not copied.
+    int flags = entry.getFlags() & ~ZipCentralDirectory.FLAG_DATA_DESCRIPTOR;
+    long offset =
+        writeLocalHeader(
+            entry,
+            entry.getVersionNeeded(),
+            flags,
+            entry.getMethod(),
+            entry.getCrc(),
+            entry.getCompressedSize(),
+            entry.getSize(),
+            localHeader.getExtra());
+
+    long transferred = 0;
+    while (transferred < entry.getCompressedSize()) {
+      long count =
+          input.transferTo(
+              localHeader.getDataOffset() + transferred,
+              entry.getCompressedSize() - transferred,
+              output);
+      if (count <= 0) {
+        throw new IOException("Unexpected end of zip file");
+      }
+
+      transferred += count;
+    }
+
+    position += entry.getCompressedSize();
+    records.add(
+        new CentralRecord(
+            entry,
+            entry.getVersionNeeded(),
+            flags,
+            entry.getMethod(),
+            entry.getCrc(),
+            entry.getCompressedSize(),
+            entry.getSize(),
+            offset));
+  }
+
+  void replace(ZipCentralDirectory.Entry entry, byte[] data) throws IOException {
+    replace(entry, data, data.length);
+  }
+
+  // Replaces the entry with the first length bytes of data.
+  void replace(ZipCentralDirectory.Entry entry, byte[] data, int length) throws IOException {
+    CRC32 crc = new CRC32();
+    crc.update(data, 0, length);
+    Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream(length / 2 + 64);
+    try (DeflaterOutputStream deflating = new DeflaterOutputStream(compressed, deflater)) {
+      deflating.write(data, 0, length);
+    } finally {
+      deflater.end();
+    }
+
+    int flags = entry.getFlags() & ZipCentralDirectory.FLAG_UTF8;
+    long offset =
+        writeLocalHeader(
+            entry,
+            VERSION_DEFLATED,
+            flags,
+            ZipCentralDirectory.METHOD_DEFLATED,
+            crc.getValue(),
+            compressed.size(),
+            length,
+            new byte[0]);
+    write(ByteBuffer.wrap(compressed.toByteArray()));
+    records.add(
+        new CentralRecord(
+            entry,
+            VERSION_DEFLATED,
+            flags,
+            ZipCentralDirectory.METHOD_DEFLATED,
+            crc.getValue(),
+            compressed.size(),
+            length,
+            offset));
+  }
+
+  // Writes the central directory after the entries. The channels are not closed.
+  void finish() throws IOException {
+    long directoryOffset = position;
+    for (CentralRecord record : records) {
+      ZipCentralDirectory.Entry entry = record.entry;
+      ByteBuffer header =
+          newBuffer(
+              ZipCentralDirectory.CENTRAL_HEADER_SIZE
+                  + entry.getRawName().length
+                  + entry.getExtra().length
+                  + entry.getComment().length);
+      header.putInt(ZipCentralDirectory.CENTRAL_HEADER_SIGNATURE);
+      header.putShort((short) entry.getVersionMadeBy());
+      header.putShort((short) record.versionNeeded);
+      header.putShort((short) record.flags);
+      header.putShort((short) record.method);
+      header.putShort((short) entry.getTime());
+      header.putShort((short) entry.getDate());
+      header.putInt((int) record.crc);
+      header.putInt((int) record.compressedSize);
+      header.putInt((int) record.size);
+      header.putShort((short) entry.getRawName().length);
+      header.putShort((short) entry.getExtra().length);
+      header.putShort((short) entry.getComment().length);
+      header.putShort((short) 0);
+      header.putShort((short) entry.getInternalAttributes());
+      header.putInt((int) entry.getExternalAttributes());
+      header.putInt((int) record.localHeaderOffset);
+      header.put(entry.getRawName());
+      header.put(entry.getExtra());
+      header.put(entry.getComment());
+      header.flip();
+      write(header);
+    }
+
+    long directorySize = position - directoryOffset;
+    checkOffset(position);
+    ByteBuffer end = newBuffer(ZipCentralDirectory.END_OF_CENTRAL_DIRECTORY_SIZE);
+    end.putInt(ZipCentralDirectory.END_OF_CENTRAL_DIRECTORY_SIGNATURE);
+    end.putShort((short) 0);
+    end.putShort((short) 0);
+    end.putShort((short) records.size());
+    end.putShort((short) records.size());
+    end.putInt((int) directorySize);
+    end.putInt((int) directoryOffset);
+    end.putShort((short) 0);
+    end.flip();
+    write(end);
+  }
+
+  // Returns the offset of the header.
+  private long writeLocalHeader(
+      ZipCentralDirectory.Entry entry,
+      int versionNeeded,
+      int flags,
+      int method,
+      long crc,
+      long compressedSize,
+      long size,
+      byte[] extra)
+      throws IOException {
+    long offset = position;
+    byte[] name = entry.getRawName();
+    checkOffset(offset + ZipCentralDirectory.LOCAL_HEADER_SIZE + name.length + compressedSize);
+    ByteBuffer header =
+        newBuffer(ZipCentralDirectory.LOCAL_HEADER_SIZE + name.length + extra.length);
+    header.putInt(ZipCentralDirectory.LOCAL_HEADER_SIGNATURE);
+    header.putShort((short) versionNeeded);
+    header.putShort((short) flags);
+    header.putShort((short) method);
+    header.putShort((short) entry.getTime());
+    header.putShort((short) entry.getDate());
+    header.putInt((int) crc);
+    header.putInt((int) compressedSize);
+    header.putInt((int) size);
+    header.putShort((short) name.length);
+    header.putShort((short) extra.length);
+    header.put(name);
+    header.put(extra);
+    header.flip();
+    write(header);
+    return offset;
+  }
+
+  private void write(ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      position += output.write(buffer);
+    }
+  }
+
+  private static void checkOffset(long offset) throws IOException {
+    // The zips read by ZipCentralDirectory have no zip64 records, so neither do the zips written.
+    if (offset > MAX_OFFSET) {
+      throw new IOException("Zip output exceeds 4GB");
+    }
+  }
+
+  private static ByteBuffer newBuffer(int size) {
+    return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  private static class CentralRecord {
+    private final ZipCentralDirectory.Entry entry;
+    private final int versionNeeded;
+    private final int flags;
+    private final int method;
+    private final long crc;
+    private final long compressedSize;
+    private final long size;
+    private final long localHeaderOffset;
+
+    CentralRecord(
+        ZipCentralDirectory.Entry entry,
+        int versionNeeded,
+        int flags,
+        int method,
+        long crc,
+        long compressedSize,
+        long size,
+        long localHeaderOffset) {
+      this.entry = entry;
+      this.versionNeeded = versionNeeded;
+      this.flags = flags;
+      this.method = method;
+      this.crc = crc;
+      this.compressedSize = compressedSize;
+      this.size = size;
+      this.localHeaderOffset = localHeaderOffset;
+    }
+  }
+}
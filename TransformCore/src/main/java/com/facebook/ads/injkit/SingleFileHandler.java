@@ -7,40 +7,45 @@
 
 package com.facebook.ads.injkit;
 
-import com.facebook.ads.injkit.model.Model;
 import com.facebook.infer.annotation.Nullsafe;
 import com.google.common.base.Preconditions;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.net.URLClassLoader;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.Locale;
+import java.util.Map;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
+import javax.annotation.Nullable;
 
 @Nullsafe(Nullsafe.Mode.LOCAL)
 class SingleFileHandler {
   private final FilePair inputOutputPair;
   private final ClassFileProcessor classFileProcessor;
+  private final ProcessingOptions options;
 
   SingleFileHandler(
-      FilePair inputOutputPair,
-      AnnotationProcessorConfiguration configuration,
-      URLClassLoader classpath,
-      Model model,
-      ClassFileProcessorFactory classFileProcessorFactory)
-      throws InvalidAnnotationProcessorConfigurationException {
+      FilePair inputOutputPair, ClassFileProcessor classFileProcessor, ProcessingOptions options) {
     this.inputOutputPair = inputOutputPair;
-    this.classFileProcessor = classFileProcessorFactory.make(configuration, classpath, model);
+    this.classFileProcessor = classFileProcessor;
+    this.options = options;
+  }
+
+  FilePair getInputOutputPair() {
+    return inputOutputPair;
   }
 
   public void process() throws IOException, AnnotationProcessingException {
     File parent = inputOutputPair.getOutput().getParentFile();
-    if (!Preconditions.checkNotNull(parent).isDirectory() && !parent.mkdirs()) {
+    // Check the directory after mkdirs() fails as another handler may be creating it concurrently.
+    if (!Preconditions.checkNotNull(parent).mkdirs() && !parent.isDirectory()) {
       throw new IOException(
           String.format(
               Locale.US,
@@ -64,9 +69,17 @@ class SingleFileHandler {
             } else {
               // Transform to memory because if destination is the same as source, streaming
               // won't work.
-              ByteArrayOutputStream outputBytes = new ByteArrayOutputStream();
-              transform(inputOutputPair.getInput().getCanonicalPath(), input, outputBytes);
-              Files.write(inputOutputPair.getOutput().toPath(), outputBytes.toByteArray());
+              BufferPool buffers = BufferPool.get();
+              int length = buffers.read(input, inputOutputPair.getInput().length());
+              BufferPool.Output outputBytes = buffers.output();
+              transform(
+                  inputOutputPair.getInput().getCanonicalPath(),
+                  buffers.getInput(),
+                  length,
+                  outputBytes);
+              try (FileOutputStream output = new FileOutputStream(inputOutputPair.getOutput())) {
+                outputBytes.writeTo(output);
+              }
             }
           }
 
@@ -89,34 +102,213 @@ class SingleFileHandler {
 
   private void handleConsumeZip(ZipRecursionHandler.ZipHandler handler, File zipOutput)
       throws IOException, AnnotationProcessingException {
+    if (handleConsumeZipRaw(zipOutput)) {
+      return;
+    }
+
     try (FileOutputStream fileOutput = new FileOutputStream(zipOutput);
         ZipOutputStream zipOutputStream = new ZipOutputStream(fileOutput)) {
+      if (options.isZipPipelineEnabled()) {
+        handleConsumeZipPipelined(handler, zipOutputStream);
+        return;
+      }
+
       handler.handleZip(
-          (String path, boolean isClass, InputStream input) -> {
+          (String path, boolean isClass, long size, InputStream input) -> {
             ZipEntry nextOutputEntry = new ZipEntry(path);
             zipOutputStream.putNextEntry(nextOutputEntry);
-
-            try {
-              transform(path, input, zipOutputStream);
-            } catch (IOException e) {
-              throw new IOException(
-                  String.format(Locale.US, "Failed to process zip entry '%s'", path), e);
-            } catch (AnnotationProcessingException e) {
-              throw new AnnotationProcessingException(
-                  String.format(Locale.US, "Failed to process zip entry '%s'", path), e);
+            if (!isClass) {
+              // Only classes are transformed, so resources do not need to be held in memory.
+              copyData(input, zipOutputStream);
+              return;
             }
+
+            BufferPool buffers = BufferPool.get();
+            int length = buffers.read(input, size);
+            transformZipEntry(path, buffers.getInput(), length, zipOutputStream);
           });
     }
   }
 
-  private void transform(String name, InputStream input, OutputStream output)
+  // Rewrites the input zip copying the compressed data of the entries that do not change, so only
+  // class files are inflated and only the classes the processor changes are deflated. Returns
+  // false without writing anything if the zip uses features the raw zip writer does not support.
+  private boolean handleConsumeZipRaw(File zipOutput)
+      throws IOException, AnnotationProcessingException {
+    File zipInput = inputOutputPair.getInput();
+    try (FileChannel input = FileChannel.open(zipInput.toPath(), StandardOpenOption.READ)) {
+      ZipCentralDirectory directory = ZipCentralDirectory.read(input);
+      if (directory == null) {
+        return false;
+      }
+
+      // As in ZipRecursionHandler, only the first of several entries with the same path is kept.
+      Map<String, ZipCentralDirectory.Entry> entries = new LinkedHashMap<>();
+      for (ZipCentralDirectory.Entry entry : directory.getEntries()) {
+        entries.putIfAbsent(entry.getName(), entry);
+      }
+
+      try (FileChannel output =
+          FileChannel.open(
+              zipOutput.toPath(),
+              StandardOpenOption.CREATE,
+              StandardOpenOption.TRUNCATE_EXISTING,
+              StandardOpenOption.WRITE)) {
+        RawZipWriter writer = new RawZipWriter(input, output);
+        try {
+          if (options.isZipPipelineEnabled()) {
+            handleConsumeZipRawPipelined(entries, input, writer);
+          } else {
+            BufferPool buffers = BufferPool.get();
+            for (ZipCentralDirectory.Entry entry : entries.values()) {
+              int length = readIfClass(entry, input, buffers);
+              BufferPool.Output transformed =
+                  length == -1
+                      ? null
+                      : transformIfChanged(entry.getName(), buffers.getInput(), length, buffers);
+              if (transformed == null) {
+                writer.copy(entry);
+              } else {
+                writer.replace(entry, transformed.getBuffer(), transformed.size());
+              }
+            }
+          }
+        } catch (IOException e) {
+          throw new IOException(
+              String.format(Locale.US, "Failed to process zip '%s'", zipInput.getAbsolutePath()),
+              e);
+        } catch (AnnotationProcessingException e) {
+          throw new AnnotationProcessingException(
+              String.format(Locale.US, "Failed to process zip '%s'", zipInput.getAbsolutePath()),
+              e);
+        }
+
+        writer.finish();
+      }
+    }
+
+    return true;
+  }
+
+  private void handleConsumeZipRawPipelined(
+      Map<String, ZipCentralDirectory.Entry> entries, FileChannel input, RawZipWriter writer)
+      throws IOException, AnnotationProcessingException {
+    try (ZipEntryPipeline pipeline =
+        new ZipEntryPipeline(
+            options.getZipPipelineThreads(),
+            options.getZipPipelineMaxInFlightBytes(),
+            (path, data) -> {
+              // The result is handed to the writer thread, so it cannot stay in the buffers of
+              // the worker.
+              BufferPool.Output transformed =
+                  transformIfChanged(path, data, data.length, BufferPool.get());
+              return transformed == null ? null : transformed.toByteArray();
+            },
+            (path, data) -> {
+              ZipCentralDirectory.Entry entry = Preconditions.checkNotNull(entries.get(path));
+              if (data == null) {
+                writer.copy(entry);
+              } else {
+                writer.replace(entry, data);
+              }
+            })) {
+      BufferPool buffers = BufferPool.get();
+      for (ZipCentralDirectory.Entry entry : entries.values()) {
+        int length = readIfClass(entry, input, buffers);
+        if (length == -1) {
+          pipeline.submitUnchanged(entry.getName());
+        } else {
+          // Entries are transformed on other threads, so each needs its own copy.
+          pipeline.submit(entry.getName(), Arrays.copyOf(buffers.getInput(), length));
+        }
+      }
+
+      pipeline.finish();
+    }
+  }
+
+  // Reads the entry into the input buffer if it is a class file and returns its length, or -1 if
+  // it can be copied as is.
+  private static int readIfClass(
+      ZipCentralDirectory.Entry entry, FileChannel input, BufferPool buffers) throws IOException {
+    if (!entry.getName().endsWith(".class")) {
+      return -1;
+    }
+
+    int length;
+    try (InputStream entryInput = entry.open(input)) {
+      length = buffers.read(entryInput, entry.getSize());
+    }
+
+    return ClassFileDetectorStream.isClass(entry.getName(), buffers.getInput(), length)
+        ? length
+        : -1;
+  }
+
+  // Returns the output buffer with the transformed entry, or null if the transformation left the
+  // entry unchanged.
+  @Nullable
+  private BufferPool.Output transformIfChanged(
+      String path, byte[] data, int length, BufferPool buffers)
+      throws IOException, AnnotationProcessingException {
+    BufferPool.Output output = buffers.output();
+    transformZipEntry(path, data, length, output);
+    return output.contentEquals(data, length) ? null : output;
+  }
+
+  // Entries are inflated here, transformed by the pipeline workers (which share the class file
+  // processor) and deflated by the pipeline writer, which keeps the original entry order.
+  private void handleConsumeZipPipelined(
+      ZipRecursionHandler.ZipHandler handler, ZipOutputStream zipOutputStream)
+      throws IOException, AnnotationProcessingException {
+    File zipInput = inputOutputPair.getInput();
+    try (ZipEntryPipeline pipeline =
+        new ZipEntryPipeline(
+            options.getZipPipelineThreads(),
+            options.getZipPipelineMaxInFlightBytes(),
+            (path, data) -> {
+              BufferPool.Output output = BufferPool.get().output();
+              transformZipEntry(path, data, data.length, output);
+              return output.toByteArray();
+            },
+            (path, data) -> {
+              zipOutputStream.putNextEntry(new ZipEntry(path));
+              zipOutputStream.write(Preconditions.checkNotNull(data));
+            })) {
+      BufferPool buffers = BufferPool.get();
+      handler.handleZip(
+          (String path, boolean isClass, long size, InputStream input) ->
+              pipeline.submit(
+                  path, Arrays.copyOf(buffers.getInput(), buffers.read(input, size))));
+      pipeline.finish();
+    } catch (IOException e) {
+      throw new IOException(
+          String.format(Locale.US, "Failed to process zip '%s'", zipInput.getAbsolutePath()), e);
+    } catch (AnnotationProcessingException e) {
+      throw new AnnotationProcessingException(
+          String.format(Locale.US, "Failed to process zip '%s'", zipInput.getAbsolutePath()), e);
+    }
+  }
+
+  private void transformZipEntry(String path, byte[] data, int length, OutputStream output)
+      throws IOException, AnnotationProcessingException {
+    try {
+      transform(path, data, length, output);
+    } catch (IOException e) {
+      throw new IOException(String.format(Locale.US, "Failed to process zip entry '%s'", path), e);
+    } catch (AnnotationProcessingException e) {
+      throw new AnnotationProcessingException(
+          String.format(Locale.US, "Failed to process zip entry '%s'", path), e);
+    }
+  }
+
+  private void transform(String name, byte[] data, int length, OutputStream output)
       throws IOException, AnnotationProcessingException {
-    ClassFileDetectorStream inputStreamWithClassDetector = new ClassFileDetectorStream(name, input);
     try {
-      if (inputStreamWithClassDetector.isClass()) {
-        transformClass(inputStreamWithClassDetector, output);
+      if (ClassFileDetectorStream.isClass(name, data, length)) {
+        classFileProcessor.process(data, length, output);
       } else {
-        copyData(inputStreamWithClassDetector, output);
+        output.write(data, 0, length);
       }
     } catch (AnnotationProcessingException e) {
       throw new AnnotationProcessingException(
@@ -126,17 +318,8 @@ class SingleFileHandler {
     }
   }
 
-  private void transformClass(InputStream input, OutputStream output)
-      throws IOException, AnnotationProcessingException {
-    classFileProcessor.process(input, output);
-  }
-
   private static void copyData(InputStream input, OutputStream output) throws IOException {
-    byte[] buffer = new byte[4096];
-    int r;
-    while ((r = input.read(buffer)) > 0) {
-      output.write(buffer, 0, r);
-    }
+    BufferPool.get().copy(input, output);
   }
 
   private static void executeActionWithTempFile(ActionWithTempFile action)
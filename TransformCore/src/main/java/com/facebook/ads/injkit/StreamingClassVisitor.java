@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.ads.injkit;
+
+import com.facebook.infer.annotation.Nullsafe;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Opcodes;
+
+// The visitor of a streaming injector. It tells whether it changed the class, as classes no
+// injector changes are written with their original bytes.
+@Nullsafe(Nullsafe.Mode.LOCAL)
+public abstract class StreamingClassVisitor extends ClassVisitor {
+  private boolean changed;
+
+  protected StreamingClassVisitor(ClassVisitor next) {
+    super(Opcodes.ASM9, next);
+  }
+
+  protected final void markChanged() {
+    changed = true;
+  }
+
+  final boolean isChanged() {
+    return changed;
+  }
+
+  // Visitors cannot throw checked exceptions. The exception thrown through the one returned here
+  // is thrown as it was by the processor.
+  protected static RuntimeException failure(AnnotationProcessingException e) {
+    return new Failure(e);
+  }
+
+  static final class Failure extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final AnnotationProcessingException exception;
+
+    private Failure(AnnotationProcessingException exception) {
+      super(exception);
+      this.exception = exception;
+    }
+
+    AnnotationProcessingException getException() {
+      return exception;
+    }
+  }
+}
@@ -0,0 +1,27 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.ads.injkit;
+
+import com.facebook.ads.injkit.model.Model;
+import com.facebook.infer.annotation.Nullsafe;
+import javax.annotation.Nullable;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+
+// An injector that can change a class while it is read, without building a tree of it. When every
+// injector streams, classes go from the reader through the visitors of the injectors straight to
+// the writer. Streaming injectors still process trees, for when they run with other injectors.
+@Nullsafe(Nullsafe.Mode.LOCAL)
+public interface StreamingInjector extends Injector {
+  // Returns the visitor that changes the class and passes it on to next, or null if the injector
+  // leaves the class alone. Only called for classes in the interest of the injector. Frames and
+  // maxs are not computed: the visitor keeps those of the methods it changes valid.
+  @Nullable
+  StreamingClassVisitor makeVisitor(ClassReader reader, Model model, ClassVisitor next)
+      throws AnnotationProcessingException;
+}
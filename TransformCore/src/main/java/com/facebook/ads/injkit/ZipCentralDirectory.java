@@ -0,0 +1,345 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.ads.injkit;
+
+import com.facebook.infer.annotation.Nullsafe;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import javax.annotation.Nullable;
+
+// Entries of a zip as listed in its central directory, with the location of their compressed
+// data so that it can be copied without inflating it. Only plain zips are supported: read
+// returns null for zips with zip64 records, encrypted entries or compression methods other than
+// stored and deflated, which are then handled through java.util.zip.
+@Nullsafe(Nullsafe.Mode.LOCAL)
+class ZipCentralDirectory {
+  static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+  static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+  static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+  static final int LOCAL_HEADER_SIZE = 30;
+  static final int CENTRAL_HEADER_SIZE = 46;
+  static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+  static final int METHOD_STORED = 0;
+  static final int METHOD_DEFLATED = 8;
+  static final int FLAG_ENCRYPTED = 0x1;
+  static final int FLAG_DATA_DESCRIPTOR = 0x8;
+  static final int FLAG_UTF8 = 0x800;
+
+  private static final int MAX_COMMENT_SIZE = 0xffff;
+
+  private final List<Entry> entries;
+
+  private ZipCentralDirectory(List<Entry> entries) {
+    this.entries = Collections.unmodifiableList(entries);
+  }
+
+  // Entries in central directory order, which is the order java.util.zip.ZipFile lists them in.
+  List<Entry> getEntries() {
+    return entries;
+  }
+
+  @Nullable
+  static ZipCentralDirectory read(FileChannel channel) throws IOException {
+    long size = channel.size();
+    int tailSize = (int) Math.min(size, END_OF_CENTRAL_DIRECTORY_SIZE + MAX_COMMENT_SIZE);
+    ByteBuffer tail = readFully(channel, size - tailSize, tailSize);
+    int end = -1;
+    for (int i = tailSize - END_OF_CENTRAL_DIRECTORY_SIZE; i >= 0; i--) {
+      if (tail.getInt(i) == END_OF_CENTRAL_DIRECTORY_SIGNATURE) {
+        end = i;
+        break;
+      }
+    }
+
+    if (end == -1) {
+      return null;
+    }
+
+    int entryCount = unsignedShort(tail, end + 10);
+    long directorySize = unsignedInt(tail, end + 12);
+    long directoryOffset = unsignedInt(tail, end + 16);
+    if (entryCount == 0xffff
+        || directorySize == 0xffffffffL
+        || directoryOffset == 0xffffffffL
+        || directoryOffset + directorySize > size) {
+      return null;
+    }
+
+    ByteBuffer directory = readFully(channel, directoryOffset, (int) directorySize);
+    List<Entry> entries = new ArrayList<>(entryCount);
+    int position = 0;
+    for (int i = 0; i < entryCount; i++) {
+      if (position + CENTRAL_HEADER_SIZE > directorySize
+          || directory.getInt(position) != CENTRAL_HEADER_SIGNATURE) {
+        return null;
+      }
+
+      int nameLength = unsignedShort(directory, position + 28);
+      int extraLength = unsignedShort(directory, position + 30);
+      int commentLength = unsignedShort(directory, position + 32);
+      int recordSize = CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+      if (position + recordSize > directorySize) {
+        return null;
+      }
+
+      Entry entry = new Entry(directory, position, nameLength, extraLength, commentLength);
+      if ((entry.flags & FLAG_ENCRYPTED) != 0
+          || (entry.method != METHOD_STORED && entry.method != METHOD_DEFLATED)
+          || entry.compressedSize == 0xffffffffL
+          || entry.size == 0xffffffffL
+          || entry.localHeaderOffset == 0xffffffffL) {
+        return null;
+      }
+
+      entries.add(entry);
+      position += recordSize;
+    }
+
+    return new ZipCentralDirectory(entries);
+  }
+
+  static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position()) == -1) {
+        throw new IOException("Unexpected end of zip file");
+      }
+    }
+
+    buffer.flip();
+    return buffer;
+  }
+
+  private static int unsignedShort(ByteBuffer buffer, int position) {
+    return buffer.getShort(position) & 0xffff;
+  }
+
+  private static long unsignedInt(ByteBuffer buffer, int position) {
+    return buffer.getInt(position) & 0xffffffffL;
+  }
+
+  static class Entry {
+    private final int versionMadeBy;
+    private final int versionNeeded;
+    private final int flags;
+    private final int method;
+    private final int time;
+    private final int date;
+    private final long crc;
+    private final long compressedSize;
+    private final long size;
+    private final int internalAttributes;
+    private final long externalAttributes;
+    private final long localHeaderOffset;
+    private final byte[] rawName;
+    private final String name;
+    private final byte[] extra;
+    private final byte[] comment;
+
+    private Entry(
+        ByteBuffer directory, int position, int nameLength, int extraLength, int commentLength) {
+      versionMadeBy = unsignedShort(directory, position + 4);
+      versionNeeded = unsignedShort(directory, position + 6);
+      flags = unsignedShort(directory, position + 8);
+      method = unsignedShort(directory, position + 10);
+      time = unsignedShort(directory, position + 12);
+      date = unsignedShort(directory, position + 14);
+      crc = unsignedInt(directory, position + 16);
+      compressedSize = unsignedInt(directory, position + 20);
+      size = unsignedInt(directory, position + 24);
+      internalAttributes = unsignedShort(directory, position + 36);
+      externalAttributes = unsignedInt(directory, position + 38);
+      localHeaderOffset = unsignedInt(directory, position + 42);
+      int variable = position + CENTRAL_HEADER_SIZE;
+      rawName = bytes(directory, variable, nameLength);
+      // java.util.zip also reads names as UTF-8 unless told otherwise.
+      name = new String(rawName, StandardCharsets.UTF_8);
+      extra = bytes(directory, variable + nameLength, extraLength);
+      comment = bytes(directory, variable + nameLength + extraLength, commentLength);
+    }
+
+    private static byte[] bytes(ByteBuffer buffer, int position, int length) {
+      byte[] bytes = new byte[length];
+      for (int i = 0; i < length; i++) {
+        bytes[i] = buffer.get(position + i);
+      }
+
+      return bytes;
+    }
+
+    String getName() {
+      return name;
+    }
+
+    byte[] getRawName() {
+      return rawName;
+    }
+
+    int getVersionMadeBy() {
+      return versionMadeBy;
+    }
+
+    int getVersionNeeded() {
+      return versionNeeded;
+    }
+
+    int getFlags() {
+      return flags;
+    }
+
+    int getMethod() {
+      return method;
+    }
+
+    int getTime() {
+      return time;
+    }
+
+    int getDate() {
+      return date;
+    }
+
+    long getCrc() {
+      return crc;
+    }
+
+    long getCompressedSize() {
+      return compressedSize;
+    }
+
+    long getSize() {
+      return size;
+    }
+
+    int getInternalAttributes() {
+      return internalAttributes;
+    }
+
+    long getExternalAttributes() {
+      return externalAttributes;
+    }
+
+    byte[] getExtra() {
+      return extra;
+    }
+
+    byte[] getComment() {
+      return comment;
+    }
+
+    // Reads the local header, which may have a different extra field than the central directory.
+    LocalHeader readLocalHeader(FileChannel channel) throws IOException {
+      ByteBuffer header = readFully(channel, localHeaderOffset, LOCAL_HEADER_SIZE);
+      if (header.getInt(0) != LOCAL_HEADER_SIGNATURE) {
+        throw new IOException(
+            String.format(Locale.US, "Invalid local header for zip entry '%s'", name));
+      }
+
+      int nameLength = unsignedShort(header, 26);
+      int extraLength = unsignedShort(header, 28);
+      long extraOffset = localHeaderOffset + LOCAL_HEADER_SIZE + nameLength;
+      byte[] localExtra = new byte[extraLength];
+      readFully(channel, extraOffset, extraLength).get(localExtra);
+      return new LocalHeader(localExtra, extraOffset + extraLength);
+    }
+
+    // Returns the uncompressed content of the entry.
+    InputStream open(FileChannel channel) throws IOException {
+      InputStream raw = new ChannelInputStream(channel, readLocalHeader(channel).dataOffset, this);
+      if (method == METHOD_STORED) {
+        return raw;
+      }
+
+      return new InflaterInputStream(raw, new Inflater(true)) {
+        @Override
+        public void close() throws IOException {
+          super.close();
+          inf.end();
+        }
+      };
+    }
+  }
+
+  static class LocalHeader {
+    private final byte[] extra;
+    private final long dataOffset;
+
+    LocalHeader(byte[] extra, long dataOffset) {
+      this.extra = extra;
+      this.dataOffset = dataOffset;
+    }
+
+    byte[] getExtra() {
+      return extra;
+    }
+
+    long getDataOffset() {
+      return dataOffset;
+    }
+  }
+
+  // Reads the compressed data of an entry with positional reads, so the channel can be shared.
+  private static class ChannelInputStream extends InputStream {
+    private final FileChannel channel;
+    private long position;
+    private final long end;
+    // The inflater may ask for one byte past the deflated data.
+    private boolean paddingRead;
+
+    ChannelInputStream(FileChannel channel, long position, Entry entry) {
+      this.channel = channel;
+      this.position = position;
+      this.end = position + entry.compressedSize;
+      this.paddingRead = entry.method == METHOD_STORED;
+    }
+
+    @Override
+    public int read() throws IOException {
+      byte[] single = new byte[1];
+      int r = read(single, 0, 1);
+      return r == -1 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+      if (length == 0) {
+        return 0;
+      }
+
+      if (position >= end) {
+        if (paddingRead) {
+          return -1;
+        }
+
+        paddingRead = true;
+        bytes[offset] = 0;
+        return 1;
+      }
+
+      int r =
+          channel.read(
+              ByteBuffer.wrap(bytes, offset, (int) Math.min(length, end - position)), position);
+      if (r == -1) {
+        throw new IOException("Unexpected end of zip file");
+      }
+
+      position += r;
+      return r;
+    }
+  }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.ads.injkit;
+
+import com.facebook.infer.annotation.Nullsafe;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import javax.annotation.Nullable;
+
+// Three stage pipeline for zip entries: the caller reads entries and submits them, a pool of
+// workers transforms them and a single writer thread emits the results in submission order.
+// Submission blocks while the bytes of submitted but not yet written entries exceed the limit.
+@Nullsafe(Nullsafe.Mode.LOCAL)
+class ZipEntryPipeline implements Closeable {
+  private final EntryTransformer transformer;
+  private final EntryWriter writer;
+  private final int maxInFlightBytes;
+  private final Semaphore inFlightBytes;
+  private final BlockingQueue<PendingEntry> pending = new LinkedBlockingQueue<>();
+  private final ExecutorService transformExecutor;
+  private final ExecutorService writeExecutor;
+  private final Future<?> writeResult;
+  private volatile boolean writeFailed;
+
+  ZipEntryPipeline(
+      int threads, long maxInFlightBytes, EntryTransformer transformer, EntryWriter writer) {
+    this.transformer = transformer;
+    this.writer = writer;
+    this.maxInFlightBytes = (int) Math.max(1, Math.min(maxInFlightBytes, Integer.MAX_VALUE));
+    inFlightBytes = new Semaphore(this.maxInFlightBytes);
+    transformExecutor =
+        Executors.newFixedThreadPool(
+            threads,
+            new ThreadFactoryBuilder().setNameFormat("injkit-zip-%d").setDaemon(true).build());
+    writeExecutor =
+        Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder().setNameFormat("injkit-zip-writer").setDaemon(true).build());
+    writeResult =
+        writeExecutor.submit(
+            () -> {
+              writeAll();
+              return null;
+            });
+  }
+
+  void submit(String path, byte[] data) throws IOException, AnnotationProcessingException {
+    // Entries larger than the limit are still accepted, but only when nothing else is in flight.
+    int cost = Math.max(1, Math.min(data.length, maxInFlightBytes));
+    try {
+      inFlightBytes.acquire(cost);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while reading zip entries", e);
+    }
+
+    if (writeFailed) {
+      finish();
+    }
+
+    Future<byte[]> result = transformExecutor.submit(() -> transformer.transform(path, data));
+    pending.add(new PendingEntry(path, result, cost));
+  }
+
+  // Queues an entry that is written unchanged, in order with the transformed entries.
+  void submitUnchanged(String path) throws IOException, AnnotationProcessingException {
+    if (writeFailed) {
+      finish();
+    }
+
+    // NULLSAFE_FIXME[Parameter Not Nullable]
+    pending.add(new PendingEntry(path, Futures.immediateFuture(null), 0));
+  }
+
+  void finish() throws IOException, AnnotationProcessingException {
+    pending.add(PendingEntry.END);
+    try {
+      writeResult.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while writing zip entries", e);
+    } catch (ExecutionException e) {
+      rethrow(e.getCause());
+    }
+  }
+
+  @Override
+  public void close() {
+    transformExecutor.shutdownNow();
+    writeExecutor.shutdownNow();
+  }
+
+  private void writeAll() throws Exception {
+    try {
+      while (true) {
+        PendingEntry entry = pending.take();
+        if (entry == PendingEntry.END) {
+          return;
+        }
+
+        @Nullable byte[] transformed;
+        try {
+          transformed = entry.getResult().get();
+        } catch (ExecutionException e) {
+          Throwable cause = e.getCause();
+          throw cause instanceof Exception ? (Exception) cause : e;
+        }
+
+        writer.write(entry.getPath(), transformed);
+        inFlightBytes.release(entry.getCost());
+      }
+    } catch (Throwable t) {
+      // Unblock the reader so it notices the failure.
+      writeFailed = true;
+      inFlightBytes.release(maxInFlightBytes);
+      throw t;
+    }
+  }
+
+  private static void rethrow(@Nullable Throwable t)
+      throws IOException, AnnotationProcessingException {
+    if (t instanceof IOException) {
+      throw (IOException) t;
+    } else if (t instanceof AnnotationProcessingException) {
+      throw (AnnotationProcessingException) t;
+    } else if (t instanceof RuntimeException) {
+      throw (RuntimeException) t;
+    } else if (t instanceof Error) {
+      throw (Error) t;
+    }
+
+    throw new IOException("Failed to process zip entries", t);
+  }
+
+  @FunctionalInterface
+  interface EntryTransformer {
+    // Returns null if the entry is unchanged.
+    @Nullable
+    byte[] transform(String path, byte[] data) throws IOException, AnnotationProcessingException;
+  }
+
+  @FunctionalInterface
+  interface EntryWriter {
+    // Data is null for unchanged entries.
+    void write(String path, @Nullable byte[] data) throws IOException;
+  }
+
+  private static class PendingEntry {
+    // NULLSAFE_FIXME[Parameter Not Nullable]
+    static final PendingEntry END = new PendingEntry("", null, 0);
+
+    private final String path;
+    private final Future<byte[]> result;
+    private final int cost;
+
+    PendingEntry(String path, Future<byte[]> result, int cost) {
+      this.path = path;
+      this.result = result;
+      this.cost = cost;
+    }
+
+    String getPath() {
+      return path;
+    }
+
+    Future<byte[]> getResult() {
+      return result;
+    }
+
+    int getCost() {
+      return cost;
+    }
+  }
+}
@@ -37,7 +37,7 @@ class ZipRecursionHandler {
   }
 
   @SuppressWarnings("unused")
-  private static boolean isZip(File file) throws IOException {
+  static boolean isZip(File file) throws IOException {
     try (ZipFile unused = new ZipFile(file)) {
       return true;
     } catch (ZipException e) {
@@ -67,7 +67,8 @@ class ZipRecursionHandler {
                 // NULLSAFE_FIXME[Parameter Not Nullable]
                 new ClassFileDetectorStream(nextEntry.getName(), fileInput)) {
           try {
-            zipEntryConsumer.consumeZipEntry(nextEntry.getName(), cfds.isClass(), cfds);
+            zipEntryConsumer.consumeZipEntry(
+                nextEntry.getName(), cfds.isClass(), nextEntry.getSize(), cfds);
           } catch (IOException e) {
             throw new IOException(
                 String.format(Locale.US, "Failed to process zip '%s'", file.getAbsolutePath()), e);
@@ -94,7 +95,8 @@ class ZipRecursionHandler {
 
   @FunctionalInterface
   interface ZipEntryConsumer {
-    void consumeZipEntry(String path, boolean isClass, InputStream input)
+    // The size is the uncompressed size of the entry, or -1 if not known.
+    void consumeZipEntry(String path, boolean isClass, long size, InputStream input)
         throws IOException, AnnotationProcessingException;
   }
 }
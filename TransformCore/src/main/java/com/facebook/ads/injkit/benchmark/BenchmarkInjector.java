@@ -11,12 +11,17 @@ import com.facebook.ads.injkit.AnnotationProcessingException;
 import com.facebook.ads.injkit.AsmMethodUtils;
 import com.facebook.ads.injkit.AsmNameUtils;
 import com.facebook.ads.injkit.BaseInjector;
+import com.facebook.ads.injkit.ClassContext;
+import com.facebook.ads.injkit.ClassPass;
 import com.facebook.ads.injkit.Injector;
+import com.facebook.ads.injkit.InjectorInterest;
 import com.facebook.ads.injkit.InvalidAnnotationProcessorConfigurationException;
 import com.facebook.ads.injkit.NopInjector;
 import com.facebook.ads.injkit.ReflectUtils;
+import com.facebook.ads.injkit.model.InheritedMethodAnnotations;
 import com.facebook.ads.injkit.model.Model;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -47,8 +52,9 @@ class BenchmarkInjector extends BaseInjector {
 
   private final boolean enabled;
   private final String annotationClassDesc;
-  private BenchmarkMetrics defaultMetrics;
-  private String benchmarkReceiverClassIName;
+  // Looked up in the model for the first class and then shared by all threads processing classes.
+  private volatile BenchmarkMetrics defaultMetrics;
+  private final String benchmarkReceiverClassIName;
 
   private BenchmarkInjector(
       boolean enabled,
@@ -163,73 +169,107 @@ class BenchmarkInjector extends BaseInjector {
     return new BenchmarkMetrics(warnAtMillisProperty, failAtMillisProperty);
   }
 
+  private void loadDefaultMetrics(Model model) throws AnnotationProcessingException {
+    if (defaultMetrics != null) {
+      return;
+    }
+
+    synchronized (this) {
+      if (defaultMetrics == null) {
+        defaultMetrics = getDefaultMetrics(annotationClassDesc, model);
+      }
+    }
+  }
+
   @Override
-  protected void processImpl(ClassNode clsNode, Model model) throws AnnotationProcessingException {
-    List<MethodNode> newMethods = new ArrayList<>();
+  public InjectorInterest getInterest() {
+    return InjectorInterest.annotations(Collections.singletonList(annotationClassDesc));
+  }
 
+  @Override
+  protected ClassPass startClassImpl(ClassNode clsNode, ClassContext context)
+      throws AnnotationProcessingException {
     if (clsNode.methods == null) {
-      return;
+      return null;
     }
 
     // This will be used when computing the methodBenchmarkMetrics so make sure it is set
     // before.
-    if (defaultMetrics == null) {
-      defaultMetrics = getDefaultMetrics(annotationClassDesc, model);
+    loadDefaultMetrics(context.getModel());
+
+    if (!context.mayUseAnnotations(Collections.singletonList(annotationClassDesc))) {
+      return null;
     }
 
-    for (MethodNode methodNode : clsNode.methods) {
-      removeBenchmarkMetrics(methodNode);
+    // Resolved once for all methods rather than walking the hierarchy for each one.
+    InheritedMethodAnnotations annotations =
+        enabled ? context.inheritedMethodAnnotations(annotationClassDesc) : null;
+    List<MethodNode> newMethods = new ArrayList<>();
 
-      // We don't forward abstract methods.
-      if (methodNode.instructions == null || methodNode.instructions.size() == 0) {
-        continue;
-      }
+    return new ClassPass() {
+      @Override
+      public boolean processMethod(MethodNode methodNode) throws AnnotationProcessingException {
+        boolean changed = removeBenchmarkMetrics(methodNode);
+
+        // We don't forward abstract methods.
+        if (methodNode.instructions == null || methodNode.instructions.size() == 0) {
+          return changed;
+        }
+
+        if (annotations == null) {
+          return changed;
+        }
 
-      if (enabled) {
-        BenchmarkMetrics metrics = methodBenchmarkMetrics(clsNode, methodNode, model);
-        if (metrics != null) {
-          String moveMethodName = methodNode.name;
-          methodNode.name = METHOD_RENAME_PREFIX + methodNode.name;
-
-          // Make sure constructors' forward methods have valid names.
-          methodNode.name = methodNode.name.replace('<', '$');
-          methodNode.name = methodNode.name.replace('>', '$');
-          MethodNode newMethod = createForwardMethod(moveMethodName, clsNode, methodNode, metrics);
-          newMethods.add(newMethod);
-
-          if (AsmNameUtils.INIT.equals(moveMethodName)) {
-            InsnList newInstructions = extractSuperCall(methodNode.instructions, clsNode.superName);
-            if (newInstructions == null) {
-              throw new AnnotationProcessingException(
-                  String.format(
-                      Locale.US,
-                      "Don't know what to do to transform method %s%s of "
-                          + "class %s for benchmarking",
-                      moveMethodName,
-                      methodNode.desc,
-                      clsNode.name));
-            }
-
-            newMethod.instructions.insert(newInstructions);
+        BenchmarkMetrics metrics = methodBenchmarkMetrics(clsNode, methodNode, annotations);
+        if (metrics == null) {
+          return changed;
+        }
+
+        String moveMethodName = methodNode.name;
+        methodNode.name = METHOD_RENAME_PREFIX + methodNode.name;
+
+        // Make sure constructors' forward methods have valid names.
+        methodNode.name = methodNode.name.replace('<', '$');
+        methodNode.name = methodNode.name.replace('>', '$');
+        MethodNode newMethod = createForwardMethod(moveMethodName, clsNode, methodNode, metrics);
+        newMethods.add(newMethod);
+
+        if (AsmNameUtils.INIT.equals(moveMethodName)) {
+          InsnList newInstructions = extractSuperCall(methodNode.instructions, clsNode.superName);
+          if (newInstructions == null) {
+            throw new AnnotationProcessingException(
+                String.format(
+                    Locale.US,
+                    "Don't know what to do to transform method %s%s of "
+                        + "class %s for benchmarking",
+                    moveMethodName,
+                    methodNode.desc,
+                    clsNode.name));
           }
+
+          newMethod.instructions.insert(newInstructions);
         }
+
+        return true;
       }
-    }
 
-    clsNode.methods.addAll(newMethods);
+      // The forward methods are only added once every method was walked.
+      @Override
+      public boolean endClass() {
+        clsNode.methods.addAll(newMethods);
+        return !newMethods.isEmpty();
+      }
+    };
   }
 
   private int getAnnotationValue(
-      ClassNode classNode, MethodNode methodNode, Model model, String property)
+      ClassNode classNode,
+      MethodNode methodNode,
+      InheritedMethodAnnotations annotations,
+      String property)
       throws AnnotationProcessingException {
     Map<String, Object> values =
-        model.methodClosureWithAnnotationFilterAndValue(
-            classNode.name,
-            methodNode.name,
-            methodNode.desc,
-            methodNode.access,
-            annotationClassDesc,
-            property);
+        annotations.propertyValues(methodNode.name, methodNode.desc, methodNode.access, property);
 
     if (values.isEmpty()) {
       return defaultMetrics.get(property);
@@ -270,21 +310,16 @@ class BenchmarkInjector extends BaseInjector {
   }
 
   private BenchmarkMetrics methodBenchmarkMetrics(
-      ClassNode classNode, MethodNode methodNode, Model model)
+      ClassNode classNode, MethodNode methodNode, InheritedMethodAnnotations annotations)
       throws AnnotationProcessingException {
-    if (model
-        .methodClosureWithAnnotationFilter(
-            classNode.name,
-            methodNode.name,
-            methodNode.desc,
-            methodNode.access,
-            annotationClassDesc)
-        .isEmpty()) {
+    if (!annotations.isAnnotated(methodNode.name, methodNode.desc, methodNode.access)) {
       return null;
     }
 
-    int warnValue = getAnnotationValue(classNode, methodNode, model, WARN_AT_MILLIS_PROPERTY);
-    int failValue = getAnnotationValue(classNode, methodNode, model, FAIL_AT_MILLIS_PROPERTY);
+    int warnValue =
+        getAnnotationValue(classNode, methodNode, annotations, WARN_AT_MILLIS_PROPERTY);
+    int failValue =
+        getAnnotationValue(classNode, methodNode, annotations, FAIL_AT_MILLIS_PROPERTY);
 
     if (warnValue == -1 && failValue == -1) {
       return null;
@@ -470,11 +505,13 @@ class BenchmarkInjector extends BaseInjector {
     return nullableList.toArray(new String[0]);
   }
 
-  private void removeBenchmarkMetrics(MethodNode methodNode) {
+  private boolean removeBenchmarkMetrics(MethodNode methodNode) {
+    boolean removed = false;
     if (methodNode.visibleAnnotations != null) {
       for (int i = 0; i < methodNode.visibleAnnotations.size(); i++) {
         if (annotationClassDesc.equals(methodNode.visibleAnnotations.get(i).desc)) {
           methodNode.visibleAnnotations.remove(i);
+          removed = true;
           i--;
         }
       }
@@ -484,10 +521,13 @@ class BenchmarkInjector extends BaseInjector {
       for (int i = 0; i < methodNode.invisibleAnnotations.size(); i++) {
         if (annotationClassDesc.equals(methodNode.invisibleAnnotations.get(i).desc)) {
           methodNode.invisibleAnnotations.remove(i);
+          removed = true;
           i--;
         }
       }
     }
+
+    return removed;
   }
 
   private static InsnList extractSuperCall(InsnList instructions, String superIName) {
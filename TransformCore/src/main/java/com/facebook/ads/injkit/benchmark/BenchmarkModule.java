@@ -11,6 +11,8 @@ import com.facebook.ads.injkit.ConfigurationParser;
 import com.facebook.ads.injkit.InjectorFactory;
 import com.facebook.ads.injkit.Module;
 import com.facebook.infer.annotation.Nullsafe;
+import java.util.Collection;
+import java.util.Collections;
 
 @Nullsafe(Nullsafe.Mode.LOCAL)
 public class BenchmarkModule implements Module<BenchmarkConfiguration> {
@@ -23,4 +25,14 @@ public class BenchmarkModule implements Module<BenchmarkConfiguration> {
   public InjectorFactory<BenchmarkConfiguration> makeInjectorFactory() {
     return new BenchmarkInjectorFactory();
   }
+
+  @Override
+  public Collection<String> getModelAnnotationClasses(BenchmarkConfiguration configuration) {
+    // The injector looks up uses of the benchmark annotation and its default values, even if
+    // disabled, to remove the metrics of annotated methods.
+    String annotationClass = configuration.getBenchmarkAnnotationClass();
+    return annotationClass == null
+        ? Collections.emptyList()
+        : Collections.singletonList(annotationClass);
+  }
 }
@@ -11,22 +11,26 @@ import com.facebook.ads.injkit.AnnotationProcessingException;
 import com.facebook.ads.injkit.AsmMethodUtils;
 import com.facebook.ads.injkit.AsmNameUtils;
 import com.facebook.ads.injkit.BaseInjector;
+import com.facebook.ads.injkit.ClassContext;
+import com.facebook.ads.injkit.ClassPass;
 import com.facebook.ads.injkit.Injector;
+import com.facebook.ads.injkit.InjectorInterest;
 import com.facebook.ads.injkit.InvalidAnnotationProcessorConfigurationException;
 import com.facebook.ads.injkit.NopInjector;
 import com.facebook.ads.injkit.ReflectUtils;
-import com.facebook.ads.injkit.model.Model;
 import java.lang.annotation.Annotation;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.net.URLClassLoader;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
 import org.objectweb.asm.tree.AbstractInsnNode;
@@ -138,75 +142,125 @@ class CrashShieldInjector extends BaseInjector {
         config.isShouldProcessViews());
   }
 
+  // Without constructors, only classes with the annotations and classes whose methods are
+  // processed because of their hierarchy are changed.
   @Override
-  protected void processImpl(ClassNode clsNode, Model model) {
+  public InjectorInterest getInterest() {
+    if (shouldProcessConstructors) {
+      return InjectorInterest.everything();
+    }
+
+    List<String> supertypes = new ArrayList<>(CrashShieldViewClassFilter.autoProcessedINames());
+    if (shouldProcessViews) {
+      supertypes.addAll(CrashShieldViewClassFilter.viewINames());
+      supertypes.addAll(ANDROID_CLASS_INAME_AND_SAFE_CLASS_INAME_MAP.keySet());
+    }
+
+    return InjectorInterest.of(
+        Arrays.asList(
+            AsmNameUtils.classJavaNameToDescriptor(enableAnnotationClass.getName()),
+            AsmNameUtils.classJavaNameToDescriptor(disableAnnotationClass.getName())),
+        supertypes,
+        Collections.emptyList());
+  }
+
+  @Override
+  protected ClassPass startClassImpl(ClassNode clsNode, ClassContext context) {
     if ((clsNode.access & Opcodes.ACC_INTERFACE) != 0) {
-      return;
+      return null;
     }
 
     if (ANDROID_CLASS_INAME_AND_SAFE_CLASS_INAME_MAP.containsValue(clsNode.name)) {
-      return;
+      return null;
     }
 
-    FindAndRemoveAnnotationResult defaultOp =
-        findAndRemoveAnnotation(clsNode.visibleAnnotations, clsNode.invisibleAnnotations);
+    Set<String> hierarchicalClosure = context.getHierarchicalClosure();
+    // The class hierarchy is the same for all methods, so it is only classified once.
+    boolean isViewClassChild =
+        shouldProcessViews && CrashShieldViewClassFilter.isViewClassChild(hierarchicalClosure);
 
-    for (MethodNode method : clsNode.methods) {
-      if (AsmMethodUtils.isStaticInitializer(method)) {
-        continue;
+    return new ClassPass() {
+      private FindAndRemoveAnnotationResult defaultOp = FindAndRemoveAnnotationResult.NOT_FOUND;
+
+      @Override
+      public boolean beginClass() {
+        defaultOp =
+            findAndRemoveAnnotation(clsNode.visibleAnnotations, clsNode.invisibleAnnotations);
+        return defaultOp != FindAndRemoveAnnotationResult.NOT_FOUND;
       }
-      if (AsmMethodUtils.isConstructor(method)) {
-        if (!maybeRenameParentConstructorCall(shouldProcessViews, method, clsNode)
-            && shouldProcessConstructors) {
-          injectHandleThrowable(clsNode, method);
+
+      @Override
+      public boolean processMethod(MethodNode method) {
+        if (AsmMethodUtils.isStaticInitializer(method)) {
+          return false;
+        }
+        if (AsmMethodUtils.isConstructor(method)) {
+          if (maybeRenameParentConstructorCall(shouldProcessViews, method, clsNode)) {
+            return true;
+          }
+          return shouldProcessConstructors && injectHandleThrowable(clsNode, method);
         }
-        continue;
-      }
 
-      if (shouldProcessViews) {
-        if (CrashShieldViewClassFilter.isViewClassChild(clsNode, model)) {
-          renameMethodsAndSuperCalls(method, clsNode);
+        if (isViewClassChild) {
+          boolean changed = renameMethodsAndSuperCalls(method, clsNode);
           if (CrashShieldViewClassFilter.isViewMethodToRename(method.name, method.desc)) {
             renameMethod(method);
+            changed = true;
           }
-          continue;
+          return changed;
         }
-      }
 
-      FindAndRemoveAnnotationResult methodOp =
-          findAndRemoveAnnotation(method.visibleAnnotations, method.invisibleAnnotations)
-              .or(defaultOp);
+        FindAndRemoveAnnotationResult foundOp =
+            findAndRemoveAnnotation(method.visibleAnnotations, method.invisibleAnnotations);
+        boolean changed = foundOp != FindAndRemoveAnnotationResult.NOT_FOUND;
+        FindAndRemoveAnnotationResult methodOp = foundOp.or(defaultOp);
 
-      if (CrashShieldViewClassFilter.isAutoProcessedMethod(method, clsNode, model)
-          && methodOp != FindAndRemoveAnnotationResult.FOUND_NO_AUTO_HANDLE) {
-        injectHandleThrowable(clsNode, method);
-        continue;
+        if (CrashShieldViewClassFilter.isAutoProcessedMethod(method, hierarchicalClosure)
+            && methodOp != FindAndRemoveAnnotationResult.FOUND_NO_AUTO_HANDLE) {
+          return injectHandleThrowable(clsNode, method) || changed;
+        }
+
+        if (methodOp == FindAndRemoveAnnotationResult.FOUND_AUTO_HANDLE) {
+          changed |= injectHandleThrowable(clsNode, method);
+        }
+
+        return changed;
       }
 
-      if (methodOp == FindAndRemoveAnnotationResult.FOUND_AUTO_HANDLE) {
-        injectHandleThrowable(clsNode, method);
+      @Override
+      public boolean endClass() {
+        return shouldProcessViews && renameSuperClassIfDirectChild(clsNode);
       }
-    }
 
-    if (shouldProcessViews) {
-      renameSuperClassIfDirectChild(clsNode);
-    }
+      // Constructor calls to the super class are renamed when the class is walked but the super
+      // class only when it ends.
+      @Override
+      public boolean endsBeforeLaterPasses() {
+        return shouldProcessViews
+            && ANDROID_CLASS_INAME_AND_SAFE_CLASS_INAME_MAP.containsKey(clsNode.superName);
+      }
+    };
   }
 
-  private static void renameSuperClassIfDirectChild(ClassNode clsNode) {
+  private static boolean renameSuperClassIfDirectChild(ClassNode clsNode) {
     String safeSuperClassName = ANDROID_CLASS_INAME_AND_SAFE_CLASS_INAME_MAP.get(clsNode.superName);
     if (safeSuperClassName != null) {
       clsNode.superName = safeSuperClassName;
+      return true;
     }
+
+    return false;
   }
 
-  private void renameMethodsAndSuperCalls(MethodNode method, ClassNode clsNode) {
+  private boolean renameMethodsAndSuperCalls(MethodNode method, ClassNode clsNode) {
+    boolean renamed = false;
     for (Iterator<AbstractInsnNode> it = method.instructions.iterator(); it.hasNext(); ) {
       AbstractInsnNode insnNode = it.next();
       if (insnNode.getOpcode() == Opcodes.INVOKESPECIAL
           && CrashShieldViewClassFilter.isViewMethodToRename(
               ((MethodInsnNode) insnNode).name, ((MethodInsnNode) insnNode).desc)) {
         renameInst((MethodInsnNode) insnNode);
+        renamed = true;
         if (clsNode.superName != null) {
           String safeSuperClassName =
               ANDROID_CLASS_INAME_AND_SAFE_CLASS_INAME_MAP.get(clsNode.superName);
@@ -216,6 +270,8 @@ class CrashShieldInjector extends BaseInjector {
         }
       }
     }
+
+    return renamed;
   }
 
   private void renameInst(MethodInsnNode istr) {
@@ -287,7 +343,8 @@ class CrashShieldInjector extends BaseInjector {
     ReflectUtils.checkMethodIsPublicStatic(handlerClass, METHOD_FINISHED_METHOD_NAME, Object.class);
   }
 
-  private void injectHandleThrowable(ClassNode cls, MethodNode method) {
+  // Returns whether the method was changed.
+  private boolean injectHandleThrowable(ClassNode cls, MethodNode method) {
 
     LabelNode tryNode = new LabelNode();
     LabelNode catchNode = new LabelNode();
@@ -297,7 +354,7 @@ class CrashShieldInjector extends BaseInjector {
     try {
       firstCoveredInstruction = findFirstCoveredInstruction(cls, method);
     } catch (AnnotationProcessingException t) {
-      return;
+      return false;
     }
 
     if (firstCoveredInstruction != null) {
@@ -331,7 +388,11 @@ class CrashShieldInjector extends BaseInjector {
 
       method.tryCatchBlocks.add(
           new TryCatchBlockNode(tryNode, catchNode, catchNode, "java/lang/Throwable"));
+
+      return true;
     }
+
+    return false;
   }
 
   private void insertIfCrashingCondition(ClassNode cls, MethodNode method) {
@@ -10,6 +10,8 @@ package com.facebook.ads.injkit.crashshield;
 import com.facebook.ads.injkit.ConfigurationParser;
 import com.facebook.ads.injkit.InjectorFactory;
 import com.facebook.ads.injkit.Module;
+import java.util.Collection;
+import java.util.Collections;
 
 public class CrashShieldModule implements Module<CrashShieldConfiguration> {
   @Override
@@ -21,4 +23,10 @@ public class CrashShieldModule implements Module<CrashShieldConfiguration> {
   public InjectorFactory<CrashShieldConfiguration> makeInjectorFactory() {
     return new CrashShieldInjectorFactory();
   }
+
+  @Override
+  public Collection<String> getModelAnnotationClasses(CrashShieldConfiguration configuration) {
+    // Annotations are only looked up in the class being transformed, never in the model.
+    return Collections.emptyList();
+  }
 }
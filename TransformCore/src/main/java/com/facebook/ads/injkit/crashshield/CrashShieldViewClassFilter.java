@@ -7,13 +7,14 @@
 
 package com.facebook.ads.injkit.crashshield;
 
-import com.facebook.ads.injkit.model.Model;
 import com.facebook.infer.annotation.Nullsafe;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import org.objectweb.asm.tree.ClassNode;
 import org.objectweb.asm.tree.MethodNode;
 
 @Nullsafe(Nullsafe.Mode.LOCAL)
@@ -87,29 +88,41 @@ public class CrashShieldViewClassFilter {
     FILTER_VIEW_METHODS.put(name, methodDescs);
   }
 
-  public static boolean isAutoProcessedMethod(MethodNode method, ClassNode classNode, Model model) {
+  // Classes with any of these in their hierarchy may have auto processed methods.
+  static Set<String> autoProcessedINames() {
+    return Collections.unmodifiableSet(FILTER_AUTO_PROCESSED_INAMES);
+  }
+
+  // Classes without any of these in their hierarchy are not view class children.
+  static List<String> viewINames() {
+    return Arrays.asList(VIEW_INAME, VIEW_GROUP_INAME);
+  }
+
+  public static boolean isAutoProcessedMethod(MethodNode method, Set<String> hierarchicalClosure) {
     String methodDesc = FILTER_AUTO_PROCESSED_METHODS.get(method.name);
-    return methodDesc != null
-        && (methodDesc.equals(method.desc)
-            // NULLSAFE_FIXME[Not Vetted Third-Party]
-            || model.hierarchicalClosure(classNode.name).contains(ASYNC_TASK_INAME))
-        && FILTER_AUTO_PROCESSED_INAMES.stream()
-            // NULLSAFE_FIXME[Not Vetted Third-Party]
-            .map(x -> model.hierarchicalClosure(classNode.name).contains(x))
-            // NULLSAFE_FIXME[Not Vetted Third-Party]
-            .reduce(false, (x, y) -> x || y);
+    if (methodDesc == null) {
+      return false;
+    }
+
+    return (methodDesc.equals(method.desc) || hierarchicalClosure.contains(ASYNC_TASK_INAME))
+        && containsAny(hierarchicalClosure, FILTER_AUTO_PROCESSED_INAMES);
   }
 
   private static boolean hierarchyContainsViewGroupAndroidChild(Set<String> hierarchicalClosure) {
-    return EXCLUDE_FROM_VIEW_FILTER_INAMES.stream()
-        .map(hierarchicalClosure::contains)
-        // NULLSAFE_FIXME[Not Vetted Third-Party]
-        .reduce(false, (x, y) -> x || y);
+    return containsAny(hierarchicalClosure, EXCLUDE_FROM_VIEW_FILTER_INAMES);
+  }
+
+  private static boolean containsAny(Set<String> hierarchicalClosure, Set<String> iNames) {
+    for (String iName : iNames) {
+      if (hierarchicalClosure.contains(iName)) {
+        return true;
+      }
+    }
+
+    return false;
   }
 
-  public static boolean isViewClassChild(ClassNode classNode, Model model) {
-    // NULLSAFE_FIXME[Not Vetted Third-Party]
-    Set<String> hierarchicalClosure = model.hierarchicalClosure(classNode.name);
+  public static boolean isViewClassChild(Set<String> hierarchicalClosure) {
     return (hierarchicalClosure.contains(VIEW_INAME)
             || hierarchicalClosure.contains(VIEW_GROUP_INAME))
         && !hierarchyContainsViewGroupAndroidChild(hierarchicalClosure);
@@ -0,0 +1,19 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.ads.injkit.model;
+
+import java.io.IOException;
+import javax.annotation.Nullable;
+
+// Finds class files by internal name without parsing them, so that a model only parses the
+// classes it is asked about. Implementations must allow concurrent lookups.
+public interface ClassFileIndex {
+  // Returns the class file of the class, or null if the index does not have it.
+  @Nullable
+  byte[] find(String iName) throws IOException;
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.ads.injkit.model;
+
+import com.facebook.infer.annotation.Nullsafe;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import javax.annotation.Nullable;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AnnotationNode;
+
+// Hashes of everything a model knows that can affect how a class is transformed: the classes in
+// its hierarchical closure and the annotation types used by those classes and their methods. Two
+// runs that compute the same fingerprint for a class see the same model data for it.
+@Nullsafe(Nullsafe.Mode.LOCAL)
+public final class ClassFingerprints {
+  private ClassFingerprints() {}
+
+  public static String of(Model model, String iName) {
+    ModelImpl modelImpl = modelImpl(model);
+    return of(modelImpl::getKnownClass, model.hierarchicalClosure(iName));
+  }
+
+  // Same as of(Model, String), but classes known to replacements are seen as they are there
+  // instead of as the model knows them. Used to fingerprint classes as a later run will see them
+  // once the files they come from have been rewritten.
+  public static String of(Model model, Model replacements, String iName) {
+    Function<String, KnownClass> lookup = lookup(model, replacements);
+    return of(lookup, closure(lookup, iName));
+  }
+
+  // Hash of only what common super class queries look at in the hierarchical closure of a class:
+  // the names, access flags, super classes and interfaces of the classes in it.
+  public static String ofHierarchy(Model model, @Nullable Model replacements, String iName) {
+    Function<String, KnownClass> lookup = lookup(model, replacements);
+    Hasher hasher = Hashing.sha256().newHasher();
+    for (String closureIName : closure(lookup, iName)) {
+      putString(hasher, closureIName);
+      KnownClass cls = lookup.apply(closureIName);
+      if (cls == null) {
+        hasher.putBoolean(false);
+        continue;
+      }
+
+      hasher.putBoolean(true);
+      hasher.putInt(cls.getAccess());
+      putString(hasher, cls.getSuperIName());
+      List<String> interfaces = cls.getInterfaceNames();
+      hasher.putInt(interfaces.size());
+      for (String interfaceIName : interfaces) {
+        putString(hasher, interfaceIName);
+      }
+    }
+
+    return hasher.hash().toString();
+  }
+
+  // An empty model that retains what the model retains, to hold replacements. It can be updated
+  // from several threads at once.
+  public static Model newReplacements(Model model) {
+    return new ModelImpl(new ConcurrentHashMap<>(), modelImpl(model).getRetention());
+  }
+
+  private static String of(Function<String, KnownClass> lookup, Set<String> closure) {
+    Set<String> annotationTypes = new TreeSet<>();
+    Hasher hasher = Hashing.sha256().newHasher();
+    for (String closureIName : new TreeSet<>(closure)) {
+      putClass(hasher, lookup, closureIName, annotationTypes);
+    }
+
+    // Annotation types are not followed further: their own annotations are never looked up.
+    for (String desc : annotationTypes) {
+      // NULLSAFE_FIXME[Not Vetted Third-Party]
+      putClass(hasher, lookup, Type.getType(desc).getInternalName(), new TreeSet<>());
+    }
+
+    return hasher.hash().toString();
+  }
+
+  private static ModelImpl modelImpl(Model model) {
+    if (!(model instanceof ModelImpl)) {
+      throw new IllegalArgumentException(
+          String.format(Locale.US, "Cannot fingerprint model %s", model.getClass().getName()));
+    }
+
+    return (ModelImpl) model;
+  }
+
+  private static Function<String, KnownClass> lookup(Model model, @Nullable Model replacements) {
+    ModelImpl modelImpl = modelImpl(model);
+    if (replacements == null) {
+      return modelImpl::getKnownClass;
+    }
+
+    ModelImpl replacementsImpl = modelImpl(replacements);
+    return iName -> {
+      KnownClass cls = replacementsImpl.getKnownClass(iName);
+      return cls == null ? modelImpl.getKnownClass(iName) : cls;
+    };
+  }
+
+  // Same as Model.hierarchicalClosure, sorted, but following the classes the lookup finds.
+  private static Set<String> closure(Function<String, KnownClass> lookup, String iName) {
+    Set<String> done = new TreeSet<>();
+    Deque<String> pending = new ArrayDeque<>();
+    pending.add(iName);
+    while (!pending.isEmpty()) {
+      String currentIName = pending.removeFirst();
+      if (!done.add(currentIName)) {
+        continue;
+      }
+
+      KnownClass cls = lookup.apply(currentIName);
+      if (cls != null) {
+        // Only java/lang/Object has no superclass.
+        if (cls.getSuperIName() != null) {
+          pending.add(cls.getSuperIName());
+        }
+
+        pending.addAll(cls.getInterfaceNames());
+      }
+    }
+
+    return done;
+  }
+
+  private static void putClass(
+      Hasher hasher,
+      Function<String, KnownClass> lookup,
+      String iName,
+      Set<String> annotationTypes) {
+    putString(hasher, iName);
+    KnownClass cls = lookup.apply(iName);
+    if (cls == null) {
+      hasher.putBoolean(false);
+      return;
+    }
+
+    hasher.putBoolean(true);
+    hasher.putInt(cls.getAccess());
+    putString(hasher, cls.getSuperIName());
+    List<String> interfaces = cls.getInterfaceNames();
+    hasher.putInt(interfaces.size());
+    for (String interfaceIName : interfaces) {
+      putString(hasher, interfaceIName);
+    }
+
+    putAnnotations(hasher, cls.getAnnotations(), annotationTypes);
+    hasher.putInt(cls.getMethods().size());
+    for (KnownMethod method : cls.getMethods()) {
+      putString(hasher, method.getName());
+      putString(hasher, method.getDesc());
+      hasher.putInt(method.getAccess());
+      putAnnotations(hasher, method.getAnnotations(), annotationTypes);
+      putValue(hasher, method.getAnnotationDefaultValue());
+    }
+  }
+
+  private static void putAnnotations(
+      Hasher hasher, Set<KnownAnnotation> annotations, Set<String> annotationTypes) {
+    List<KnownAnnotation> sorted = new ArrayList<>(annotations);
+    sorted.sort(Comparator.comparing(KnownAnnotation::getDescription));
+    hasher.putInt(sorted.size());
+    for (KnownAnnotation annotation : sorted) {
+      annotationTypes.add(annotation.getDescription());
+      putString(hasher, annotation.getDescription());
+      Map<String, Object> values = new TreeMap<>(annotation.getValues());
+      hasher.putInt(values.size());
+      for (Map.Entry<String, Object> value : values.entrySet()) {
+        putString(hasher, value.getKey());
+        putValue(hasher, value.getValue());
+      }
+    }
+  }
+
+  private static void putValue(Hasher hasher, @Nullable Object value) {
+    if (value == null) {
+      putString(hasher, null);
+    } else if (value instanceof Type) {
+      putString(hasher, "Type");
+      putString(hasher, ((Type) value).getDescriptor());
+    } else if (value instanceof String[]) {
+      putString(hasher, "Enum");
+      putString(hasher, ((String[]) value)[0]);
+      putString(hasher, ((String[]) value)[1]);
+    } else if (value instanceof AnnotationNode) {
+      putString(hasher, "Annotation");
+      putString(hasher, ((AnnotationNode) value).desc);
+      putValue(hasher, ((AnnotationNode) value).values);
+    } else if (value instanceof List) {
+      putString(hasher, "List");
+      hasher.putInt(((List<?>) value).size());
+      for (Object element : (List<?>) value) {
+        putValue(hasher, element);
+      }
+    } else {
+      // Strings, boxed primitives and characters.
+      putString(hasher, value.getClass().getName());
+      putString(hasher, value.toString());
+    }
+  }
+
+  // Strings are length prefixed so that consecutive strings cannot be confused.
+  private static void putString(Hasher hasher, @Nullable String value) {
+    if (value == null) {
+      hasher.putInt(-1);
+      return;
+    }
+
+    hasher.putInt(value.length());
+    hasher.putString(value, StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.ads.injkit.model;
+
+import com.facebook.infer.annotation.Nullsafe;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+// Where one annotation is found for the methods of a class, resolved through the class
+// hierarchy in a single pass: for each method, the classes of the hierarchical closure that
+// declare the same method with the annotation. Answers the same questions as
+// Model.methodClosureWithAnnotationFilter and Model.methodClosureWithAnnotationFilterAndValue,
+// without walking the hierarchy again for each method and property.
+@Nullsafe(Nullsafe.Mode.LOCAL)
+public final class InheritedMethodAnnotations {
+  private final Map<MethodKey, Map<String, KnownAnnotation>> annotationsByMethod;
+
+  private InheritedMethodAnnotations(
+      Map<MethodKey, Map<String, KnownAnnotation>> annotationsByMethod) {
+    this.annotationsByMethod = annotationsByMethod;
+  }
+
+  static InheritedMethodAnnotations resolve(ModelImpl model, String iName, String desc) {
+    Map<MethodKey, Map<String, KnownAnnotation>> annotationsByMethod = new HashMap<>();
+    for (String closureIName : model.hierarchicalClosure(iName)) {
+      KnownClass cls = model.getKnownClass(closureIName);
+      if (cls == null || !cls.hasMethodAnnotation(desc)) {
+        continue;
+      }
+
+      for (KnownMethod method : cls.getMethods()) {
+        // As in Model.hasMethod, only the first method with the same key is considered.
+        if (!method.getAnnotationDescriptions().contains(desc)
+            || cls.getKnown(method.getName(), method.getDesc(), method.getAccess()) != method) {
+          continue;
+        }
+
+        annotationsByMethod
+            .computeIfAbsent(
+                new MethodKey(method.getName(), method.getDesc(), method.getAccess()),
+                __ -> new HashMap<>())
+            .put(closureIName, method.getKnownAnnotation(desc));
+      }
+    }
+
+    return new InheritedMethodAnnotations(annotationsByMethod);
+  }
+
+  // Whether the method, or the same method in any class of the closure, has the annotation.
+  public boolean isAnnotated(String name, String desc, int access) {
+    return annotationsByMethod.containsKey(new MethodKey(name, desc, access));
+  }
+
+  // The values of the property, by class declaring the method with the annotation. Classes
+  // whose annotation has no value for the property are left out.
+  public Map<String, Object> propertyValues(
+      String name, String desc, int access, String property) {
+    Map<String, KnownAnnotation> annotations =
+        annotationsByMethod.get(new MethodKey(name, desc, access));
+    if (annotations == null) {
+      return Collections.emptyMap();
+    }
+
+    Map<String, Object> values = new HashMap<>();
+    for (Map.Entry<String, KnownAnnotation> entry : annotations.entrySet()) {
+      Object value = entry.getValue().getValue(property);
+      if (value != null) {
+        values.put(entry.getKey(), value);
+      }
+    }
+
+    return values;
+  }
+}
@@ -8,6 +8,7 @@
 package com.facebook.ads.injkit.model;
 
 import com.facebook.infer.annotation.Nullsafe;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -23,11 +24,18 @@ class KnownAnnotation {
 
   private KnownAnnotation(AnnotationNode node) {
     // NULLSAFE_FIXME[Not Vetted Third-Party]
-    desc = node.desc;
-    values = new HashMap<>();
+    desc = Symbols.intern(node.desc);
+    Map<String, Object> nodeValues = new HashMap<>();
     for (int i = 0; node.values != null && i < (node.values.size() - 1); i += 2) {
-      values.put((String) node.values.get(i), node.values.get(i + 1));
+      nodeValues.put((String) node.values.get(i), node.values.get(i + 1));
     }
+
+    values = Collections.unmodifiableMap(nodeValues);
+  }
+
+  KnownAnnotation(String desc, Map<String, Object> values) {
+    this.desc = Symbols.intern(desc);
+    this.values = Collections.unmodifiableMap(values);
   }
 
   String getDescription() {
@@ -39,6 +47,23 @@ class KnownAnnotation {
     return values.get(key);
   }
 
+  Map<String, Object> getValues() {
+    return values;
+  }
+
+  static Set<String> descriptionsOf(Set<KnownAnnotation> annotations) {
+    if (annotations.isEmpty()) {
+      return Collections.emptySet();
+    }
+
+    Set<String> descriptions = new HashSet<>();
+    for (KnownAnnotation annotation : annotations) {
+      descriptions.add(annotation.desc);
+    }
+
+    return Collections.unmodifiableSet(descriptions);
+  }
+
   static Set<KnownAnnotation> from(
       @Nullable List<AnnotationNode> visible, @Nullable List<AnnotationNode> invisible) {
     Set<KnownAnnotation> annotations = new HashSet<>();
@@ -54,6 +79,6 @@ class KnownAnnotation {
       }
     }
 
-    return annotations;
+    return Collections.unmodifiableSet(annotations);
   }
 }
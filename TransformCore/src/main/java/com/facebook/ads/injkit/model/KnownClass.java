@@ -10,6 +10,8 @@ package com.facebook.ads.injkit.model;
 import com.facebook.infer.annotation.Nullsafe;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -27,47 +29,122 @@ class KnownClass {
   private final String superIName;
   private final List<String> interfaceINames;
   private final Set<KnownAnnotation> annotations;
+  private final Set<String> annotationDescriptions;
   private final List<KnownMethod> methods;
+  // Methods by name, descriptor and the access bits that tell them apart. If the same key
+  // appears more than once, the first method is kept, as when the methods were scanned in order.
+  private final Map<MethodKey, KnownMethod> methodIndex;
+  // Name followed by descriptor of the methods with each annotation, by annotation descriptor.
+  private final Map<String, Set<String>> annotatedMethods;
 
   KnownClass(ClassNode node) {
-    access = node.access;
-    // NULLSAFE_FIXME[Not Vetted Third-Party]
-    iName = node.name;
-    // NULLSAFE_FIXME[Not Vetted Third-Party]
-    superIName = node.superName;
-    interfaceINames = copyList(node.interfaces);
-    annotations = KnownAnnotation.from(node.visibleAnnotations, node.invisibleAnnotations);
-    methods = copyList(node.methods).stream().map(KnownMethod::new).collect(Collectors.toList());
+    this(
+        node.access,
+        // NULLSAFE_FIXME[Not Vetted Third-Party]
+        node.name,
+        // NULLSAFE_FIXME[Not Vetted Third-Party]
+        node.superName,
+        copyList(node.interfaces),
+        KnownAnnotation.from(node.visibleAnnotations, node.invisibleAnnotations),
+        copyList(node.methods).stream().map(KnownMethod::new).collect(Collectors.toList()));
+  }
+
+  KnownClass(
+      int access,
+      String iName,
+      String superIName,
+      List<String> interfaceINames,
+      Set<KnownAnnotation> annotations,
+      List<KnownMethod> methods) {
+    this.access = access;
+    this.iName = Symbols.intern(iName);
+    // NULLSAFE_FIXME[Field Not Nullable]
+    this.superIName = Symbols.internNullable(superIName);
+    this.interfaceINames = Symbols.internAll(interfaceINames);
+    this.annotations = annotations;
+    this.annotationDescriptions = KnownAnnotation.descriptionsOf(annotations);
+    this.methods = Collections.unmodifiableList(methods);
+    this.methodIndex = indexMethods(methods);
+    this.annotatedMethods = indexAnnotatedMethods(methods);
+  }
+
+  private static Map<MethodKey, KnownMethod> indexMethods(List<KnownMethod> methods) {
+    Map<MethodKey, KnownMethod> index = new HashMap<>(methods.size() * 4 / 3 + 1);
+    for (KnownMethod method : methods) {
+      index.putIfAbsent(
+          new MethodKey(method.getName(), method.getDesc(), method.getAccess()), method);
+    }
+
+    return index;
+  }
+
+  private static Map<String, Set<String>> indexAnnotatedMethods(List<KnownMethod> methods) {
+    Map<String, Set<String>> index = new HashMap<>();
+    for (KnownMethod method : methods) {
+      for (String desc : method.getAnnotationDescriptions()) {
+        index.computeIfAbsent(desc, __ -> new HashSet<>()).add(method.getName() + method.getDesc());
+      }
+    }
+
+    if (index.isEmpty()) {
+      return Collections.emptyMap();
+    }
+
+    index.replaceAll((desc, names) -> Collections.unmodifiableSet(names));
+    return index;
+  }
+
+  int getAccess() {
+    return access;
+  }
+
+  String getIName() {
+    return iName;
   }
 
   String getSuperIName() {
     return superIName;
   }
 
+  // Unmodifiable, and shared by all callers.
   List<String> getInterfaceNames() {
-    return new ArrayList<>(interfaceINames);
+    return interfaceINames;
+  }
+
+  boolean isInterface() {
+    return (access & Opcodes.ACC_INTERFACE) != 0;
   }
 
   boolean isAnnotation() {
     return (access & Opcodes.ACC_ANNOTATION) != 0;
   }
 
+  Set<KnownAnnotation> getAnnotations() {
+    return annotations;
+  }
+
+  List<KnownMethod> getMethods() {
+    return methods;
+  }
+
+  // Unmodifiable, and shared by all callers.
   Set<String> getAnnotationDescriptions() {
-    return annotations.stream().map(KnownAnnotation::getDescription).collect(Collectors.toSet());
+    return annotationDescriptions;
   }
 
   @Nullable
   private KnownMethod find(String name, String desc, int access) {
-    for (KnownMethod method : methods) {
-      if (method.getName().equals(name)
-          && method.getDesc().equals(desc)
-          && (method.getAccess() & Opcodes.ACC_PRIVATE) == (access & Opcodes.ACC_PRIVATE)
-          && (method.getAccess() & Opcodes.ACC_STATIC) == (access & Opcodes.ACC_STATIC)) {
-        return method;
-      }
-    }
+    return methodIndex.get(new MethodKey(name, desc, access));
+  }
 
-    return null;
+  boolean hasMethodAnnotation(String desc) {
+    return annotatedMethods.containsKey(desc);
+  }
+
+  // Unmodifiable, and shared by all callers.
+  Set<String> getMethodsWithAnnotation(String desc) {
+    Set<String> methodNames = annotatedMethods.get(desc);
+    return methodNames == null ? Collections.emptySet() : methodNames;
   }
 
   boolean hasMethod(String name, String desc, int access) {
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.ads.injkit.model;
+
+import com.facebook.infer.annotation.Nullsafe;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import javax.annotation.Nullable;
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.AnnotationNode;
+
+// Builds a KnownClass straight from a class file, without building a ClassNode. Only the parts
+// of the class the model keeps are visited: code, debug information and frames are skipped, and
+// so are the annotations and default values the model does not retain.
+@Nullsafe(Nullsafe.Mode.LOCAL)
+class KnownClassVisitor extends ClassVisitor {
+  static final int PARSING_OPTIONS =
+      ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES;
+
+  private final ModelRetention retention;
+  private int access;
+  @Nullable private String iName;
+  @Nullable private String superIName;
+  private List<String> interfaceINames = Collections.emptyList();
+  private final List<AnnotationNode> annotations = new ArrayList<>();
+  private final List<KnownMethod> methods = new ArrayList<>();
+
+  KnownClassVisitor(ModelRetention retention) {
+    super(Opcodes.ASM9);
+    this.retention = retention;
+  }
+
+  static KnownClass read(ClassReader reader, ModelRetention retention) {
+    KnownClassVisitor visitor = new KnownClassVisitor(retention);
+    reader.accept(visitor, PARSING_OPTIONS);
+    return visitor.toKnownClass();
+  }
+
+  @Override
+  public void visit(
+      int version,
+      int access,
+      String name,
+      @Nullable String signature,
+      @Nullable String superName,
+      @Nullable String[] interfaces) {
+    this.access = access;
+    this.iName = name;
+    this.superIName = superName;
+    if (interfaces != null) {
+      interfaceINames = Arrays.asList(interfaces);
+    }
+  }
+
+  @Override
+  @Nullable
+  public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+    if (!retention.retainsAnnotation(descriptor)) {
+      return null;
+    }
+
+    AnnotationNode annotation = new AnnotationNode(descriptor);
+    annotations.add(annotation);
+    return annotation;
+  }
+
+  @Override
+  public MethodVisitor visitMethod(
+      int access,
+      String name,
+      String descriptor,
+      @Nullable String signature,
+      @Nullable String[] exceptions) {
+    return new KnownMethodVisitor(access, name, descriptor);
+  }
+
+  KnownClass toKnownClass() {
+    return new KnownClass(
+        access,
+        // NULLSAFE_FIXME[Parameter Not Nullable]
+        iName,
+        // NULLSAFE_FIXME[Parameter Not Nullable]
+        superIName,
+        interfaceINames,
+        KnownAnnotation.from(annotations, null),
+        methods);
+  }
+
+  private class KnownMethodVisitor extends MethodVisitor {
+    private final int access;
+    private final String name;
+    private final String desc;
+    private final List<AnnotationNode> annotations = new ArrayList<>();
+    // Collects the single annotation default value, if any, as its only value.
+    @Nullable private AnnotationNode annotationDefault;
+
+    KnownMethodVisitor(int access, String name, String desc) {
+      super(Opcodes.ASM9);
+      this.access = access;
+      this.name = name;
+      this.desc = desc;
+    }
+
+    @Override
+    @Nullable
+    public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+      if (!retention.retainsAnnotation(descriptor)) {
+        return null;
+      }
+
+      AnnotationNode annotation = new AnnotationNode(descriptor);
+      annotations.add(annotation);
+      return annotation;
+    }
+
+    @Override
+    @Nullable
+    public AnnotationVisitor visitAnnotationDefault() {
+      // NULLSAFE_FIXME[Parameter Not Nullable]
+      if (!retention.retainsDefaultValues(iName)) {
+        return null;
+      }
+
+      // NULLSAFE_FIXME[Parameter Not Nullable]
+      annotationDefault = new AnnotationNode(null);
+      return annotationDefault;
+    }
+
+    @Override
+    public void visitEnd() {
+      Object defaultValue = null;
+      if (annotationDefault != null
+          && annotationDefault.values != null
+          && !annotationDefault.values.isEmpty()) {
+        defaultValue = annotationDefault.values.get(0);
+      }
+
+      methods.add(
+          new KnownMethod(
+              name,
+              desc,
+              access,
+              KnownAnnotation.from(annotations, null),
+              // NULLSAFE_FIXME[Parameter Not Nullable]
+              defaultValue));
+    }
+  }
+}
@@ -10,7 +10,6 @@ package com.facebook.ads.injkit.model;
 import com.facebook.infer.annotation.Nullsafe;
 import java.util.Locale;
 import java.util.Set;
-import java.util.stream.Collectors;
 import org.objectweb.asm.tree.MethodNode;
 
 @Nullsafe(Nullsafe.Mode.LOCAL)
@@ -19,18 +18,33 @@ class KnownMethod {
   private final String desc;
   private final int access;
   private final Set<KnownAnnotation> annotations;
+  private final Set<String> annotationDescriptions;
   private final Object annotationDefaultValue;
 
   KnownMethod(MethodNode methodNode) {
-    // NULLSAFE_FIXME[Not Vetted Third-Party]
-    name = methodNode.name;
-    // NULLSAFE_FIXME[Not Vetted Third-Party]
-    desc = methodNode.desc;
-    access = methodNode.access;
-    annotations =
-        KnownAnnotation.from(methodNode.visibleAnnotations, methodNode.invisibleAnnotations);
-    // NULLSAFE_FIXME[Not Vetted Third-Party]
-    annotationDefaultValue = methodNode.annotationDefault;
+    this(
+        // NULLSAFE_FIXME[Not Vetted Third-Party]
+        methodNode.name,
+        // NULLSAFE_FIXME[Not Vetted Third-Party]
+        methodNode.desc,
+        methodNode.access,
+        KnownAnnotation.from(methodNode.visibleAnnotations, methodNode.invisibleAnnotations),
+        // NULLSAFE_FIXME[Not Vetted Third-Party]
+        methodNode.annotationDefault);
+  }
+
+  KnownMethod(
+      String name,
+      String desc,
+      int access,
+      Set<KnownAnnotation> annotations,
+      Object annotationDefaultValue) {
+    this.name = Symbols.intern(name);
+    this.desc = Symbols.intern(desc);
+    this.access = access;
+    this.annotations = annotations;
+    this.annotationDescriptions = KnownAnnotation.descriptionsOf(annotations);
+    this.annotationDefaultValue = annotationDefaultValue;
   }
 
   String getName() {
@@ -45,8 +59,13 @@ class KnownMethod {
     return access;
   }
 
+  Set<KnownAnnotation> getAnnotations() {
+    return annotations;
+  }
+
+  // Unmodifiable, and shared by all callers.
   Set<String> getAnnotationDescriptions() {
-    return annotations.stream().map(KnownAnnotation::getDescription).collect(Collectors.toSet());
+    return annotationDescriptions;
   }
 
   Object getAnnotationDefaultValue() {
@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.ads.injkit.model;
+
+import com.facebook.infer.annotation.Nullsafe;
+import javax.annotation.Nullable;
+import org.objectweb.asm.Opcodes;
+
+// Identifies a method of a class by its name, descriptor and the access bits that tell methods
+// with the same name and descriptor apart.
+@Nullsafe(Nullsafe.Mode.LOCAL)
+final class MethodKey {
+  // Methods only differing in other access bits are the same method.
+  private static final int ACCESS_MASK = Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC;
+
+  private final String name;
+  private final String desc;
+  private final int access;
+
+  MethodKey(String name, String desc, int access) {
+    this.name = name;
+    this.desc = desc;
+    this.access = access & ACCESS_MASK;
+  }
+
+  @Override
+  public boolean equals(@Nullable Object other) {
+    if (!(other instanceof MethodKey)) {
+      return false;
+    }
+
+    MethodKey key = (MethodKey) other;
+    return access == key.access && name.equals(key.name) && desc.equals(key.desc);
+  }
+
+  @Override
+  public int hashCode() {
+    return (name.hashCode() * 31 + desc.hashCode()) * 31 + access;
+  }
+}
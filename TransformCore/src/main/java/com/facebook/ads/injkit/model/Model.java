@@ -7,23 +7,50 @@
 
 package com.facebook.ads.injkit.model;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
+import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.Type;
 import org.objectweb.asm.tree.ClassNode;
 
 public interface Model {
   void update(ClassNode node);
 
+  // Same as update(ClassNode), but implementations may skip parts of the class file they do not
+  // keep instead of building a full tree.
+  default void update(ClassReader reader) {
+    ClassNode node = new ClassNode();
+    reader.accept(node, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+    update(node);
+  }
+
+  // Adds every class known to other that this model does not know yet, as if update had been
+  // called for each of them. Used to merge models built separately, in a deterministic order.
+  void updateFrom(Model other);
+
+  // Makes the classes in the index known to this model as if update had been called for each of
+  // them now, but each class is only parsed the first time it is looked up. Classes already
+  // known to the model take precedence over the index, and the index takes precedence over
+  // classes added later.
+  void updateLazily(ClassFileIndex index);
+
   boolean knowsClass(String iName);
 
   String superClassOf(String iName);
 
   List<String> interfacesOf(String iName);
 
+  boolean isInterface(String iName);
+
+  // Known classes that directly extend or implement the type. Classes in lazy indexes are only
+  // included once they have been looked up.
+  Set<String> directSubtypesOf(String iName);
+
   Set<String> annotationsOfClass(String iName);
 
   Object annotationPropertyOfClass(String iName, String desc, String property);
@@ -32,6 +59,18 @@ public interface Model {
 
   Set<String> annotationsOfMethod(String iName, String name, String desc, int access);
 
+  // Known classes with the annotation. Classes in lazy indexes are only included once they have
+  // been looked up, which computing the closure of a class does for all of its ancestors. A class
+  // is included before it can be looked up, so the set may also include classes whose definition
+  // was dropped because another with the same name was added first.
+  Set<String> classesWithAnnotation(String desc);
+
+  // Known classes with a method that has the annotation, included as in classesWithAnnotation.
+  Set<String> classesWithMethodAnnotation(String desc);
+
+  // Methods of the class with the annotation, each as its name followed by its descriptor.
+  Set<String> methodsWithAnnotation(String iName, String annotationDesc);
+
   Object annotationPropertyOfMethod(
       String iName,
       String name,
@@ -56,7 +95,12 @@ public interface Model {
       done.add(currentIName);
 
       if (knowsClass(currentIName)) {
-        pending.add(superClassOf(currentIName));
+        String superIName = superClassOf(currentIName);
+        // Only java/lang/Object has no superclass.
+        if (superIName != null) {
+          pending.add(superIName);
+        }
+
         pending.addAll(interfacesOf(currentIName));
       }
 
@@ -66,6 +110,25 @@ public interface Model {
     return done;
   }
 
+  // Known classes that extend or implement the type, directly or not, excluding the type itself.
+  // Classes are included as in directSubtypesOf.
+  default Set<String> allSubtypesOf(String iName) {
+    Set<String> subtypes = new HashSet<>();
+    Deque<String> pending = new ArrayDeque<>(directSubtypesOf(iName));
+    while (!pending.isEmpty()) {
+      String subtype = pending.removeFirst();
+      if (subtypes.add(subtype)) {
+        pending.addAll(directSubtypesOf(subtype));
+      }
+    }
+
+    return subtypes;
+  }
+
+  // Resolves, in one pass over the hierarchical closure of the class, which classes declare each
+  // method with the annotation and with which values.
+  InheritedMethodAnnotations inheritedMethodAnnotations(String iName, String annotationDesc);
+
   default Set<String> hierarchicalMethodClosure(
       String iName, String name, String desc, int access) {
     return hierarchicalClosure(iName).stream()
@@ -79,6 +142,27 @@ public interface Model {
         .collect(Collectors.toSet());
   }
 
+  // Whether the class or any of its ancestors has the annotation, either on the class or on one
+  // of its methods. If not, no annotation filter over the class closure or its method closures
+  // can match. May return true for a closure that does not use the annotation, never false for
+  // one that does.
+  default boolean closureUsesAnnotation(String iName, String desc) {
+    Set<String> closure = hierarchicalClosure(iName);
+    Set<String> annotated = classesWithAnnotation(desc);
+    Set<String> withAnnotatedMethods = classesWithMethodAnnotation(desc);
+    if (annotated.isEmpty() && withAnnotatedMethods.isEmpty()) {
+      return false;
+    }
+
+    for (String closureIName : closure) {
+      if (annotated.contains(closureIName) || withAnnotatedMethods.contains(closureIName)) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
   default Set<String> methodClosureWithAnnotationFilter(
       String iName, String name, String methodDesc, int access, String annotationDesc) {
     return hierarchicalMethodClosure(iName, name, methodDesc, access).stream()
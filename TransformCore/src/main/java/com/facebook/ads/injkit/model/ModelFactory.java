@@ -8,6 +8,8 @@
 package com.facebook.ads.injkit.model;
 
 import com.facebook.infer.annotation.Nullsafe;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Nullsafe(Nullsafe.Mode.LOCAL)
 @FunctionalInterface
@@ -17,4 +19,28 @@ public interface ModelFactory {
   static ModelFactory defaultFactory() {
     return ModelImpl::new;
   }
+
+  static ModelFactory defaultFactory(ModelRetention retention) {
+    return () -> new ModelImpl(new HashMap<>(), retention);
+  }
+
+  // Model that can be updated and queried from several threads at once.
+  static ModelFactory concurrentFactory() {
+    return concurrentFactory(ModelRetention.all());
+  }
+
+  static ModelFactory concurrentFactory(ModelRetention retention) {
+    return () -> new ModelImpl(new ConcurrentHashMap<>(), retention);
+  }
+
+  // Model keeping known classes outside the Java heap, for classpaths too large to hold on it.
+  // Lookups are slower, as classes not used recently are decoded again. Like concurrent models,
+  // it can be updated and queried from several threads at once.
+  static ModelFactory offHeapFactory() {
+    return offHeapFactory(ModelRetention.all());
+  }
+
+  static ModelFactory offHeapFactory(ModelRetention retention) {
+    return () -> new ModelImpl(new OffHeapClassMap(), retention);
+  }
 }
@@ -8,33 +8,213 @@
 package com.facebook.ads.injkit.model;
 
 import com.facebook.infer.annotation.Nullsafe;
-import com.google.common.base.Preconditions;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import javax.annotation.Nullable;
+import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.Type;
 import org.objectweb.asm.tree.ClassNode;
 
 @Nullsafe(Nullsafe.Mode.LOCAL)
 class ModelImpl implements Model {
   // Known classes mapped by internal name.
-  private final Map<String, KnownClass> knownClasses = new HashMap<>();
+  private final Map<String, KnownClass> knownClasses;
+  // Indexes of classes parsed the first time they are looked up, in order of precedence.
+  private final List<ClassFileIndex> lazyIndexes = new CopyOnWriteArrayList<>();
+  // Hierarchical closures computed so far. Adding a class may change any closure, so the map is
+  // replaced whenever one is added; a closure computed while that happens is stored in the map
+  // being dropped. Classes loaded lazily do not replace it: a closure that includes a class looks
+  // it up, which loads it, before the closure is stored.
+  private volatile Map<String, Set<String>> closures = new ConcurrentHashMap<>();
+  // Classes with each annotation, and classes with methods with each annotation, by annotation
+  // descriptor. A class is indexed before it is added, so no thread can find it before its
+  // annotations are indexed. Lazily loaded classes are indexed too.
+  private final Map<String, Set<String>> classesByAnnotation = new ConcurrentHashMap<>();
+  private final Map<String, Set<String>> classesByMethodAnnotation = new ConcurrentHashMap<>();
+  // Known classes directly extending or implementing each type, by internal name of the type.
+  private final Map<String, Set<String>> directSubtypes = new ConcurrentHashMap<>();
+  private final ModelRetention retention;
+
+  ModelImpl() {
+    this(new HashMap<>());
+  }
+
+  ModelImpl(Map<String, KnownClass> knownClasses) {
+    this(knownClasses, ModelRetention.all());
+  }
+
+  // Known classes are immutable once built, so a concurrent map is all that is needed for the
+  // model to be updated and queried from several threads.
+  ModelImpl(Map<String, KnownClass> knownClasses, ModelRetention retention) {
+    this.knownClasses = knownClasses;
+    this.retention = retention;
+  }
 
   @Override
   public void update(ClassNode node) {
-    if (knownClasses.get(node.name) != null) {
+    if (getKnownClass(node.name) != null) {
       // If we already know the class, ignore it.
       return;
     }
 
-    knownClasses.put(node.name, new KnownClass(node));
+    addIfAbsent(node.name, new KnownClass(node));
+  }
+
+  @Override
+  public void update(ClassReader reader) {
+    // The class name is read from the constant pool, so known classes are not parsed again.
+    if (getKnownClass(reader.getClassName()) != null) {
+      return;
+    }
+
+    KnownClass cls = KnownClassVisitor.read(reader, retention);
+    addIfAbsent(reader.getClassName(), cls);
+  }
+
+  @Override
+  public void updateFrom(Model other) {
+    if (!(other instanceof ModelImpl)) {
+      throw new IllegalArgumentException(
+          String.format(Locale.US, "Cannot update model from %s", other.getClass().getName()));
+    }
+
+    for (Map.Entry<String, KnownClass> entry : ((ModelImpl) other).knownClasses.entrySet()) {
+      if (getKnownClass(entry.getKey()) == null) {
+        addIfAbsent(entry.getKey(), entry.getValue());
+      }
+    }
+  }
+
+  @Override
+  public void updateLazily(ClassFileIndex index) {
+    lazyIndexes.add(index);
+    closures = new ConcurrentHashMap<>();
+  }
+
+  void add(KnownClass cls) {
+    addIfAbsent(cls.getIName(), cls);
+  }
+
+  private void addIfAbsent(String iName, KnownClass cls) {
+    // Classes built by other models may have more than this model retains.
+    cls = retention.retain(cls);
+    indexAnnotations(cls);
+    if (knownClasses.putIfAbsent(iName, cls) == null) {
+      indexSupertypes(cls);
+      closures = new ConcurrentHashMap<>();
+    }
+  }
+
+  private void indexSupertypes(KnownClass cls) {
+    String superIName = cls.getSuperIName();
+    // Only java/lang/Object has no superclass.
+    if (superIName != null) {
+      directSubtypes
+          .computeIfAbsent(superIName, __ -> ConcurrentHashMap.newKeySet())
+          .add(cls.getIName());
+    }
+
+    for (String interfaceIName : cls.getInterfaceNames()) {
+      directSubtypes
+          .computeIfAbsent(interfaceIName, __ -> ConcurrentHashMap.newKeySet())
+          .add(cls.getIName());
+    }
+  }
+
+  private void indexAnnotations(KnownClass cls) {
+    for (String desc : cls.getAnnotationDescriptions()) {
+      classesByAnnotation
+          .computeIfAbsent(desc, __ -> ConcurrentHashMap.newKeySet())
+          .add(cls.getIName());
+    }
+
+    for (KnownMethod method : cls.getMethods()) {
+      for (String desc : method.getAnnotationDescriptions()) {
+        classesByMethodAnnotation
+            .computeIfAbsent(desc, __ -> ConcurrentHashMap.newKeySet())
+            .add(cls.getIName());
+      }
+    }
+  }
+
+  ModelRetention getRetention() {
+    return retention;
+  }
+
+  // Classes in lazy indexes are only included once they have been looked up.
+  Collection<KnownClass> getKnownClasses() {
+    return knownClasses.values();
+  }
+
+  @Nullable
+  KnownClass getKnownClass(String iName) {
+    KnownClass cls = knownClasses.get(iName);
+    if (cls != null || lazyIndexes.isEmpty()) {
+      return cls;
+    }
+
+    return loadLazily(iName);
+  }
+
+  @Nullable
+  private KnownClass loadLazily(String iName) {
+    for (ClassFileIndex index : lazyIndexes) {
+      byte[] data;
+      try {
+        data = index.find(iName);
+      } catch (IOException e) {
+        throw new IllegalStateException(
+            String.format(Locale.US, "Failed to read class '%s'", iName), e);
+      }
+
+      if (data == null) {
+        continue;
+      }
+
+      ClassReader reader = new ClassReader(data);
+      if (!reader.getClassName().equals(iName)) {
+        // The class file is not where its name says it should be.
+        continue;
+      }
+
+      // Another thread may have loaded the class in the meantime, in which case its copy is used.
+      KnownClass cls = KnownClassVisitor.read(reader, retention);
+      indexAnnotations(cls);
+      KnownClass previous = knownClasses.putIfAbsent(iName, cls);
+      if (previous != null) {
+        return previous;
+      }
+
+      indexSupertypes(cls);
+      return cls;
+    }
+
+    return null;
+  }
+
+  @Override
+  public Set<String> hierarchicalClosure(String iName) {
+    Map<String, Set<String>> current = closures;
+    Set<String> closure = current.get(iName);
+    if (closure == null) {
+      closure = Collections.unmodifiableSet(Model.super.hierarchicalClosure(iName));
+      current.putIfAbsent(iName, closure);
+    }
+
+    return closure;
   }
 
   @Override
   public boolean knowsClass(String iName) {
-    return knownClasses.containsKey(iName);
+    return getKnownClass(iName) != null;
   }
 
   @Override
@@ -47,11 +227,45 @@ class ModelImpl implements Model {
     return getKnown(iName).getInterfaceNames();
   }
 
+  @Override
+  public boolean isInterface(String iName) {
+    return getKnown(iName).isInterface();
+  }
+
+  @Override
+  public Set<String> directSubtypesOf(String iName) {
+    return Collections.unmodifiableSet(
+        directSubtypes.getOrDefault(iName, Collections.emptySet()));
+  }
+
   @Override
   public Set<String> annotationsOfClass(String iName) {
     return getKnown(iName).getAnnotationDescriptions();
   }
 
+  @Override
+  public Set<String> classesWithAnnotation(String desc) {
+    return Collections.unmodifiableSet(
+        classesByAnnotation.getOrDefault(desc, Collections.emptySet()));
+  }
+
+  @Override
+  public Set<String> classesWithMethodAnnotation(String desc) {
+    return Collections.unmodifiableSet(
+        classesByMethodAnnotation.getOrDefault(desc, Collections.emptySet()));
+  }
+
+  @Override
+  public InheritedMethodAnnotations inheritedMethodAnnotations(
+      String iName, String annotationDesc) {
+    return InheritedMethodAnnotations.resolve(this, iName, annotationDesc);
+  }
+
+  @Override
+  public Set<String> methodsWithAnnotation(String iName, String annotationDesc) {
+    return getKnown(iName).getMethodsWithAnnotation(annotationDesc);
+  }
+
   @Override
   public Set<String> annotationsOfMethod(String iName, String name, String desc, int access) {
     return getKnown(iName).getKnown(name, desc, access).getAnnotationDescriptions();
@@ -86,8 +300,8 @@ class ModelImpl implements Model {
   @Override
   public boolean knowsAnnotation(String desc) {
     // NULLSAFE_FIXME[Not Vetted Third-Party]
-    String iName = Type.getType(desc).getInternalName();
-    return knowsClass(iName) && Preconditions.checkNotNull(knownClasses.get(iName)).isAnnotation();
+    KnownClass cls = getKnownClass(Type.getType(desc).getInternalName());
+    return cls != null && cls.isAnnotation();
   }
 
   @Override
@@ -102,7 +316,7 @@ class ModelImpl implements Model {
   }
 
   private KnownClass getKnown(String iName) {
-    KnownClass cls = knownClasses.get(iName);
+    KnownClass cls = getKnownClass(iName);
     if (cls == null) {
       throw new IllegalStateException(
           String.format(Locale.US, "Class '%s' is not known to the model", iName));
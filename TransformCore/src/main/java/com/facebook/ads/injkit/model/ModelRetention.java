@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.ads.injkit.model;
+
+import com.facebook.infer.annotation.Nullsafe;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import javax.annotation.Nullable;
+
+// Which annotation data a model keeps. Classes, their hierarchy and their methods are always
+// kept. Annotations are only kept if their descriptor is retained, and property default values
+// only in the annotation types of retained descriptors. Everything else is dropped as classes are
+// added, so that no memory is spent on annotations no injector looks up.
+@Nullsafe(Nullsafe.Mode.LOCAL)
+public final class ModelRetention {
+  private static final ModelRetention ALL = new ModelRetention(null);
+
+  // Null if every annotation is kept.
+  @Nullable private final Set<String> annotationDescs;
+
+  private ModelRetention(@Nullable Set<String> annotationDescs) {
+    this.annotationDescs = annotationDescs;
+  }
+
+  public static ModelRetention all() {
+    return ALL;
+  }
+
+  public static ModelRetention annotations(Collection<String> annotationDescs) {
+    return new ModelRetention(Collections.unmodifiableSet(new HashSet<>(annotationDescs)));
+  }
+
+  boolean retainsAnnotation(String desc) {
+    return annotationDescs == null || annotationDescs.contains(desc);
+  }
+
+  boolean retainsDefaultValues(String iName) {
+    return annotationDescs == null || annotationDescs.contains("L" + iName + ";");
+  }
+
+  // Returns the class itself if there is nothing to drop from it.
+  KnownClass retain(KnownClass cls) {
+    if (annotationDescs == null || isRetained(cls)) {
+      return cls;
+    }
+
+    boolean defaultValues = retainsDefaultValues(cls.getIName());
+    List<KnownMethod> methods = new ArrayList<>(cls.getMethods().size());
+    for (KnownMethod method : cls.getMethods()) {
+      methods.add(
+          new KnownMethod(
+              method.getName(),
+              method.getDesc(),
+              method.getAccess(),
+              retain(method.getAnnotations()),
+              // NULLSAFE_FIXME[Parameter Not Nullable]
+              defaultValues ? method.getAnnotationDefaultValue() : null));
+    }
+
+    return new KnownClass(
+        cls.getAccess(),
+        cls.getIName(),
+        cls.getSuperIName(),
+        cls.getInterfaceNames(),
+        retain(cls.getAnnotations()),
+        methods);
+  }
+
+  private boolean isRetained(KnownClass cls) {
+    if (!retainsAll(cls.getAnnotationDescriptions())) {
+      return false;
+    }
+
+    boolean defaultValues = retainsDefaultValues(cls.getIName());
+    for (KnownMethod method : cls.getMethods()) {
+      if (!retainsAll(method.getAnnotationDescriptions())
+          || (!defaultValues && method.getAnnotationDefaultValue() != null)) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  private boolean retainsAll(Set<String> descs) {
+    for (String desc : descs) {
+      if (!retainsAnnotation(desc)) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  private Set<KnownAnnotation> retain(Set<KnownAnnotation> annotations) {
+    Set<KnownAnnotation> retained = new HashSet<>();
+    for (KnownAnnotation annotation : annotations) {
+      if (retainsAnnotation(annotation.getDescription())) {
+        retained.add(annotation);
+      }
+    }
+
+    return retained;
+  }
+}
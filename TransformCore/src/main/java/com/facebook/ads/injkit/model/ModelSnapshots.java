@@ -0,0 +1,394 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.ads.injkit.model;
+
+import com.facebook.infer.annotation.Nullsafe;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nullable;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AnnotationNode;
+
+// Compact binary form of the classes known to a model. Strings are written once and referred to
+// by index afterwards, as class and annotation names repeat a lot across a jar.
+@Nullsafe(Nullsafe.Mode.LOCAL)
+public final class ModelSnapshots {
+  private static final int MAGIC = 0x494e4a4d;
+  private static final int VERSION = 1;
+
+  private static final int TAG_NULL = 0;
+  private static final int TAG_STRING = 1;
+  private static final int TAG_BYTE = 2;
+  private static final int TAG_BOOLEAN = 3;
+  private static final int TAG_CHAR = 4;
+  private static final int TAG_SHORT = 5;
+  private static final int TAG_INT = 6;
+  private static final int TAG_LONG = 7;
+  private static final int TAG_FLOAT = 8;
+  private static final int TAG_DOUBLE = 9;
+  private static final int TAG_TYPE = 10;
+  private static final int TAG_ENUM = 11;
+  private static final int TAG_ANNOTATION = 12;
+  private static final int TAG_LIST = 13;
+
+  private ModelSnapshots() {}
+
+  // Writes every class known to the given models. When several models know the same class, the
+  // first one wins when the snapshot is read back, as with Model.updateFrom.
+  public static void write(List<Model> models, OutputStream output) throws IOException {
+    List<KnownClass> classes = new ArrayList<>();
+    Set<String> written = new HashSet<>();
+    for (Model model : models) {
+      for (KnownClass cls : asModelImpl(model).getKnownClasses()) {
+        if (written.add(cls.getIName())) {
+          classes.add(cls);
+        }
+      }
+    }
+
+    Writer writer = new Writer(new DataOutputStream(new BufferedOutputStream(output)));
+    writer.output.writeInt(MAGIC);
+    writer.output.writeInt(VERSION);
+    writer.writeVarInt(classes.size());
+    for (KnownClass cls : classes) {
+      writer.writeClass(cls);
+    }
+
+    writer.output.flush();
+  }
+
+  // Reads a snapshot into the model. Classes already known to the model are kept.
+  public static void read(InputStream input, Model model) throws IOException {
+    ModelImpl modelImpl = asModelImpl(model);
+    Reader reader = new Reader(new DataInputStream(new BufferedInputStream(input)));
+    if (reader.input.readInt() != MAGIC) {
+      throw new IOException("Not a model snapshot");
+    }
+
+    int version = reader.input.readInt();
+    if (version != VERSION) {
+      throw new IOException(
+          String.format(Locale.US, "Unsupported model snapshot version %d", version));
+    }
+
+    int count = reader.readVarInt();
+    for (int i = 0; i < count; i++) {
+      modelImpl.add(reader.readClass());
+    }
+  }
+
+  // Encodes a single class on its own, with no strings shared with other classes.
+  static byte[] writeClass(KnownClass cls) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    Writer writer = new Writer(new DataOutputStream(bytes));
+    writer.writeClass(cls);
+    writer.output.flush();
+    return bytes.toByteArray();
+  }
+
+  static KnownClass readClass(InputStream input) throws IOException {
+    return new Reader(new DataInputStream(input)).readClass();
+  }
+
+  private static ModelImpl asModelImpl(Model model) {
+    if (!(model instanceof ModelImpl)) {
+      throw new IllegalArgumentException(
+          String.format(Locale.US, "Cannot snapshot model %s", model.getClass().getName()));
+    }
+
+    return (ModelImpl) model;
+  }
+
+  private static class Writer {
+    private final DataOutputStream output;
+    private final Map<String, Integer> strings = new HashMap<>();
+
+    Writer(DataOutputStream output) {
+      this.output = output;
+    }
+
+    void writeClass(KnownClass cls) throws IOException {
+      writeVarInt(cls.getAccess());
+      writeString(cls.getIName());
+      writeString(cls.getSuperIName());
+      List<String> interfaces = cls.getInterfaceNames();
+      writeVarInt(interfaces.size());
+      for (String iName : interfaces) {
+        writeString(iName);
+      }
+
+      writeAnnotations(cls.getAnnotations());
+      writeVarInt(cls.getMethods().size());
+      for (KnownMethod method : cls.getMethods()) {
+        writeString(method.getName());
+        writeString(method.getDesc());
+        writeVarInt(method.getAccess());
+        writeAnnotations(method.getAnnotations());
+        writeValue(method.getAnnotationDefaultValue());
+      }
+    }
+
+    void writeAnnotations(Set<KnownAnnotation> annotations) throws IOException {
+      writeVarInt(annotations.size());
+      for (KnownAnnotation annotation : annotations) {
+        writeString(annotation.getDescription());
+        Map<String, Object> values = annotation.getValues();
+        writeVarInt(values.size());
+        for (Map.Entry<String, Object> value : values.entrySet()) {
+          writeString(value.getKey());
+          writeValue(value.getValue());
+        }
+      }
+    }
+
+    void writeValue(@Nullable Object value) throws IOException {
+      if (value == null) {
+        output.writeByte(TAG_NULL);
+      } else if (value instanceof String) {
+        output.writeByte(TAG_STRING);
+        writeString((String) value);
+      } else if (value instanceof Byte) {
+        output.writeByte(TAG_BYTE);
+        output.writeByte((Byte) value);
+      } else if (value instanceof Boolean) {
+        output.writeByte(TAG_BOOLEAN);
+        output.writeBoolean((Boolean) value);
+      } else if (value instanceof Character) {
+        output.writeByte(TAG_CHAR);
+        output.writeChar((Character) value);
+      } else if (value instanceof Short) {
+        output.writeByte(TAG_SHORT);
+        output.writeShort((Short) value);
+      } else if (value instanceof Integer) {
+        output.writeByte(TAG_INT);
+        output.writeInt((Integer) value);
+      } else if (value instanceof Long) {
+        output.writeByte(TAG_LONG);
+        output.writeLong((Long) value);
+      } else if (value instanceof Float) {
+        output.writeByte(TAG_FLOAT);
+        output.writeFloat((Float) value);
+      } else if (value instanceof Double) {
+        output.writeByte(TAG_DOUBLE);
+        output.writeDouble((Double) value);
+      } else if (value instanceof Type) {
+        output.writeByte(TAG_TYPE);
+        writeString(((Type) value).getDescriptor());
+      } else if (value instanceof String[]) {
+        output.writeByte(TAG_ENUM);
+        writeString(((String[]) value)[0]);
+        writeString(((String[]) value)[1]);
+      } else if (value instanceof AnnotationNode) {
+        AnnotationNode annotation = (AnnotationNode) value;
+        output.writeByte(TAG_ANNOTATION);
+        writeString(annotation.desc);
+        writeValue(annotation.values);
+      } else if (value instanceof List) {
+        output.writeByte(TAG_LIST);
+        List<?> list = (List<?>) value;
+        writeVarInt(list.size());
+        for (Object element : list) {
+          writeValue(element);
+        }
+      } else {
+        throw new IOException(
+            String.format(
+                Locale.US, "Cannot snapshot value of type %s", value.getClass().getName()));
+      }
+    }
+
+    // 0 stands for null and 1 introduces a new string, written in full. Any other value n refers
+    // to the string introduced (n - 2)th.
+    void writeString(@Nullable String value) throws IOException {
+      if (value == null) {
+        writeVarInt(0);
+        return;
+      }
+
+      Integer index = strings.get(value);
+      if (index != null) {
+        writeVarInt(index + 2);
+        return;
+      }
+
+      strings.put(value, strings.size());
+      byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+      writeVarInt(1);
+      writeVarInt(bytes.length);
+      output.write(bytes);
+    }
+
+    void writeVarInt(int value) throws IOException {
+      while ((value & ~0x7f) != 0) {
+        output.writeByte((value & 0x7f) | 0x80);
+        value >>>= 7;
+      }
+
+      output.writeByte(value);
+    }
+  }
+
+  private static class Reader {
+    private final DataInputStream input;
+    private final List<String> strings = new ArrayList<>();
+
+    Reader(DataInputStream input) {
+      this.input = input;
+    }
+
+    KnownClass readClass() throws IOException {
+      int access = readVarInt();
+      String iName = readNonNullString();
+      String superIName = readString();
+      int interfaceCount = readVarInt();
+      List<String> interfaces = new ArrayList<>(interfaceCount);
+      for (int i = 0; i < interfaceCount; i++) {
+        interfaces.add(readNonNullString());
+      }
+
+      Set<KnownAnnotation> annotations = readAnnotations();
+      int methodCount = readVarInt();
+      List<KnownMethod> methods = new ArrayList<>(methodCount);
+      for (int i = 0; i < methodCount; i++) {
+        String name = readNonNullString();
+        String desc = readNonNullString();
+        int methodAccess = readVarInt();
+        Set<KnownAnnotation> methodAnnotations = readAnnotations();
+        // NULLSAFE_FIXME[Parameter Not Nullable]
+        methods.add(new KnownMethod(name, desc, methodAccess, methodAnnotations, readValue()));
+      }
+
+      // NULLSAFE_FIXME[Parameter Not Nullable]
+      return new KnownClass(access, iName, superIName, interfaces, annotations, methods);
+    }
+
+    Set<KnownAnnotation> readAnnotations() throws IOException {
+      int count = readVarInt();
+      Set<KnownAnnotation> annotations = new HashSet<>();
+      for (int i = 0; i < count; i++) {
+        String desc = readNonNullString();
+        int valueCount = readVarInt();
+        Map<String, Object> values = new HashMap<>();
+        for (int j = 0; j < valueCount; j++) {
+          String key = readNonNullString();
+          // NULLSAFE_FIXME[Parameter Not Nullable]
+          values.put(key, readValue());
+        }
+
+        annotations.add(new KnownAnnotation(desc, values));
+      }
+
+      return annotations;
+    }
+
+    @Nullable
+    @SuppressWarnings("unchecked")
+    Object readValue() throws IOException {
+      int tag = input.readByte();
+      switch (tag) {
+        case TAG_NULL:
+          return null;
+        case TAG_STRING:
+          return readNonNullString();
+        case TAG_BYTE:
+          return input.readByte();
+        case TAG_BOOLEAN:
+          return input.readBoolean();
+        case TAG_CHAR:
+          return input.readChar();
+        case TAG_SHORT:
+          return input.readShort();
+        case TAG_INT:
+          return input.readInt();
+        case TAG_LONG:
+          return input.readLong();
+        case TAG_FLOAT:
+          return input.readFloat();
+        case TAG_DOUBLE:
+          return input.readDouble();
+        case TAG_TYPE:
+          // NULLSAFE_FIXME[Not Vetted Third-Party]
+          return Type.getType(readNonNullString());
+        case TAG_ENUM:
+          return new String[] {readNonNullString(), readNonNullString()};
+        case TAG_ANNOTATION:
+          AnnotationNode annotation = new AnnotationNode(readNonNullString());
+          annotation.values = (List<Object>) readValue();
+          return annotation;
+        case TAG_LIST:
+          int size = readVarInt();
+          List<Object> list = new ArrayList<>(size);
+          for (int i = 0; i < size; i++) {
+            list.add(readValue());
+          }
+
+          return list;
+        default:
+          throw new IOException(String.format(Locale.US, "Invalid value tag %d", tag));
+      }
+    }
+
+    String readNonNullString() throws IOException {
+      String value = readString();
+      if (value == null) {
+        throw new IOException("Unexpected null string in model snapshot");
+      }
+
+      return value;
+    }
+
+    @Nullable
+    String readString() throws IOException {
+      int index = readVarInt();
+      if (index == 0) {
+        return null;
+      }
+
+      if (index > 1) {
+        if (index - 2 >= strings.size()) {
+          throw new IOException(String.format(Locale.US, "Invalid string index %d", index - 2));
+        }
+
+        return strings.get(index - 2);
+      }
+
+      byte[] bytes = new byte[readVarInt()];
+      input.readFully(bytes);
+      String value = new String(bytes, StandardCharsets.UTF_8);
+      strings.add(value);
+      return value;
+    }
+
+    int readVarInt() throws IOException {
+      int value = 0;
+      for (int shift = 0; shift < 32; shift += 7) {
+        int b = input.readUnsignedByte();
+        value |= (b & 0x7f) << shift;
+        if ((b & 0x80) == 0) {
+          return value;
+        }
+      }
+
+      throw new IOException("Malformed variable length integer in model snapshot");
+    }
+  }
+}
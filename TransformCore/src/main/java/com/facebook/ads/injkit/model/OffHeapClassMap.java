@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.ads.injkit.model;
+
+import com.facebook.infer.annotation.Nullsafe;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import javax.annotation.Nullable;
+
+// Known classes stored outside the Java heap. Each class is encoded as a snapshot record and
+// appended to direct buffers; the heap only holds the position of each record, by internal name,
+// and a bounded number of recently used classes, decoded again whenever they are needed after
+// being evicted. Direct buffers count towards -XX:MaxDirectMemorySize rather than -Xmx.
+//
+// Classes are never replaced once added, so put is not supported: only putIfAbsent. Classes can
+// be added and looked up from several threads at once.
+@Nullsafe(Nullsafe.Mode.LOCAL)
+class OffHeapClassMap extends AbstractMap<String, KnownClass> {
+  static final int DEFAULT_CHUNK_BYTES = 8 * 1024 * 1024;
+  static final int DEFAULT_DECODED_CLASSES = 8192;
+
+  private final int chunkBytes;
+  // Records are never moved, so readers may use any chunk without holding the lock.
+  private final List<ByteBuffer> chunks = new CopyOnWriteArrayList<>();
+  // Chunk index in the high 32 bits and offset of the record in the chunk in the low 32 bits.
+  private final Map<String, Long> records = new ConcurrentHashMap<>();
+  private final Cache<String, KnownClass> decoded;
+  // Only used while holding the lock. Null until the first record is added.
+  @Nullable private ByteBuffer writeBuffer;
+
+  OffHeapClassMap() {
+    this(DEFAULT_CHUNK_BYTES, DEFAULT_DECODED_CLASSES);
+  }
+
+  OffHeapClassMap(int chunkBytes, int decodedClasses) {
+    this.chunkBytes = chunkBytes;
+    this.decoded = CacheBuilder.newBuilder().maximumSize(decodedClasses).build();
+  }
+
+  @Override
+  @Nullable
+  public KnownClass get(@Nullable Object key) {
+    if (!(key instanceof String)) {
+      return null;
+    }
+
+    KnownClass cls = decoded.getIfPresent(key);
+    if (cls != null) {
+      return cls;
+    }
+
+    Long record = records.get(key);
+    if (record == null) {
+      return null;
+    }
+
+    cls = read(record);
+    decoded.put((String) key, cls);
+    return cls;
+  }
+
+  @Override
+  public boolean containsKey(@Nullable Object key) {
+    return records.containsKey(key);
+  }
+
+  @Override
+  @Nullable
+  public synchronized KnownClass putIfAbsent(String key, KnownClass value) {
+    KnownClass previous = get(key);
+    if (previous != null) {
+      return previous;
+    }
+
+    byte[] data;
+    try {
+      data = ModelSnapshots.writeClass(value);
+    } catch (IOException e) {
+      throw new IllegalArgumentException(
+          String.format(Locale.US, "Cannot store class '%s' off heap", key), e);
+    }
+
+    // The record is complete before it can be found.
+    records.put(key, append(data));
+    decoded.put(key, value);
+    return null;
+  }
+
+  @Override
+  public int size() {
+    return records.size();
+  }
+
+  @Override
+  public Set<Map.Entry<String, KnownClass>> entrySet() {
+    return new AbstractSet<Map.Entry<String, KnownClass>>() {
+      @Override
+      public Iterator<Map.Entry<String, KnownClass>> iterator() {
+        Iterator<String> keys = records.keySet().iterator();
+        return new Iterator<Map.Entry<String, KnownClass>>() {
+          @Override
+          public boolean hasNext() {
+            return keys.hasNext();
+          }
+
+          @Override
+          public Map.Entry<String, KnownClass> next() {
+            String key = keys.next();
+            // NULLSAFE_FIXME[Parameter Not Nullable]
+            return new AbstractMap.SimpleImmutableEntry<>(key, get(key));
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return records.size();
+      }
+    };
+  }
+
+  // Called with the lock held.
+  private long append(byte[] data) {
+    int recordBytes = Integer.BYTES + data.length;
+    ByteBuffer buffer = writeBuffer;
+    if (buffer == null || buffer.remaining() < recordBytes) {
+      // Records larger than a chunk get a chunk of their own.
+      buffer = ByteBuffer.allocateDirect(Math.max(chunkBytes, recordBytes));
+      chunks.add(buffer.duplicate());
+      writeBuffer = buffer;
+    }
+
+    long record = ((long) (chunks.size() - 1) << 32) | buffer.position();
+    buffer.putInt(data.length);
+    buffer.put(data);
+    return record;
+  }
+
+  private KnownClass read(long record) {
+    ByteBuffer buffer = chunks.get((int) (record >>> 32)).duplicate();
+    int offset = (int) record;
+    int length = buffer.getInt(offset);
+    buffer.limit(offset + Integer.BYTES + length);
+    buffer.position(offset + Integer.BYTES);
+    try {
+      return ModelSnapshots.readClass(new ByteBufferInputStream(buffer));
+    } catch (IOException e) {
+      throw new IllegalStateException("Corrupted off heap class record", e);
+    }
+  }
+
+  private static class ByteBufferInputStream extends InputStream {
+    private final ByteBuffer buffer;
+
+    ByteBufferInputStream(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+      return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) {
+      if (length == 0) {
+        return 0;
+      }
+
+      if (!buffer.hasRemaining()) {
+        return -1;
+      }
+
+      int count = Math.min(length, buffer.remaining());
+      buffer.get(bytes, offset, count);
+      return count;
+    }
+  }
+}
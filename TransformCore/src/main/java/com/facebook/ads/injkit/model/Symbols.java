@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.ads.injkit.model;
+
+import com.facebook.infer.annotation.Nullsafe;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import javax.annotation.Nullable;
+
+// Interns the class names, method names and descriptors kept by the model. The same names
+// appear in a large share of the classes of a classpath (java/lang/Object, <init>, ...), so each
+// is kept once whatever the number of classes referring to it. Known classes are shared between
+// models, so the table is not owned by any of them; names no longer used are collected.
+@Nullsafe(Nullsafe.Mode.LOCAL)
+final class Symbols {
+  private static final Interner<String> INTERNER = Interners.newWeakInterner();
+
+  private Symbols() {}
+
+  static String intern(String symbol) {
+    return INTERNER.intern(symbol);
+  }
+
+  @Nullable
+  static String internNullable(@Nullable String symbol) {
+    return symbol == null ? null : INTERNER.intern(symbol);
+  }
+
+  // Returns an unmodifiable list of the interned symbols, sized to fit.
+  static List<String> internAll(List<String> symbols) {
+    if (symbols.isEmpty()) {
+      return Collections.emptyList();
+    }
+
+    List<String> interned = new ArrayList<>(symbols.size());
+    for (String symbol : symbols) {
+      interned.add(INTERNER.intern(symbol));
+    }
+
+    return Collections.unmodifiableList(interned);
+  }
+}
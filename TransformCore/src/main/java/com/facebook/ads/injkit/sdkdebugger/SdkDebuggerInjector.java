@@ -9,10 +9,15 @@ package com.facebook.ads.injkit.sdkdebugger;
 
 import com.facebook.ads.injkit.AsmNameUtils;
 import com.facebook.ads.injkit.BaseInjector;
+import com.facebook.ads.injkit.ClassContext;
+import com.facebook.ads.injkit.ClassPass;
+import com.facebook.ads.injkit.InjectorInterest;
 import com.facebook.ads.injkit.InvalidAnnotationFormatException;
 import com.facebook.ads.injkit.InvalidAnnotationProcessorConfigurationException;
 import com.facebook.ads.injkit.NopInjector;
 import com.facebook.ads.injkit.ReflectUtils;
+import com.facebook.ads.injkit.StreamingClassVisitor;
+import com.facebook.ads.injkit.StreamingInjector;
 import com.facebook.ads.injkit.model.Model;
 import com.facebook.infer.annotation.Nullsafe;
 import java.lang.annotation.Annotation;
@@ -21,10 +26,16 @@ import java.lang.annotation.RetentionPolicy;
 import java.lang.reflect.Method;
 import java.net.URLClassLoader;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
+import java.util.Set;
 import javax.annotation.Nullable;
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
 import org.objectweb.asm.tree.AnnotationNode;
@@ -34,9 +45,13 @@ import org.objectweb.asm.tree.MethodInsnNode;
 import org.objectweb.asm.tree.MethodNode;
 
 @Nullsafe(Nullsafe.Mode.LOCAL)
-class SdkDebuggerInjector extends BaseInjector {
+class SdkDebuggerInjector extends BaseInjector implements StreamingInjector {
   private static final String LOG_CALL_METHOD_NAME = "logCall";
   private static final String METHOD_DESCRIPTION_PARAM = "description";
+  private static final String LOG_CALL_METHOD_DESC =
+      "(Ljava/lang/String;Ljava/lang/String;Ljava/lang/String;)V";
+  // The logger is called with three arguments on the stack.
+  private static final int LOG_CALL_MAX_STACK = 3;
 
   private final String loggerIName;
   private final Class<? extends Annotation> logCallAnnotationClass;
@@ -107,16 +122,116 @@ class SdkDebuggerInjector extends BaseInjector {
   }
 
   @Override
-  protected void processImpl(ClassNode clsNode, Model model) {
-    // NULLSAFE_FIXME[Not Vetted Third-Party]
-    for (MethodNode method : clsNode.methods) {
-      AnnotationNode foundAnnotation =
-          // NULLSAFE_FIXME[Not Vetted Third-Party]
-          findAndRemoveAnnotation(method.visibleAnnotations, method.invisibleAnnotations);
-      if (foundAnnotation != null) {
+  public InjectorInterest getInterest() {
+    return InjectorInterest.annotations(
+        Collections.singletonList(
+            AsmNameUtils.classJavaNameToDescriptor(logCallAnnotationClass.getName())));
+  }
+
+  @Override
+  @Nullable
+  protected ClassPass startClassImpl(ClassNode clsNode, ClassContext context) {
+    if (!context.mayUseAnnotations(
+        Collections.singletonList(
+            AsmNameUtils.classJavaNameToDescriptor(logCallAnnotationClass.getName())))) {
+      return null;
+    }
+
+    return new ClassPass() {
+      @Override
+      public boolean processMethod(MethodNode method) {
+        AnnotationNode foundAnnotation =
+            // NULLSAFE_FIXME[Not Vetted Third-Party]
+            findAndRemoveAnnotation(method.visibleAnnotations, method.invisibleAnnotations);
+        if (foundAnnotation == null) {
+          return false;
+        }
+
         injectLogCall(method, getAnnotationDescription(foundAnnotation));
+        return true;
       }
+    };
+  }
+
+  @Override
+  @Nullable
+  public StreamingClassVisitor makeVisitor(ClassReader reader, Model model, ClassVisitor next) {
+    String iName = reader.getClassName();
+    String annotationDesc =
+        AsmNameUtils.classJavaNameToDescriptor(logCallAnnotationClass.getName());
+    // Methods the model knows without the annotation are left for the writer to copy. Classes the
+    // model does not know are visited whole.
+    Set<String> annotatedMethods =
+        model.knowsClass(iName) ? model.methodsWithAnnotation(iName, annotationDesc) : null;
+    if (annotatedMethods != null && annotatedMethods.isEmpty()) {
+      return null;
     }
+
+    return new StreamingClassVisitor(next) {
+      @Override
+      @Nullable
+      public MethodVisitor visitMethod(
+          int access,
+          String name,
+          String descriptor,
+          @Nullable String signature,
+          @Nullable String[] exceptions) {
+        MethodVisitor methodVisitor =
+            super.visitMethod(access, name, descriptor, signature, exceptions);
+        if (methodVisitor == null
+            || (annotatedMethods != null && !annotatedMethods.contains(name + descriptor))) {
+          return methodVisitor;
+        }
+
+        return new MethodVisitor(Opcodes.ASM9, methodVisitor) {
+          private boolean logCall;
+          @Nullable private String description;
+
+          @Override
+          @Nullable
+          public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+            if (logCall || !descriptor.equals(annotationDesc)) {
+              return super.visitAnnotation(descriptor, visible);
+            }
+
+            // Annotations are visited before the code, so the description is known there.
+            logCall = true;
+            markChanged();
+            return new AnnotationVisitor(Opcodes.ASM9) {
+              @Override
+              public void visit(String name, Object value) {
+                if (name.equalsIgnoreCase(METHOD_DESCRIPTION_PARAM)) {
+                  description = (String) value;
+                }
+              }
+            };
+          }
+
+          @Override
+          public void visitCode() {
+            super.visitCode();
+            if (logCall) {
+              super.visitLdcInsn(name);
+              // NULLSAFE_FIXME[Parameter Not Nullable]
+              super.visitLdcInsn(description);
+              // Same as in injectLogCall, the hash tells the instances of the method apart.
+              super.visitLdcInsn(Integer.toString(hashCode(), 16));
+              super.visitMethodInsn(
+                  Opcodes.INVOKESTATIC,
+                  loggerIName,
+                  LOG_CALL_METHOD_NAME,
+                  LOG_CALL_METHOD_DESC,
+                  false);
+            }
+          }
+
+          @Override
+          public void visitMaxs(int maxStack, int maxLocals) {
+            super.visitMaxs(logCall ? Math.max(maxStack, LOG_CALL_MAX_STACK) : maxStack, maxLocals);
+          }
+        };
+      }
+    };
   }
 
   @Nullable
@@ -166,7 +281,7 @@ class SdkDebuggerInjector extends BaseInjector {
             Opcodes.INVOKESTATIC,
             loggerIName,
             LOG_CALL_METHOD_NAME,
-            "(Ljava/lang/String;Ljava/lang/String;Ljava/lang/String;)V",
+            LOG_CALL_METHOD_DESC,
             false);
     // NULLSAFE_FIXME[Not Vetted Third-Party]
     method.instructions.insert(logCallMethod);
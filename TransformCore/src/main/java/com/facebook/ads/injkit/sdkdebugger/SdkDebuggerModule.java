@@ -11,6 +11,8 @@ import com.facebook.ads.injkit.ConfigurationParser;
 import com.facebook.ads.injkit.InjectorFactory;
 import com.facebook.ads.injkit.Module;
 import com.facebook.infer.annotation.Nullsafe;
+import java.util.Collection;
+import java.util.Collections;
 
 @Nullsafe(Nullsafe.Mode.LOCAL)
 public class SdkDebuggerModule implements Module<SdkDebuggerConfiguration> {
@@ -23,4 +25,13 @@ public class SdkDebuggerModule implements Module<SdkDebuggerConfiguration> {
   public InjectorFactory<SdkDebuggerConfiguration> makeInjectorFactory() {
     return new SdkDebuggerInjectorFactory();
   }
+
+  @Override
+  public Collection<String> getModelAnnotationClasses(SdkDebuggerConfiguration configuration) {
+    // Disabled configurations have no annotation class, and their injector looks nothing up.
+    String annotationClass = configuration.getLogCallAnnotationClass();
+    return annotationClass == null
+        ? Collections.emptyList()
+        : Collections.singletonList(annotationClass);
+  }
 }
@@ -10,16 +10,28 @@ package com.facebook.ads.injkit.threadcheck;
 import com.facebook.ads.injkit.AnnotationProcessingException;
 import com.facebook.ads.injkit.AsmNameUtils;
 import com.facebook.ads.injkit.BaseInjector;
+import com.facebook.ads.injkit.ClassContext;
+import com.facebook.ads.injkit.ClassPass;
+import com.facebook.ads.injkit.InjectorInterest;
 import com.facebook.ads.injkit.InvalidAnnotationProcessorConfigurationException;
 import com.facebook.ads.injkit.ReflectUtils;
+import com.facebook.ads.injkit.StreamingClassVisitor;
+import com.facebook.ads.injkit.StreamingInjector;
 import com.facebook.ads.injkit.model.Model;
 import com.facebook.infer.annotation.Nullsafe;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Set;
+import javax.annotation.Nullable;
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
 import org.objectweb.asm.tree.AnnotationNode;
@@ -32,7 +44,7 @@ import org.objectweb.asm.tree.MethodInsnNode;
 import org.objectweb.asm.tree.MethodNode;
 
 @Nullsafe(Nullsafe.Mode.LOCAL)
-class ThreadCheckInjector extends BaseInjector {
+class ThreadCheckInjector extends BaseInjector implements StreamingInjector {
   private static final String ANDROID_LOOPER = "android/os/Looper";
   private static final String GET_CURRENT_LOOPER = "myLooper";
   private static final String GET_MAIN_LOOPER = "getMainLooper";
@@ -40,17 +52,29 @@ class ThreadCheckInjector extends BaseInjector {
   private static final String UI_VIOLATION_METHOD_NAME = "uiThreadViolationDetected";
   private static final String VIOLATION_METHOD_DESC =
       "(Ljava/lang/Class;Ljava/lang/String;Ljava/lang/String;)V";
+  // The violation handler is called with three arguments on the stack.
+  private static final int LOOPER_CHECK_MAX_STACK = 3;
 
   // Overridable for tests.
   static String androidLooper = ANDROID_LOOPER;
 
   private final ThreadCheckConfiguration config;
+  private final List<String> annotationDescs = new ArrayList<>();
 
   ThreadCheckInjector(ThreadCheckConfiguration config, ClassLoader applicationCode)
       throws InvalidAnnotationProcessorConfigurationException {
     super(__ -> false);
 
     this.config = config;
+    for (String annotationClass :
+        Arrays.asList(
+            config.getUiThreadAnnotationClass(),
+            config.getWorkerThreadAnnotationClass(),
+            config.getAnyThreadAnnotationClass())) {
+      if (annotationClass != null) {
+        annotationDescs.add(AsmNameUtils.classJavaNameToDescriptor(annotationClass));
+      }
+    }
 
     if (config.isEnabled()) {
       Class violationHandlerClass =
@@ -70,23 +94,170 @@ class ThreadCheckInjector extends BaseInjector {
   }
 
   @Override
-  protected void processImpl(ClassNode clsNode, Model model) throws AnnotationProcessingException {
+  public InjectorInterest getInterest() {
+    return InjectorInterest.annotations(annotationDescs);
+  }
+
+  @Override
+  @Nullable
+  protected ClassPass startClassImpl(ClassNode clsNode, ClassContext context)
+      throws AnnotationProcessingException {
     if (clsNode.methods == null) {
-      return;
+      return null;
+    }
+
+    if (!context.mayUseAnnotations(annotationDescs)) {
+      return null;
     }
 
+    Model model = context.getModel();
     boolean isInterface = ((clsNode.access & Opcodes.ACC_INTERFACE) != 0);
 
-    Checking defaultChecking = computeClassChecking(clsNode, model);
-    removeChecking(clsNode);
+    // NULLSAFE_FIXME[Not Vetted Third-Party]
+    Checking defaultChecking = computeClassChecking(clsNode.name, model);
+    return new ClassPass() {
+      @Override
+      public boolean beginClass() {
+        return removeChecking(clsNode);
+      }
 
-    for (MethodNode method : clsNode.methods) {
-      boolean isMethodAbstract = ((method.access & Opcodes.ACC_ABSTRACT) != 0);
-      processMethod(clsNode, method, defaultChecking, !isInterface && !isMethodAbstract, model);
-    }
+      @Override
+      public boolean processMethod(MethodNode method) throws AnnotationProcessingException {
+        boolean isMethodAbstract = ((method.access & Opcodes.ACC_ABSTRACT) != 0);
+        return ThreadCheckInjector.this.processMethod(
+            clsNode, method, defaultChecking, !isInterface && !isMethodAbstract, model);
+      }
+    };
   }
 
-  private void processMethod(
+  @Override
+  @Nullable
+  public StreamingClassVisitor makeVisitor(ClassReader reader, Model model, ClassVisitor next)
+      throws AnnotationProcessingException {
+    String iName = reader.getClassName();
+    boolean isInterface = ((reader.getAccess() & Opcodes.ACC_INTERFACE) != 0);
+    Checking defaultChecking = computeClassChecking(iName, model);
+    return new StreamingClassVisitor(next) {
+      private boolean hasFrames;
+
+      @Override
+      public void visit(
+          int version,
+          int access,
+          String name,
+          @Nullable String signature,
+          @Nullable String superName,
+          @Nullable String[] interfaces) {
+        // The major version is in the low 16 bits.
+        hasFrames = (version & 0xffff) >= Opcodes.V1_6;
+        super.visit(version, access, name, signature, superName, interfaces);
+      }
+
+      @Override
+      @Nullable
+      public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+        if (annotationDescs.contains(descriptor)) {
+          markChanged();
+          return null;
+        }
+
+        return super.visitAnnotation(descriptor, visible);
+      }
+
+      // Whether the method may have annotations to remove, which is always the case if the model
+      // does not know it.
+      private boolean mayHaveChecking(String name, String descriptor, int access) {
+        if (!model.knowsClass(iName) || !model.hasMethod(iName, name, descriptor, access)) {
+          return true;
+        }
+
+        Set<String> annotations = model.annotationsOfMethod(iName, name, descriptor, access);
+        for (String annotationDesc : annotationDescs) {
+          if (annotations.contains(annotationDesc)) {
+            return true;
+          }
+        }
+
+        return false;
+      }
+
+      @Override
+      @Nullable
+      public MethodVisitor visitMethod(
+          int access,
+          String name,
+          String descriptor,
+          @Nullable String signature,
+          @Nullable String[] exceptions) {
+        MethodVisitor methodVisitor =
+            super.visitMethod(access, name, descriptor, signature, exceptions);
+        if (methodVisitor == null || name.equals(AsmNameUtils.CL_INIT)) {
+          return methodVisitor;
+        }
+
+        Checking checking;
+        try {
+          checking =
+              computeMethodChecking(iName, name, descriptor, access, model)
+                  .orDefault(defaultChecking);
+        } catch (AnnotationProcessingException e) {
+          throw failure(e);
+        }
+
+        boolean isMethodAbstract = ((access & Opcodes.ACC_ABSTRACT) != 0);
+        boolean addCheck = needsLooperCheck(checking) && !isInterface && !isMethodAbstract;
+        if (!addCheck && !mayHaveChecking(name, descriptor, access)) {
+          // The writer copies the method as it is.
+          return methodVisitor;
+        }
+
+        return new MethodVisitor(Opcodes.ASM9, methodVisitor) {
+          @Override
+          @Nullable
+          public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+            if (annotationDescs.contains(descriptor)) {
+              markChanged();
+              return null;
+            }
+
+            return super.visitAnnotation(descriptor, visible);
+          }
+
+          @Override
+          public void visitCode() {
+            super.visitCode();
+            if (!addCheck) {
+              return;
+            }
+
+            makeLooperCheck(iName, name, descriptor, checking == Checking.IS_UI)
+                .accept(methodVisitor);
+            // The check ends at the label it jumps to, which has the frame the method starts
+            // with. The nop keeps that frame apart from one the code may have at its start.
+            // Classes older than Java 6 have no frames, and writers reject any given to them.
+            if (hasFrames) {
+              methodVisitor.visitFrame(Opcodes.F_SAME, 0, null, 0, null);
+              methodVisitor.visitInsn(Opcodes.NOP);
+            }
+
+            markChanged();
+          }
+
+          @Override
+          public void visitMaxs(int maxStack, int maxLocals) {
+            super.visitMaxs(
+                addCheck ? Math.max(maxStack, LOOPER_CHECK_MAX_STACK) : maxStack, maxLocals);
+          }
+        };
+      }
+    };
+  }
+
+  private boolean needsLooperCheck(Checking checking) {
+    return checking != Checking.NOT_DEFINED && checking != Checking.IS_ANY && config.isEnabled();
+  }
+
+  private boolean processMethod(
       ClassNode classNode,
       MethodNode method,
       Checking defaultChecking,
@@ -97,61 +268,75 @@ class ThreadCheckInjector extends BaseInjector {
     // parameters.
     // NULLSAFE_FIXME[Not Vetted Third-Party]
     if (method.name.equals(AsmNameUtils.CL_INIT)) {
-      return;
+      return false;
     }
 
     // Remove the annotations even if disabled.
-    removeChecking(method);
-
-    Checking checking = computeMethodChecking(classNode, method, model).orDefault(defaultChecking);
-    if (checking == Checking.NOT_DEFINED
-        || checking == Checking.IS_ANY
-        || !config.isEnabled()
-        || !allowCodeInjection) {
-      return;
+    boolean changed = removeChecking(method);
+
+    Checking checking =
+        computeMethodChecking(
+                // NULLSAFE_FIXME[Not Vetted Third-Party]
+                classNode.name,
+                // NULLSAFE_FIXME[Not Vetted Third-Party]
+                method.name,
+                // NULLSAFE_FIXME[Not Vetted Third-Party]
+                method.desc,
+                method.access,
+                model)
+            .orDefault(defaultChecking);
+    if (!needsLooperCheck(checking) || !allowCodeInjection) {
+      return changed;
     }
 
     addLooperCheck(classNode, method, checking == Checking.IS_UI);
+    return true;
   }
 
-  private void removeChecking(ClassNode classNode) {
+  private boolean removeChecking(ClassNode classNode) {
     // NULLSAFE_FIXME[Not Vetted Third-Party]
-    removeChecking(classNode.visibleAnnotations, classNode.invisibleAnnotations);
+    return removeChecking(classNode.visibleAnnotations, classNode.invisibleAnnotations);
   }
 
-  private void removeChecking(MethodNode methodNode) {
+  private boolean removeChecking(MethodNode methodNode) {
     // NULLSAFE_FIXME[Not Vetted Third-Party]
-    removeChecking(methodNode.visibleAnnotations, methodNode.invisibleAnnotations);
+    return removeChecking(methodNode.visibleAnnotations, methodNode.invisibleAnnotations);
   }
 
-  private void removeChecking(List<AnnotationNode> visible, List<AnnotationNode> invisible) {
-    removeAnnotation(visible, invisible, config.getUiThreadAnnotationClass());
-    removeAnnotation(visible, invisible, config.getWorkerThreadAnnotationClass());
-    removeAnnotation(visible, invisible, config.getAnyThreadAnnotationClass());
+  private boolean removeChecking(List<AnnotationNode> visible, List<AnnotationNode> invisible) {
+    boolean removed = removeAnnotation(visible, invisible, config.getUiThreadAnnotationClass());
+    removed |= removeAnnotation(visible, invisible, config.getWorkerThreadAnnotationClass());
+    removed |= removeAnnotation(visible, invisible, config.getAnyThreadAnnotationClass());
+    return removed;
   }
 
-  private static void removeAnnotation(
+  private static boolean removeAnnotation(
       List<AnnotationNode> visible, List<AnnotationNode> invisible, String annotationClassName) {
     if (annotationClassName == null) {
-      return;
+      return false;
     }
 
-    removeAnnotation(visible, AsmNameUtils.classJavaNameToDescriptor(annotationClassName));
-    removeAnnotation(invisible, AsmNameUtils.classJavaNameToDescriptor(annotationClassName));
+    boolean removed =
+        removeAnnotation(visible, AsmNameUtils.classJavaNameToDescriptor(annotationClassName));
+    removed |=
+        removeAnnotation(invisible, AsmNameUtils.classJavaNameToDescriptor(annotationClassName));
+    return removed;
   }
 
-  private static void removeAnnotation(List<AnnotationNode> annotations, String desc) {
+  private static boolean removeAnnotation(List<AnnotationNode> annotations, String desc) {
     if (annotations == null) {
-      return;
+      return false;
     }
 
     for (Iterator<AnnotationNode> it = annotations.iterator(); it.hasNext(); ) {
       AnnotationNode node = it.next();
       if (desc.equals(node.desc)) {
         it.remove();
-        return;
+        return true;
       }
     }
+
+    return false;
   }
 
   private void addLooperCheck(
@@ -160,6 +345,16 @@ class ThreadCheckInjector extends BaseInjector {
       method.instructions = new InsnList();
     }
 
+    method.instructions.insert(
+        // NULLSAFE_FIXME[Not Vetted Third-Party]
+        makeLooperCheck(classNode.name, method.name, method.desc, checkForPositiveLooperMatch));
+  }
+
+  private InsnList makeLooperCheck(
+      String classIName,
+      String methodName,
+      String methodDesc,
+      boolean checkForPositiveLooperMatch) {
     InsnList insns = new InsnList();
 
     invokeStatic(insns, androidLooper, GET_CURRENT_LOOPER, "()L" + androidLooper + ";");
@@ -172,9 +367,9 @@ class ThreadCheckInjector extends BaseInjector {
 
     // Condition not OK:
 
-    insns.add(new LdcInsnNode(Type.getType("L" + classNode.name + ";")));
-    insns.add(new LdcInsnNode(method.name));
-    insns.add(new LdcInsnNode(method.desc));
+    insns.add(new LdcInsnNode(Type.getType("L" + classIName + ";")));
+    insns.add(new LdcInsnNode(methodName));
+    insns.add(new LdcInsnNode(methodDesc));
     invokeStatic(
         insns,
         AsmNameUtils.classJavaNameToInternalName(config.getViolationHandlerClass()),
@@ -184,29 +379,27 @@ class ThreadCheckInjector extends BaseInjector {
     // Condition OK:
 
     insns.add(conditionOk);
-
-    method.instructions.insert(insns);
+    return insns;
   }
 
   private static void invokeStatic(InsnList list, String iname, String method, String desc) {
     list.add(new MethodInsnNode(Opcodes.INVOKESTATIC, iname, method, desc, false));
   }
 
-  private static Set<String> annotationClosure(String className, ClassNode node, Model model) {
+  private static Set<String> annotationClosure(String className, String iName, Model model) {
     if (className == null) {
       return new HashSet<>();
     }
 
     return model.closureWithAnnotationFilter(
-        // NULLSAFE_FIXME[Not Vetted Third-Party]
-        node.name, AsmNameUtils.classJavaNameToDescriptor(className));
+        iName, AsmNameUtils.classJavaNameToDescriptor(className));
   }
 
-  private Checking computeClassChecking(ClassNode node, Model model)
+  private Checking computeClassChecking(String iName, Model model)
       throws AnnotationProcessingException {
-    Set<String> ui = annotationClosure(config.getUiThreadAnnotationClass(), node, model);
-    Set<String> work = annotationClosure(config.getWorkerThreadAnnotationClass(), node, model);
-    Set<String> any = annotationClosure(config.getAnyThreadAnnotationClass(), node, model);
+    Set<String> ui = annotationClosure(config.getUiThreadAnnotationClass(), iName, model);
+    Set<String> work = annotationClosure(config.getWorkerThreadAnnotationClass(), iName, model);
+    Set<String> any = annotationClosure(config.getAnyThreadAnnotationClass(), iName, model);
 
     if ((ui.isEmpty() ? 0 : 1) + (work.isEmpty() ? 0 : 1) + (any.isEmpty() ? 0 : 1) > 1) {
       throw new AnnotationProcessingException(
@@ -239,27 +432,24 @@ class ThreadCheckInjector extends BaseInjector {
   }
 
   private static Set<String> methodClosure(
-      String className, ClassNode node, MethodNode method, Model model) {
+      String className, String iName, String name, String desc, int access, Model model) {
     if (className == null) {
       return new HashSet<>();
     }
 
     return model.methodClosureWithAnnotationFilter(
-        // NULLSAFE_FIXME[Not Vetted Third-Party]
-        node.name,
-        // NULLSAFE_FIXME[Not Vetted Third-Party]
-        method.name,
-        // NULLSAFE_FIXME[Not Vetted Third-Party]
-        method.desc,
-        method.access,
-        AsmNameUtils.classJavaNameToDescriptor(className));
+        iName, name, desc, access, AsmNameUtils.classJavaNameToDescriptor(className));
   }
 
-  private Checking computeMethodChecking(ClassNode node, MethodNode method, Model model)
+  private Checking computeMethodChecking(
+      String iName, String name, String desc, int access, Model model)
       throws AnnotationProcessingException {
-    Set<String> ui = methodClosure(config.getUiThreadAnnotationClass(), node, method, model);
-    Set<String> work = methodClosure(config.getWorkerThreadAnnotationClass(), node, method, model);
-    Set<String> any = methodClosure(config.getAnyThreadAnnotationClass(), node, method, model);
+    Set<String> ui =
+        methodClosure(config.getUiThreadAnnotationClass(), iName, name, desc, access, model);
+    Set<String> work =
+        methodClosure(config.getWorkerThreadAnnotationClass(), iName, name, desc, access, model);
+    Set<String> any =
+        methodClosure(config.getAnyThreadAnnotationClass(), iName, name, desc, access, model);
 
     if ((ui.isEmpty() ? 0 : 1) + (work.isEmpty() ? 0 : 1) + (any.isEmpty() ? 0 : 1) > 1) {
       throw new AnnotationProcessingException(
@@ -269,9 +459,9 @@ class ThreadCheckInjector extends BaseInjector {
                   + " %s%s (access %d): [%s] have UI annotation "
                   + "(%s), [%s] have worker annotation (%s) and [%s] have any "
                   + "annotation (%s)",
-              method.name,
-              method.desc,
-              method.access,
+              name,
+              desc,
+              access,
               String.join(",", ui),
               config.getUiThreadAnnotationClass(),
               String.join(",", work),
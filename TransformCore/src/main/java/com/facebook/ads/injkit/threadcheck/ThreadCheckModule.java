@@ -11,6 +11,10 @@ import com.facebook.ads.injkit.ConfigurationParser;
 import com.facebook.ads.injkit.InjectorFactory;
 import com.facebook.ads.injkit.Module;
 import com.facebook.infer.annotation.Nullsafe;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
 
 @Nullsafe(Nullsafe.Mode.LOCAL)
 public class ThreadCheckModule implements Module<ThreadCheckConfiguration> {
@@ -23,4 +27,20 @@ public class ThreadCheckModule implements Module<ThreadCheckConfiguration> {
   public InjectorFactory<ThreadCheckConfiguration> makeInjectorFactory() {
     return new ThreadCheckInjectorFactory();
   }
+
+  @Override
+  public Collection<String> getModelAnnotationClasses(ThreadCheckConfiguration configuration) {
+    List<String> annotationClasses = new ArrayList<>();
+    for (String annotationClass :
+        Arrays.asList(
+            configuration.getUiThreadAnnotationClass(),
+            configuration.getWorkerThreadAnnotationClass(),
+            configuration.getAnyThreadAnnotationClass())) {
+      if (annotationClass != null) {
+        annotationClasses.add(annotationClass);
+      }
+    }
+
+    return annotationClasses;
+  }
 }
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.ads.injkit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class BufferPoolTest {
+  private static byte[] classData(int length) {
+    byte[] data = new byte[length];
+    System.arraycopy(
+        ClassFileDetectorStream.CLASS_FILE_MAGIC,
+        0,
+        data,
+        0,
+        ClassFileDetectorStream.CLASS_FILE_MAGIC.length);
+    for (int i = ClassFileDetectorStream.CLASS_FILE_MAGIC.length; i < length; i++) {
+      data[i] = (byte) i;
+    }
+
+    return data;
+  }
+
+  private static byte[] read(byte[] data, long expectedSize) throws Exception {
+    BufferPool buffers = BufferPool.get();
+    int length = buffers.read(new ByteArrayInputStream(data), expectedSize);
+    return Arrays.copyOf(buffers.getInput(), length);
+  }
+
+  @Test
+  public void readsWhateverTheExpectedSize() throws Exception {
+    byte[] data = classData(100_000);
+
+    assertThat(read(data, -1)).isEqualTo(data);
+    assertThat(read(data, data.length)).isEqualTo(data);
+    assertThat(read(data, 10)).isEqualTo(data);
+    assertThat(read(data, 2 * data.length)).isEqualTo(data);
+    assertThat(read(new byte[0], 0)).isEmpty();
+  }
+
+  @Test
+  public void inputBufferIsReusedOnceLargeEnough() throws Exception {
+    BufferPool buffers = BufferPool.get();
+    buffers.read(new ByteArrayInputStream(classData(50_000)), 50_000);
+    byte[] buffer = buffers.getInput();
+
+    buffers.read(new ByteArrayInputStream(classData(1_000)), 1_000);
+
+    assertThat(buffers.getInput()).isSameAs(buffer);
+  }
+
+  @Test
+  public void classesAreDetectedInReadBuffer() throws Exception {
+    BufferPool buffers = BufferPool.get();
+    int length = buffers.read(new ByteArrayInputStream(classData(10)), 10);
+
+    assertThat(ClassFileDetectorStream.isClass("A.class", buffers.getInput(), length)).isTrue();
+    assertThat(ClassFileDetectorStream.isClass("A.txt", buffers.getInput(), length)).isFalse();
+    assertThat(ClassFileDetectorStream.isClass("A.class", buffers.getInput(), 3)).isFalse();
+    assertThat(ClassFileDetectorStream.isClass("A.class", new byte[] {1, 2, 3, 4}, 4)).isFalse();
+  }
+
+  @Test
+  public void outputIsEmptiedAndComparedInPlace() throws Exception {
+    BufferPool buffers = BufferPool.get();
+    BufferPool.Output output = buffers.output();
+    output.write(new byte[] {1, 2, 3});
+
+    assertThat(output.contentEquals(new byte[] {1, 2, 3, 9}, 3)).isTrue();
+    assertThat(output.contentEquals(new byte[] {1, 2, 4}, 3)).isFalse();
+    assertThat(output.contentEquals(new byte[] {1, 2}, 2)).isFalse();
+    assertThat(buffers.output().size()).isEqualTo(0);
+  }
+
+  @Test
+  public void largeBuffersAreNotRetained() throws Exception {
+    BufferPool buffers = BufferPool.get();
+    byte[] large = classData(2 * BufferPool.MAX_RETAINED_SIZE);
+    assertThat(read(large, large.length)).isEqualTo(large);
+    buffers.output().write(large);
+
+    assertThat(read(classData(10), 10)).isEqualTo(classData(10));
+    assertThat(buffers.getInput().length).isLessThanOrEqualTo(BufferPool.MAX_RETAINED_SIZE);
+    assertThat(buffers.output().getBuffer().length)
+        .isLessThanOrEqualTo(BufferPool.MAX_RETAINED_SIZE);
+  }
+}
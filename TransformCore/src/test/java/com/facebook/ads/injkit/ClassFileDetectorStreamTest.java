@@ -113,6 +113,17 @@ public class ClassFileDetectorStreamTest {
     assertThat(read).isEqualTo(VALID_CLASS);
   }
 
+  @Test
+  public void magicOnlyFileIsReadCompletely() throws IOException {
+    ByteArrayInputStream data = new ByteArrayInputStream(ClassFileDetectorStream.CLASS_FILE_MAGIC);
+
+    ClassFileDetectorStream detector = new ClassFileDetectorStream("Foo.class", data);
+    byte[] read = readAll(detector);
+
+    assertThat(detector.isClass()).isTrue();
+    assertThat(read).isEqualTo(ClassFileDetectorStream.CLASS_FILE_MAGIC);
+  }
+
   public static byte[] hexStringToByteArray(String s) {
     int len = s.length();
     byte[] data = new byte[len / 2];
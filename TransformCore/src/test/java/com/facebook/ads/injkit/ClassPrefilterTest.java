@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.ads.injkit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.facebook.ads.injkit.model.Model;
+import com.facebook.ads.injkit.model.ModelFactory;
+import java.util.Arrays;
+import java.util.Collections;
+import javax.annotation.Nullable;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
+
+@RunWith(JUnit4.class)
+public class ClassPrefilterTest {
+  private static final String ANNOTATION_DESC = "Lmy/Ann;";
+
+  private final Model model = ModelFactory.defaultFactory().make();
+
+  private static byte[] makeClass(
+      String iName, String superIName, @Nullable String methodAnnotationDesc, String... calls) {
+    ClassWriter writer = new ClassWriter(0);
+    writer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, iName, null, superIName, null);
+    MethodVisitor method = writer.visitMethod(Opcodes.ACC_PUBLIC, "foo", "()V", null, null);
+    if (methodAnnotationDesc != null) {
+      method.visitAnnotation(methodAnnotationDesc, false).visitEnd();
+    }
+
+    method.visitCode();
+    for (String call : calls) {
+      method.visitMethodInsn(Opcodes.INVOKESTATIC, "other/Util", call, "()V", false);
+    }
+
+    method.visitInsn(Opcodes.RETURN);
+    method.visitMaxs(0, 1);
+    method.visitEnd();
+    writer.visitEnd();
+    return writer.toByteArray();
+  }
+
+  private boolean mayBeProcessed(InjectorInterest interest, byte[] classFile) {
+    model.update(new ClassReader(classFile));
+    return new ClassPrefilter(Collections.singletonList(injector(interest)))
+        .mayBeProcessed(classFile, new ClassReader(classFile), model);
+  }
+
+  private static Injector injector(InjectorInterest interest) {
+    return new Injector() {
+      @Override
+      public boolean process(ClassNode clsNode, Model model) {
+        return false;
+      }
+
+      @Override
+      public InjectorInterest getInterest() {
+        return interest;
+      }
+    };
+  }
+
+  @Test
+  public void classesWithoutAnythingOfInterestAreRejected() {
+    assertThat(
+            mayBeProcessed(
+                InjectorInterest.of(
+                    Collections.singletonList(ANNOTATION_DESC),
+                    Collections.singletonList("a/View"),
+                    Collections.singletonList("run")),
+                makeClass("a/B", "java/lang/Object", "Lmy/Other;", "walk")))
+        .isFalse();
+  }
+
+  @Test
+  public void annotationsInConstantPoolAreOfInterest() {
+    assertThat(
+            mayBeProcessed(
+                InjectorInterest.annotations(Collections.singletonList(ANNOTATION_DESC)),
+                makeClass("a/B", "java/lang/Object", ANNOTATION_DESC)))
+        .isTrue();
+  }
+
+  @Test
+  public void annotationsOfAncestorsAreOfInterest() {
+    model.update(new ClassReader(makeClass("a/Base", "java/lang/Object", ANNOTATION_DESC)));
+
+    assertThat(
+            mayBeProcessed(
+                InjectorInterest.annotations(Collections.singletonList(ANNOTATION_DESC)),
+                makeClass("a/B", "a/Base", null)))
+        .isTrue();
+  }
+
+  @Test
+  public void methodNamesInConstantPoolAreOfInterest() {
+    assertThat(
+            mayBeProcessed(
+                InjectorInterest.of(
+                    Collections.emptyList(),
+                    Collections.emptyList(),
+                    Collections.singletonList("r\u00e9sum\u00e9")),
+                makeClass("a/B", "java/lang/Object", null, "walk", "r\u00e9sum\u00e9")))
+        .isTrue();
+  }
+
+  @Test
+  public void supertypesInHierarchyAreOfInterest() {
+    model.update(new ClassReader(makeClass("a/Middle", "a/View", null)));
+
+    assertThat(
+            mayBeProcessed(
+                InjectorInterest.of(
+                    Collections.emptyList(),
+                    Collections.singletonList("a/View"),
+                    Collections.emptyList()),
+                makeClass("a/B", "a/Middle", null)))
+        .isTrue();
+  }
+
+  @Test
+  public void anyInjectorInterestedInEverythingAcceptsAll() {
+    byte[] classFile = makeClass("a/B", "java/lang/Object", null);
+    model.update(new ClassReader(classFile));
+
+    assertThat(
+            new ClassPrefilter(
+                    Arrays.asList(
+                        injector(InjectorInterest.nothing()),
+                        injector(InjectorInterest.everything())))
+                .mayBeProcessed(classFile, new ClassReader(classFile), model))
+        .isTrue();
+    assertThat(
+            new ClassPrefilter(Collections.singletonList(injector(InjectorInterest.nothing())))
+                .mayBeProcessed(classFile, new ClassReader(classFile), model))
+        .isFalse();
+  }
+}
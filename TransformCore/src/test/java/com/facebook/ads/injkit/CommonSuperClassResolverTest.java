@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.ads.injkit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.facebook.ads.injkit.model.Model;
+import com.facebook.ads.injkit.model.ModelFactory;
+import java.net.URL;
+import java.net.URLClassLoader;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+
+@RunWith(JUnit4.class)
+public class CommonSuperClassResolverTest {
+  private final Model model = ModelFactory.defaultFactory().make();
+  // Loads nothing, so any query answered without failing was answered from the model.
+  private final ClassLoader emptyClassLoader = new URLClassLoader(new URL[0], null);
+
+  private void addClass(int access, String iName, String superIName, String... interfaces) {
+    ClassWriter writer = new ClassWriter(0);
+    writer.visit(Opcodes.V1_8, access, iName, null, superIName, interfaces);
+    writer.visitEnd();
+    model.update(new ClassReader(writer.toByteArray()));
+  }
+
+  @Before
+  public void before() {
+    addClass(Opcodes.ACC_PUBLIC, "a/Base", "java/lang/Object");
+    addClass(Opcodes.ACC_PUBLIC, "a/Left", "a/Base", "a/I");
+    addClass(Opcodes.ACC_PUBLIC, "a/LeftChild", "a/Left");
+    addClass(Opcodes.ACC_PUBLIC, "a/Right", "a/Base");
+    addClass(Opcodes.ACC_PUBLIC | Opcodes.ACC_INTERFACE, "a/I", "java/lang/Object");
+    addClass(Opcodes.ACC_PUBLIC, "a/Orphan", "a/Missing");
+  }
+
+  @Test
+  public void knownClassesAreResolvedFromModel() {
+    CommonSuperClassResolver resolver = new CommonSuperClassResolver(model, emptyClassLoader);
+
+    assertThat(resolver.getCommonSuperClass("a/LeftChild", "a/Right")).isEqualTo("a/Base");
+    assertThat(resolver.getCommonSuperClass("a/Left", "a/LeftChild")).isEqualTo("a/Left");
+    assertThat(resolver.getCommonSuperClass("a/LeftChild", "a/Left")).isEqualTo("a/Left");
+    assertThat(resolver.getCommonSuperClass("a/I", "a/LeftChild")).isEqualTo("a/I");
+    assertThat(resolver.getCommonSuperClass("a/I", "a/Right")).isEqualTo("java/lang/Object");
+    assertThat(resolver.getCommonSuperClass("a/Right", "java/lang/Object"))
+        .isEqualTo("java/lang/Object");
+  }
+
+  @Test
+  public void classesWithUnknownAncestorsAreLoaded() {
+    CommonSuperClassResolver resolver = new CommonSuperClassResolver(model, emptyClassLoader);
+
+    assertThatThrownBy(() -> resolver.getCommonSuperClass("a/Orphan", "a/Base"))
+        .isInstanceOf(TypeNotPresentException.class);
+  }
+
+  @Test
+  public void unknownClassesAreLoaded() {
+    CommonSuperClassResolver resolver =
+        new CommonSuperClassResolver(model, getClass().getClassLoader());
+
+    assertThat(resolver.getCommonSuperClass("java/lang/Integer", "java/lang/Long"))
+        .isEqualTo("java/lang/Number");
+  }
+}
@@ -8,8 +8,19 @@
 package com.facebook.ads.injkit;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import javax.annotation.Nullable;
 import org.junit.rules.TemporaryFolder;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
 
 public class FileUtils {
 
@@ -29,4 +40,61 @@ public class FileUtils {
 
     return file;
   }
+
+  // A class with a constructor that only calls the one of its super class.
+  public static byte[] makeClass(String iName, String superIName) {
+    return makeClass(iName, superIName, null);
+  }
+
+  // Same as makeClass(String, String), with the constructor annotated with the given annotation.
+  public static byte[] makeClass(
+      String iName, String superIName, @Nullable String constructorAnnotationDesc) {
+    ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+    writer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, iName, null, superIName, null);
+    MethodVisitor init = writer.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+    if (constructorAnnotationDesc != null) {
+      init.visitAnnotation(constructorAnnotationDesc, true).visitEnd();
+    }
+
+    init.visitCode();
+    init.visitVarInsn(Opcodes.ALOAD, 0);
+    init.visitMethodInsn(Opcodes.INVOKESPECIAL, superIName, "<init>", "()V", false);
+    init.visitInsn(Opcodes.RETURN);
+    init.visitMaxs(0, 0);
+    init.visitEnd();
+    writer.visitEnd();
+    return writer.toByteArray();
+  }
+
+  public static File writeClass(File directory, String iName, byte[] classFile)
+      throws IOException {
+    File file = new File(directory, iName + ".class");
+    file.getParentFile().mkdirs();
+    Files.write(file.toPath(), classFile);
+    return file;
+  }
+
+  // Writes the entries to the jar, in order.
+  public static File writeJar(File jar, Map<String, byte[]> entries) throws IOException {
+    try (FileOutputStream fileOutput = new FileOutputStream(jar);
+        ZipOutputStream zip = new ZipOutputStream(fileOutput)) {
+      for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+        zip.putNextEntry(new ZipEntry(entry.getKey()));
+        zip.write(entry.getValue());
+      }
+    }
+
+    return jar;
+  }
+
+  // Writes a jar with the classes made by makeClass, all with the same super class.
+  public static File writeClassJar(File jar, String superIName, String... classes)
+      throws IOException {
+    Map<String, byte[]> entries = new LinkedHashMap<>();
+    for (String cls : classes) {
+      entries.put(cls + ".class", makeClass(cls, superIName));
+    }
+
+    return writeJar(jar, entries);
+  }
 }
@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.ads.injkit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.facebook.ads.injkit.benchmark.BenchmarkConfigurationConstants;
+import com.facebook.ads.injkit.benchmark.BenchmarkThis;
+import com.facebook.ads.injkit.benchmark.DummyBenchmarkReport;
+import com.facebook.ads.injkit.crashshield.CrashShieldConfigurationConstants;
+import com.facebook.ads.injkit.crashshield.FakeDoNotHandleExceptionAnnotation;
+import com.facebook.ads.injkit.crashshield.FakeExceptionHandler;
+import com.facebook.ads.injkit.crashshield.FakeHandleExceptionsAnnotation;
+import com.facebook.ads.injkit.threadcheck.DummyThreadCheckViolationHandler;
+import com.facebook.ads.injkit.threadcheck.ThreadCheckConfigurationConstants;
+import java.io.File;
+import java.io.InputStream;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Type;
+
+@RunWith(JUnit4.class)
+public class FusedInjectorsTest {
+  private static final String OBJECT = "java/lang/Object";
+
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private File configurationFile;
+  private File input;
+  private final List<String> classFiles = new ArrayList<>();
+
+  @Before
+  public void before() throws Exception {
+    configurationFile = writeConfiguration(false);
+
+    // The benchmark annotation is in the input for its default values to be in the model.
+    input = temporaryFolder.newFolder();
+    for (Class<?> cls : new Class<?>[] {Annotated.class, Plain.class, BenchmarkThis.class}) {
+      String classFile = cls.getName().replace('.', '/') + ".class";
+      File file = new File(input, classFile);
+      file.getParentFile().mkdirs();
+      try (InputStream stream = getClass().getClassLoader().getResourceAsStream(classFile)) {
+        Files.copy(stream, file.toPath());
+      }
+
+      classFiles.add(classFile);
+    }
+  }
+
+  private File writeConfiguration(boolean processViews) throws Exception {
+    return FileUtils.createConfigurationFile(
+        temporaryFolder,
+        CrashShieldConfigurationConstants.ENABLED + " true",
+        CrashShieldConfigurationConstants.EXCEPTION_HANDLER_CLASS
+            + " "
+            + FakeExceptionHandler.class.getName(),
+        CrashShieldConfigurationConstants.ENABLE_ANNOTATION_CLASS
+            + " "
+            + FakeHandleExceptionsAnnotation.class.getName(),
+        CrashShieldConfigurationConstants.DISABLE_ANNOTATION_CLASS
+            + " "
+            + FakeDoNotHandleExceptionAnnotation.class.getName(),
+        CrashShieldConfigurationConstants.SHOULD_PROCESS_CONSTRUCTOR + " false",
+        CrashShieldConfigurationConstants.SHOULD_PROCESS_VIEWS + " " + processViews,
+        BenchmarkConfigurationConstants.ENABLED + " true",
+        BenchmarkConfigurationConstants.ANNOTATION_CLASS + " " + BenchmarkThis.class.getName(),
+        BenchmarkConfigurationConstants.RECEIVER_CLASS + " " + DummyBenchmarkReport.class.getName(),
+        ThreadCheckConfigurationConstants.ENABLED + " true",
+        ThreadCheckConfigurationConstants.UI_THREAD_ANNOTATION_CLASS + " " + Ui.class.getName(),
+        ThreadCheckConfigurationConstants.WORKER_THREAD_ANNOTATION_CLASS
+            + " "
+            + Worker.class.getName(),
+        ThreadCheckConfigurationConstants.ANY_THREAD_ANNOTATION_CLASS + " " + Any.class.getName(),
+        ThreadCheckConfigurationConstants.VIOLATION_HANDLER_CLASS
+            + " "
+            + DummyThreadCheckViolationHandler.class.getName());
+  }
+
+  private File transform(boolean fused) throws Exception {
+    return transform(fused, configurationFile, Collections.emptyList());
+  }
+
+  private File transform(boolean fused, File configurationFile, List<File> classpath)
+      throws Exception {
+    File output = temporaryFolder.newFolder();
+    new AnnotationProcessorConfigurationBuilder()
+        .addInputOutputMap(input, output)
+        .setConfigurationFile(configurationFile)
+        .addClasspathElements(classpath)
+        .processSystemPath(false)
+        .setFusedInjectors(fused)
+        .build()
+        .process();
+    return output;
+  }
+
+  // Crash shield moves direct children of views under the safe view when it ends, and the
+  // benchmark looks for the call to the constructor of the super class of the class when it
+  // processes constructors. Fused, the benchmark must see the class after crash shield ended.
+  @Test
+  public void fusedInjectorsSeeSuperClassRenamedByEarlierOnes() throws Exception {
+    File classpath = temporaryFolder.newFolder();
+    FileUtils.writeClass(
+        classpath, "android/view/View", FileUtils.makeClass("android/view/View", OBJECT));
+    String myView = "com/example/MyView";
+    FileUtils.writeClass(
+        input,
+        myView,
+        FileUtils.makeClass(myView, "android/view/View", Type.getDescriptor(BenchmarkThis.class)));
+    File viewsConfiguration = writeConfiguration(true);
+
+    File sequential = transform(false, viewsConfiguration, Collections.singletonList(classpath));
+    File fused = transform(true, viewsConfiguration, Collections.singletonList(classpath));
+
+    byte[] transformed = Files.readAllBytes(new File(fused, myView + ".class").toPath());
+    assertThat(transformed)
+        .isEqualTo(Files.readAllBytes(new File(sequential, myView + ".class").toPath()));
+    assertThat(new ClassReader(transformed).getSuperName()).isNotEqualTo("android/view/View");
+  }
+
+  @Test
+  public void fusedInjectorsProduceTheSameClasses() throws Exception {
+    File sequential = transform(false);
+    File fused = transform(true);
+
+    for (String classFile : classFiles) {
+      assertThat(Files.readAllBytes(new File(fused, classFile).toPath()))
+          .isEqualTo(Files.readAllBytes(new File(sequential, classFile).toPath()));
+    }
+
+    // The annotated class must have been transformed for the comparison to mean anything.
+    assertThat(Files.readAllBytes(new File(fused, classFiles.get(0)).toPath()))
+        .isNotEqualTo(Files.readAllBytes(new File(input, classFiles.get(0)).toPath()));
+  }
+
+  @Test
+  public void injectorsAreMadeInModuleOrder() throws Exception {
+    AnnotationProcessorConfiguration configuration =
+        AnnotationProcessorConfiguration.parse(
+            configurationFile, AnnotationProcessorModules.getModules());
+
+    List<String> injectors = new ArrayList<>();
+    for (Injector injector :
+        configuration.makeInjectors(
+            new URLClassLoader(new URL[0], getClass().getClassLoader()))) {
+      injectors.add(injector.getClass().getSimpleName());
+    }
+
+    assertThat(injectors)
+        .containsExactly(
+            "CrashShieldInjector", "NopInjector", "BenchmarkInjector", "ThreadCheckInjector");
+  }
+
+  @Retention(RetentionPolicy.CLASS)
+  public @interface Ui {}
+
+  @Retention(RetentionPolicy.CLASS)
+  public @interface Worker {}
+
+  @Retention(RetentionPolicy.CLASS)
+  public @interface Any {}
+
+  @Ui
+  @FakeHandleExceptionsAnnotation
+  public static class Annotated implements Runnable {
+    @Override
+    public void run() {}
+
+    @Worker
+    @BenchmarkThis(warnAtMillis = 10)
+    public int benchmarked(int value) {
+      return value + 1;
+    }
+
+    @FakeDoNotHandleExceptionAnnotation
+    public void notHandled() {}
+  }
+
+  public static class Plain {
+    public int value() {
+      return 1;
+    }
+  }
+}
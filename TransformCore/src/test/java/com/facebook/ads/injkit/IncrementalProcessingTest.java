@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.ads.injkit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.facebook.ads.injkit.benchmark.BenchmarkConfigurationConstants;
+import com.facebook.ads.injkit.model.Model;
+import com.google.common.io.ByteStreams;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.Nullable;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+@RunWith(JUnit4.class)
+public class IncrementalProcessingTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private File configurationFile;
+  private File inputDirectory;
+  private File outputDirectory;
+  private File stateFile;
+  private final Set<String> processed = ConcurrentHashMap.newKeySet();
+  // Whether processing adds x.Marker to classes, which changes the model data of rewritten ones.
+  private boolean markProcessed;
+
+  @Before
+  public void before() throws Exception {
+    // The model only keeps the annotations modules look up, so make a module look up x.Marker.
+    configurationFile = temporaryFolder.newFile();
+    Files.write(
+        configurationFile.toPath(),
+        Collections.singletonList(BenchmarkConfigurationConstants.ANNOTATION_CLASS + " x.Marker"),
+        StandardCharsets.UTF_8);
+    inputDirectory = temporaryFolder.newFolder();
+    outputDirectory = temporaryFolder.newFolder();
+    stateFile = new File(temporaryFolder.getRoot(), "state");
+
+    writeClass("Base", "java/lang/Object", null);
+    writeClass("Derived", "Base", null);
+    writeClass("Other", "java/lang/Object", null);
+  }
+
+  private void writeClass(String iName, String superIName, @Nullable String annotationDesc)
+      throws IOException {
+    ClassWriter writer = new ClassWriter(0);
+    writer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, iName, null, superIName, null);
+    if (annotationDesc != null) {
+      writer.visitAnnotation(annotationDesc, false).visitEnd();
+    }
+
+    writer.visitEnd();
+    Files.write(new File(inputDirectory, iName + ".class").toPath(), writer.toByteArray());
+  }
+
+  // Writes a class whose code uses the type, so frames may need its common super classes.
+  private void writeClassUsing(String iName, String usedIName) throws IOException {
+    ClassWriter writer = new ClassWriter(0);
+    writer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, iName, null, "java/lang/Object", null);
+    MethodVisitor method = writer.visitMethod(Opcodes.ACC_PUBLIC, "use", "()V", null, null);
+    method.visitCode();
+    method.visitInsn(Opcodes.ACONST_NULL);
+    method.visitTypeInsn(Opcodes.CHECKCAST, usedIName);
+    method.visitInsn(Opcodes.POP);
+    method.visitInsn(Opcodes.RETURN);
+    method.visitMaxs(1, 1);
+    method.visitEnd();
+    writer.visitEnd();
+    Files.write(new File(inputDirectory, iName + ".class").toPath(), writer.toByteArray());
+  }
+
+  private void run(int parallelism) throws Exception {
+    run(parallelism, outputDirectory);
+  }
+
+  private void run(int parallelism, File output) throws Exception {
+    processed.clear();
+    new AnnotationProcessorConfigurationBuilder()
+        .addInputOutputMap(inputDirectory, output)
+        .setConfigurationFile(configurationFile)
+        .setIncrementalStateFile(stateFile)
+        .setParallelism(parallelism)
+        .processSystemPath(false)
+        .setClassFileProcessorFactory(
+            (configuration, classLoader, model) ->
+                new ClassFileProcessor() {
+                  @Override
+                  public void process(InputStream input, OutputStream output)
+                      throws IOException {
+                    byte[] data = ByteStreams.toByteArray(input);
+                    ClassReader reader = new ClassReader(data);
+                    processed.add(reader.getClassName());
+                    if (markProcessed) {
+                      ClassWriter writer = new ClassWriter(reader, 0);
+                      reader.accept(writer, 0);
+                      writer.visitAnnotation("Lx/Marker;", false).visitEnd();
+                      data = writer.toByteArray();
+                    }
+
+                    output.write(data);
+                  }
+
+                  @Override
+                  public void updateModel(InputStream input, Model target) throws IOException {
+                    target.update(new ClassReader(input));
+                  }
+                })
+        .build()
+        .process();
+  }
+
+  @Test
+  public void unchangedInputsAreNotProcessedAgain() throws Exception {
+    run(1);
+    assertThat(processed).containsOnly("Base", "Derived", "Other");
+    assertThat(stateFile.isFile()).isTrue();
+
+    run(1);
+    assertThat(processed).isEmpty();
+    assertThat(new File(outputDirectory, "Derived.class").isFile()).isTrue();
+  }
+
+  @Test
+  public void inputsTransformedInPlaceAreNotProcessedAgain() throws Exception {
+    markProcessed = true;
+    run(1, inputDirectory);
+    assertThat(processed).containsOnly("Base", "Derived", "Other");
+
+    run(1, inputDirectory);
+    assertThat(processed).isEmpty();
+  }
+
+  @Test
+  public void changedInputIsProcessedAgain() throws Exception {
+    run(1);
+
+    writeClass("Other", "java/lang/Object", "Lx/Marker;");
+    run(1);
+
+    assertThat(processed).containsOnly("Other");
+  }
+
+  @Test
+  public void changedSuperclassProcessesSubclasses() throws Exception {
+    run(1);
+
+    writeClass("Base", "java/lang/Object", "Lx/Marker;");
+    run(1);
+
+    assertThat(processed).containsOnly("Base", "Derived");
+  }
+
+  @Test
+  public void superclassAnnotationNoModuleLooksUpDoesNotProcessSubclasses() throws Exception {
+    run(1);
+
+    writeClass("Base", "java/lang/Object", "Lx/Unused;");
+    run(1);
+
+    assertThat(processed).containsOnly("Base");
+  }
+
+  @Test
+  public void changedSuperclassProcessesSubclassesInParallel() throws Exception {
+    run(4);
+
+    writeClass("Base", "java/lang/Object", "Lx/Marker;");
+    run(4);
+
+    assertThat(processed).containsOnly("Base", "Derived");
+  }
+
+  @Test
+  public void changedHierarchyOfUsedTypeProcessesUsers() throws Exception {
+    writeClassUsing("User", "Other");
+    run(1);
+
+    writeClass("Other", "Base", null);
+    run(1);
+
+    assertThat(processed).containsOnly("Other", "User");
+  }
+
+  @Test
+  public void missingOutputIsWrittenAgain() throws Exception {
+    run(1);
+
+    assertThat(new File(outputDirectory, "Derived.class").delete()).isTrue();
+    run(1);
+
+    assertThat(processed).containsOnly("Derived");
+    assertThat(new File(outputDirectory, "Derived.class").isFile()).isTrue();
+  }
+
+  @Test
+  public void touchedInputWithSameContentIsNotProcessedAgain() throws Exception {
+    run(1);
+
+    File base = new File(inputDirectory, "Base.class");
+    assertThat(base.setLastModified(base.lastModified() + 10_000)).isTrue();
+    run(1);
+
+    assertThat(processed).isEmpty();
+  }
+
+  @Test
+  public void changedConfigurationProcessesEverything() throws Exception {
+    run(1);
+
+    Files.write(configurationFile.toPath(), "# changed\n".getBytes(), StandardOpenOption.APPEND);
+    run(1);
+
+    assertThat(processed).containsOnly("Base", "Derived", "Other");
+  }
+
+  @Test
+  public void corruptStateProcessesEverything() throws Exception {
+    run(1);
+
+    Files.write(stateFile.toPath(), new byte[] {0, 0, 0, 1, 0});
+    run(1);
+
+    assertThat(processed).containsOnly("Base", "Derived", "Other");
+  }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.ads.injkit;
+
+import com.facebook.ads.injkit.model.Model;
+import com.google.common.io.ByteStreams;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+// Writes every byte of the class files inverted, so tests can tell processed files from copied
+// ones.
+class InvertingClassFileProcessor implements ClassFileProcessor {
+  static byte[] invert(byte[] data) {
+    byte[] inverted = data.clone();
+    for (int i = 0; i < inverted.length; i++) {
+      inverted[i] = (byte) ~inverted[i];
+    }
+
+    return inverted;
+  }
+
+  @Override
+  public void process(InputStream input, OutputStream output) throws IOException {
+    output.write(invert(ByteStreams.toByteArray(input)));
+  }
+
+  @Override
+  public void updateModel(InputStream input, Model model) {}
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.ads.injkit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.facebook.ads.injkit.model.Model;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.objectweb.asm.ClassReader;
+
+@RunWith(JUnit4.class)
+public class LazyModelProcessingTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private File configurationFile;
+  private final Map<String, String> superClasses = new ConcurrentHashMap<>();
+
+  @Before
+  public void before() throws Exception {
+    configurationFile = FileUtils.createConfigurationFile(temporaryFolder);
+  }
+
+  private File writeJar(String name, String... classesAndSuperClasses) throws IOException {
+    Map<String, byte[]> entries = new LinkedHashMap<>();
+    for (int i = 0; i < classesAndSuperClasses.length; i += 2) {
+      entries.put(
+          classesAndSuperClasses[i] + ".class",
+          FileUtils.makeClass(classesAndSuperClasses[i], classesAndSuperClasses[i + 1]));
+    }
+
+    return FileUtils.writeJar(temporaryFolder.newFile(name), entries);
+  }
+
+  // Processes an input class extending lib/A and records the superclasses of its ancestors, as
+  // seen by the model.
+  private void run(int parallelism, File... classpath) throws Exception {
+    File input = temporaryFolder.newFile("Input.class");
+    Files.write(input.toPath(), FileUtils.makeClass("in/Input", "lib/A"));
+
+    new AnnotationProcessorConfigurationBuilder()
+        .addInputOutputMap(input, temporaryFolder.newFile())
+        .addClasspathElements(Arrays.asList(classpath))
+        .setConfigurationFile(configurationFile)
+        .setLazyModel(true)
+        .setParallelism(parallelism)
+        .setZipPipelineThreads(parallelism > 1 ? 2 : 0)
+        .processSystemPath(false)
+        .setClassFileProcessorFactory(
+            (configuration, classLoader, model) ->
+                new ClassFileProcessor() {
+                  @Override
+                  public void process(InputStream in, OutputStream out) {
+                    for (String iName : model.hierarchicalClosure("in/Input")) {
+                      if (model.knowsClass(iName)) {
+                        superClasses.put(iName, model.superClassOf(iName));
+                      }
+                    }
+                  }
+
+                  @Override
+                  public void updateModel(InputStream in, Model target) throws IOException {
+                    target.update(new ClassReader(in));
+                  }
+                })
+        .build()
+        .process();
+  }
+
+  @Test
+  public void classpathClassesAreFoundWhenLookedUp() throws Exception {
+    run(1, writeJar("lib.jar", "lib/A", "lib/B", "lib/B", "lib/Base", "lib/Unused", "lib/A"));
+
+    assertThat(superClasses)
+        .containsOnlyKeys("in/Input", "lib/A", "lib/B")
+        .containsEntry("in/Input", "lib/A")
+        .containsEntry("lib/A", "lib/B")
+        .containsEntry("lib/B", "lib/Base");
+  }
+
+  @Test
+  public void firstClasspathElementWins() throws Exception {
+    run(
+        4,
+        writeJar("first.jar", "lib/A", "first/Super"),
+        writeJar("second.jar", "lib/A", "second/Super"));
+
+    assertThat(superClasses).containsEntry("lib/A", "first/Super");
+  }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.ads.injkit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TryCatchBlockNode;
+import org.objectweb.asm.tree.VarInsnNode;
+
+@RunWith(JUnit4.class)
+public class MethodChangesTest {
+  private final ClassNode node = new ClassNode();
+  private MethodNode calling;
+  private MethodNode returning;
+
+  @Before
+  public void before() {
+    node.name = "a/A";
+    calling = new MethodNode(Opcodes.ACC_PUBLIC, "calling", "()V", null, null);
+    calling.instructions.add(
+        new MethodInsnNode(Opcodes.INVOKESTATIC, "a/B", "call", "()V", false));
+    calling.instructions.add(new InsnNode(Opcodes.RETURN));
+    returning = new MethodNode(Opcodes.ACC_PUBLIC, "returning", "()V", null, null);
+    returning.instructions.add(new InsnNode(Opcodes.RETURN));
+    node.methods.add(calling);
+    node.methods.add(returning);
+  }
+
+  @Test
+  public void unchangedMethodsAreNotReported() {
+    MethodChanges changes = MethodChanges.record(node);
+
+    assertThat(changes.changedMethods(node)).isEmpty();
+  }
+
+  @Test
+  public void renamesAreNotReported() {
+    MethodChanges changes = MethodChanges.record(node);
+    calling.name = "renamed";
+
+    assertThat(changes.changedMethods(node)).isEmpty();
+  }
+
+  @Test
+  public void operandsEditedInPlaceAreReported() {
+    MethodChanges changes = MethodChanges.record(node);
+    ((MethodInsnNode) calling.instructions.getFirst()).owner = "a/C";
+
+    assertThat(changes.changedMethods(node)).containsExactly(calling);
+  }
+
+  @Test
+  public void descriptorAndStaticChangesAreReported() {
+    MethodChanges changes = MethodChanges.record(node);
+    calling.desc = "(I)V";
+    returning.access |= Opcodes.ACC_STATIC;
+
+    assertThat(changes.changedMethods(node)).containsExactly(calling, returning);
+  }
+
+  @Test
+  public void constantsAndVariablesEditedInPlaceAreReported() {
+    LdcInsnNode constant = new LdcInsnNode("a");
+    VarInsnNode variable = new VarInsnNode(Opcodes.ASTORE, 1);
+    returning.instructions.insert(variable);
+    returning.instructions.insert(constant);
+    MethodChanges changes = MethodChanges.record(node);
+    constant.cst = "b";
+
+    assertThat(changes.changedMethods(node)).containsExactly(returning);
+
+    changes = MethodChanges.record(node);
+    variable.var = 2;
+
+    assertThat(changes.changedMethods(node)).containsExactly(returning);
+  }
+
+  @Test
+  public void replacedTryCatchBlocksAreReported() {
+    LabelNode label = new LabelNode();
+    calling.tryCatchBlocks.add(new TryCatchBlockNode(label, label, label, null));
+    MethodChanges changes = MethodChanges.record(node);
+    calling.tryCatchBlocks.set(
+        0, new TryCatchBlockNode(label, label, label, "java/lang/Throwable"));
+
+    assertThat(changes.changedMethods(node)).containsExactly(calling);
+  }
+
+  @Test
+  public void addedInstructionsAreReported() {
+    MethodChanges changes = MethodChanges.record(node);
+    returning.instructions.insert(new InsnNode(Opcodes.NOP));
+
+    assertThat(changes.changedMethods(node)).containsExactly(returning);
+  }
+
+  @Test
+  public void replacedInstructionsAreReported() {
+    MethodChanges changes = MethodChanges.record(node);
+    calling.instructions.set(calling.instructions.getFirst(), new InsnNode(Opcodes.NOP));
+
+    assertThat(changes.changedMethods(node)).containsExactly(calling);
+  }
+
+  @Test
+  public void addedTryCatchBlocksAndMethodsAreReported() {
+    MethodChanges changes = MethodChanges.record(node);
+    LabelNode label = new LabelNode();
+    calling.tryCatchBlocks.add(new TryCatchBlockNode(label, label, label, null));
+    MethodNode added = new MethodNode(Opcodes.ACC_PUBLIC, "added", "()V", null, null);
+    node.methods.add(added);
+
+    assertThat(changes.changedMethods(node)).containsExactly(calling, added);
+  }
+}
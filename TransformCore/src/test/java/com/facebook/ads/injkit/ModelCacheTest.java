@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.ads.injkit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.facebook.ads.injkit.model.Model;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.objectweb.asm.ClassReader;
+
+@RunWith(JUnit4.class)
+public class ModelCacheTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private File configurationFile;
+  private File cacheDirectory;
+  private File input;
+  private File output;
+  private final AtomicInteger parsedClasses = new AtomicInteger();
+
+  @Before
+  public void before() throws Exception {
+    configurationFile = FileUtils.createConfigurationFile(temporaryFolder);
+    cacheDirectory = new File(temporaryFolder.getRoot(), "cache");
+    input = temporaryFolder.newFile("Input.class");
+    Files.write(input.toPath(), FileUtils.makeClass("in/Input", "java/lang/Object"));
+    output = temporaryFolder.newFile();
+  }
+
+  private File writeJar(String name, String... classes) throws IOException {
+    return FileUtils.writeClassJar(
+        new File(temporaryFolder.getRoot(), name), "java/lang/Object", classes);
+  }
+
+  // Runs the processor and returns whether the model knew the class when processing the input.
+  private boolean run(File classpathJar, String expectedClass, int parallelism) throws Exception {
+    AtomicBoolean knew = new AtomicBoolean();
+    new AnnotationProcessorConfigurationBuilder()
+        .addInputOutputMap(input, output)
+        .addClasspathElement(classpathJar)
+        .setConfigurationFile(configurationFile)
+        .setModelCacheDirectory(cacheDirectory)
+        .setParallelism(parallelism)
+        .processSystemPath(false)
+        .setClassFileProcessorFactory(
+            (configuration, classLoader, model) ->
+                new ClassFileProcessor() {
+                  @Override
+                  public void process(InputStream in, OutputStream out) {
+                    knew.set(model.knowsClass(expectedClass) && model.knowsClass("in/Input"));
+                  }
+
+                  @Override
+                  public void updateModel(InputStream in, Model target) throws IOException {
+                    parsedClasses.incrementAndGet();
+                    target.update(new ClassReader(in));
+                  }
+                })
+        .build()
+        .process();
+    return knew.get();
+  }
+
+  @Test
+  public void secondRunLoadsClasspathFromCache() throws Exception {
+    File jar = writeJar("lib.jar", "lib/A", "lib/B", "lib/C");
+
+    assertThat(run(jar, "lib/B", 1)).isTrue();
+    assertThat(parsedClasses.get()).isEqualTo(4);
+    assertThat(cacheDirectory.list()).hasSize(1);
+
+    parsedClasses.set(0);
+    assertThat(run(jar, "lib/B", 1)).isTrue();
+    // Only the input is parsed again.
+    assertThat(parsedClasses.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void parallelRunsUseTheSameCache() throws Exception {
+    File jar = writeJar("lib.jar", "lib/A", "lib/B", "lib/C");
+
+    assertThat(run(jar, "lib/C", 4)).isTrue();
+    parsedClasses.set(0);
+    assertThat(run(jar, "lib/C", 1)).isTrue();
+    assertThat(parsedClasses.get()).isEqualTo(1);
+
+    parsedClasses.set(0);
+    assertThat(run(jar, "lib/C", 4)).isTrue();
+    assertThat(parsedClasses.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void changedJarIsParsedAgain() throws Exception {
+    File jar = writeJar("lib.jar", "lib/A");
+    assertThat(run(jar, "lib/A", 1)).isTrue();
+
+    writeJar("lib.jar", "lib/Other");
+    assertThat(jar.setLastModified(jar.lastModified() + 10_000)).isTrue();
+
+    parsedClasses.set(0);
+    assertThat(run(jar, "lib/Other", 1)).isTrue();
+    assertThat(parsedClasses.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void touchedJarWithSameContentIsLoadedFromCache() throws Exception {
+    File jar = writeJar("lib.jar", "lib/A");
+    assertThat(run(jar, "lib/A", 1)).isTrue();
+
+    assertThat(jar.setLastModified(jar.lastModified() + 10_000)).isTrue();
+
+    parsedClasses.set(0);
+    assertThat(run(jar, "lib/A", 1)).isTrue();
+    assertThat(parsedClasses.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void touchedJarModificationTimeIsRecorded() throws Exception {
+    File jar = writeJar("lib.jar", "lib/A");
+    assertThat(run(jar, "lib/A", 1)).isTrue();
+
+    assertThat(jar.setLastModified(jar.lastModified() + 10_000)).isTrue();
+    assertThat(run(jar, "lib/A", 1)).isTrue();
+
+    File[] snapshots = cacheDirectory.listFiles();
+    assertThat(snapshots).hasSize(1);
+    try (DataInputStream snapshot = new DataInputStream(new FileInputStream(snapshots[0]))) {
+      snapshot.readInt();
+      assertThat(snapshot.readUTF()).isEqualTo(jar.getCanonicalPath());
+      assertThat(snapshot.readLong()).isEqualTo(jar.length());
+      assertThat(snapshot.readLong()).isEqualTo(jar.lastModified());
+      assertThat(snapshot.readUTF()).isEqualTo(ModelCache.contentHash(jar));
+    }
+
+    parsedClasses.set(0);
+    assertThat(run(jar, "lib/A", 1)).isTrue();
+    assertThat(parsedClasses.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void corruptSnapshotIsRebuilt() throws Exception {
+    File jar = writeJar("lib.jar", "lib/A");
+    assertThat(run(jar, "lib/A", 1)).isTrue();
+
+    File[] snapshots = cacheDirectory.listFiles();
+    assertThat(snapshots).hasSize(1);
+    byte[] snapshot = Files.readAllBytes(snapshots[0].toPath());
+    Files.write(snapshots[0].toPath(), Arrays.copyOf(snapshot, snapshot.length / 2));
+
+    parsedClasses.set(0);
+    assertThat(run(jar, "lib/A", 1)).isTrue();
+    assertThat(parsedClasses.get()).isEqualTo(2);
+  }
+}
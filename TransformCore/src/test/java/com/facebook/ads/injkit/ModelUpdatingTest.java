@@ -58,7 +58,7 @@ public class ModelUpdatingTest {
             (configuration, classLoader, model) ->
                 new ClassFileProcessorImpl(configuration, classLoader, model) {
                   @Override
-                  public void process(InputStream input, OutputStream output) {
+                  public void process(byte[] classFile, int length, OutputStream output) {
                     knewA.set(model.knowsClass("a/A"));
                   }
                 })
@@ -85,7 +85,7 @@ public class ModelUpdatingTest {
             (configuration, classLoader, model) ->
                 new ClassFileProcessorImpl(configuration, classLoader, model) {
                   @Override
-                  public void process(InputStream input, OutputStream output) {
+                  public void process(byte[] classFile, int length, OutputStream output) {
                     knewB.set(model.knowsClass("b/B"));
                   }
                 })
@@ -109,7 +109,7 @@ public class ModelUpdatingTest {
             (configuration, classLoader, model) ->
                 new ClassFileProcessorImpl(configuration, classLoader, model) {
                   @Override
-                  public void process(InputStream input, OutputStream output) {
+                  public void process(byte[] classFile, int length, OutputStream output) {
                     knewMyself.set(
                         model.knowsClass(
                             AsmNameUtils.classJavaNameToInternalName(
@@ -141,7 +141,7 @@ public class ModelUpdatingTest {
             (configuration, classLoader, model) ->
                 new ClassFileProcessorImpl(configuration, classLoader, model) {
                   @Override
-                  public void process(InputStream input, OutputStream output) {
+                  public void process(byte[] classFile, int length, OutputStream output) {
                     knewA.set(model.knowsClass("a/A"));
                   }
                 })
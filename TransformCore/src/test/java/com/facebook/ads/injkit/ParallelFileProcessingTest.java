@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.ads.injkit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class ParallelFileProcessingTest {
+  private static final int FILE_COUNT = 32;
+
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private static byte[] classData(int index) {
+    byte[] data = new byte[ClassFileDetectorStream.CLASS_FILE_MAGIC.length + 1];
+    System.arraycopy(
+        ClassFileDetectorStream.CLASS_FILE_MAGIC,
+        0,
+        data,
+        0,
+        ClassFileDetectorStream.CLASS_FILE_MAGIC.length);
+    data[data.length - 1] = (byte) index;
+    return data;
+  }
+
+  private List<FilePair> writeInputs() throws IOException {
+    File inputDirectory = temporaryFolder.newFolder();
+    File outputDirectory = temporaryFolder.newFolder();
+    List<FilePair> pairs = new ArrayList<>();
+    for (int i = 0; i < FILE_COUNT; i++) {
+      File in = new File(inputDirectory, "C" + i + ".class");
+      Files.write(in.toPath(), classData(i));
+      pairs.add(new FilePair(in, new File(outputDirectory, "C" + i + ".class")));
+    }
+
+    return pairs;
+  }
+
+  @Test
+  public void processesAllFilesInParallel() throws Exception {
+    List<FilePair> pairs = writeInputs();
+    Set<String> threads = ConcurrentHashMap.newKeySet();
+
+    AnnotationProcessorConfigurationBuilder builder =
+        new AnnotationProcessorConfigurationBuilder()
+            .setConfigurationFile(FileUtils.createConfigurationFile(temporaryFolder))
+            .setParallelism(4)
+            .processSystemPath(false)
+            .setClassFileProcessorFactory(
+                (configuration, classLoader, model) ->
+                    new InvertingClassFileProcessor() {
+                      @Override
+                      public void process(InputStream input, OutputStream output)
+                          throws IOException {
+                        threads.add(Thread.currentThread().getName());
+                        super.process(input, output);
+                      }
+                    });
+    for (FilePair pair : pairs) {
+      builder.addInputOutputMap(pair.getInput(), pair.getOutput());
+    }
+
+    builder.build().process();
+
+    for (int i = 0; i < FILE_COUNT; i++) {
+      assertThat(Files.readAllBytes(pairs.get(i).getOutput().toPath()))
+          .isEqualTo(InvertingClassFileProcessor.invert(classData(i)));
+    }
+
+    assertThat(threads).isNotEmpty();
+    for (String thread : threads) {
+      assertThat(thread).startsWith("injkit-file-");
+    }
+  }
+
+  @Test
+  public void reportsErrorsInInputOrder() throws Exception {
+    List<FilePair> pairs = writeInputs();
+
+    AnnotationProcessorConfigurationBuilder builder =
+        new AnnotationProcessorConfigurationBuilder()
+            .setConfigurationFile(FileUtils.createConfigurationFile(temporaryFolder))
+            .setParallelism(8)
+            .processSystemPath(false)
+            .setClassFileProcessorFactory(
+                (configuration, classLoader, model) ->
+                    new InvertingClassFileProcessor() {
+                      @Override
+                      public void process(InputStream input, OutputStream output)
+                          throws IOException {
+                        throw new IOException("boom");
+                      }
+                    });
+    for (FilePair pair : pairs) {
+      builder.addInputOutputMap(pair.getInput(), pair.getOutput());
+    }
+
+    AnnotationProcessor processor = builder.build();
+
+    try {
+      processor.process();
+      fail("Expected processing to fail");
+    } catch (IOException e) {
+      String message = e.getMessage();
+      int lastIndex = -1;
+      for (FilePair pair : pairs) {
+        int index = message.indexOf("'" + pair.getInput().getCanonicalPath() + "'");
+        assertThat(index).isGreaterThan(lastIndex);
+        lastIndex = index;
+      }
+
+      assertThat(e.getCause().getMessage()).contains(pairs.get(0).getInput().getCanonicalPath());
+    }
+  }
+
+  @Test
+  public void oneProcessorIsSharedByAllFiles() throws Exception {
+    List<FilePair> pairs = writeInputs();
+    AtomicInteger processorsMade = new AtomicInteger();
+
+    AnnotationProcessorConfigurationBuilder builder =
+        new AnnotationProcessorConfigurationBuilder()
+            .setConfigurationFile(FileUtils.createConfigurationFile(temporaryFolder))
+            .setParallelism(4)
+            .processSystemPath(false)
+            .setClassFileProcessorFactory(
+                (configuration, classLoader, model) -> {
+                  processorsMade.incrementAndGet();
+                  return new InvertingClassFileProcessor();
+                });
+    for (FilePair pair : pairs) {
+      builder.addInputOutputMap(pair.getInput(), pair.getOutput());
+    }
+
+    builder.build().process();
+
+    assertThat(processorsMade.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void rejectsInvalidParallelism() {
+    assertThatThrownBy(() -> new AnnotationProcessorConfigurationBuilder().setParallelism(0))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.ads.injkit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.facebook.ads.injkit.model.Model;
+import com.facebook.ads.injkit.model.ModelFactory;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.tree.ClassNode;
+
+@RunWith(JUnit4.class)
+public class ParallelModelScanTest {
+  private static final int JAR_COUNT = 6;
+  private static final int CLASSES_PER_JAR = 700;
+
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  // Every jar defines the same shared classes, with a super class naming the jar that defined
+  // them, plus classes of its own. Each jar also ends with a second definition of shared/S0.
+  private List<File> writeJars() throws IOException {
+    List<File> jars = new ArrayList<>();
+    for (int j = 0; j < JAR_COUNT; j++) {
+      Map<String, byte[]> entries = new LinkedHashMap<>();
+      for (int i = 0; i < CLASSES_PER_JAR; i++) {
+        String shared = "shared/S" + i;
+        String own = "own" + j + "/C" + i;
+        entries.put(shared + ".class", FileUtils.makeClass(shared, "jar/J" + j));
+        entries.put(own + ".class", FileUtils.makeClass(own, "jar/J" + j));
+      }
+
+      entries.put("dup/S0.class", FileUtils.makeClass("shared/S0", "jar/Dup" + j));
+      jars.add(FileUtils.writeJar(temporaryFolder.newFile("j" + j + ".jar"), entries));
+    }
+
+    return jars;
+  }
+
+  private static Model scan(List<File> files, int parallelism, ModelFactory factory)
+      throws Exception {
+    Model model = factory.make();
+    new ModelScanner(
+            new ParsingClassFileProcessor(),
+            new ProcessingOptions(
+                parallelism,
+                0,
+                ProcessingOptions.DEFAULT_ZIP_PIPELINE_MAX_IN_FLIGHT_BYTES,
+                null,
+                null,
+                false))
+        .scan(files, Collections.emptyList(), model);
+    return model;
+  }
+
+  @Test
+  public void parallelScanMatchesSerialScan() throws Exception {
+    List<File> jars = writeJars();
+
+    Model serial = scan(jars, 1, ModelFactory.defaultFactory());
+    Model parallel = scan(jars, 4, ModelFactory.concurrentFactory());
+
+    for (int i = 0; i < CLASSES_PER_JAR; i++) {
+      String shared = "shared/S" + i;
+      assertThat(parallel.superClassOf(shared)).isEqualTo(serial.superClassOf(shared));
+      assertThat(parallel.superClassOf(shared)).isEqualTo("jar/J0");
+      for (int j = 0; j < JAR_COUNT; j++) {
+        assertThat(parallel.superClassOf("own" + j + "/C" + i)).isEqualTo("jar/J" + j);
+      }
+    }
+  }
+
+  @Test
+  public void parallelScanReadsPlainClassFiles() throws Exception {
+    File directory = temporaryFolder.newFolder();
+    File classFile = new File(directory, "A.class");
+    Files.write(classFile.toPath(), FileUtils.makeClass("a/A", "java/lang/Object"));
+    List<File> files = new ArrayList<>(writeJars());
+    files.add(classFile);
+
+    Model model = scan(files, 3, ModelFactory.concurrentFactory());
+
+    assertThat(model.knowsClass("a/A")).isTrue();
+  }
+
+  private static class ParsingClassFileProcessor implements ClassFileProcessor {
+    @Override
+    public void process(InputStream input, OutputStream output) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void updateModel(InputStream input, Model model) throws IOException {
+      ClassNode node = new ClassNode();
+      new ClassReader(input).accept(node, 0);
+      model.update(node);
+    }
+  }
+}
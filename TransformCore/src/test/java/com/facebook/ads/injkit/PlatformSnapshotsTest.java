@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.ads.injkit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.facebook.ads.injkit.model.Model;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.objectweb.asm.ClassReader;
+
+@RunWith(JUnit4.class)
+public class PlatformSnapshotsTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private File configurationFile;
+  private File input;
+  private File output;
+  private final AtomicInteger parsedClasses = new AtomicInteger();
+
+  @Before
+  public void before() throws Exception {
+    configurationFile = FileUtils.createConfigurationFile(temporaryFolder);
+    input = temporaryFolder.newFile("Input.class");
+    Files.write(input.toPath(), FileUtils.makeClass("in/Input", "platform/View"));
+    output = temporaryFolder.newFile();
+  }
+
+  private File writeJar(String name, String... classes) throws IOException {
+    return writeJarWithSuperClass(name, "java/lang/Object", classes);
+  }
+
+  private File writeJarWithSuperClass(String name, String superIName, String... classes)
+      throws IOException {
+    return FileUtils.writeClassJar(new File(temporaryFolder.getRoot(), name), superIName, classes);
+  }
+
+  // Runs the processor and returns the hierarchical closure of the input.
+  private List<String> run(File classpathJar, File snapshot, boolean lazyModel) throws Exception {
+    return run(Collections.singletonList(classpathJar), snapshot, lazyModel);
+  }
+
+  private List<String> run(List<File> classpath, File snapshot, boolean lazyModel)
+      throws Exception {
+    List<String> closure = new ArrayList<>();
+    AtomicBoolean processed = new AtomicBoolean();
+    AnnotationProcessorConfigurationBuilder builder = new AnnotationProcessorConfigurationBuilder();
+    for (File classpathElement : classpath) {
+      builder.addClasspathElement(classpathElement);
+    }
+
+    builder
+        .addInputOutputMap(input, output)
+        .addPlatformSnapshot(snapshot)
+        .setConfigurationFile(configurationFile)
+        .setLazyModel(lazyModel)
+        .processSystemPath(false)
+        .setClassFileProcessorFactory(
+            (configuration, classLoader, model) ->
+                new ClassFileProcessor() {
+                  @Override
+                  public void process(InputStream in, OutputStream out) {
+                    for (String iName : model.hierarchicalClosure("in/Input")) {
+                      if (model.knowsClass(iName)) {
+                        closure.add(iName);
+                      }
+                    }
+
+                    processed.set(true);
+                  }
+
+                  @Override
+                  public void updateModel(InputStream in, Model target) throws IOException {
+                    parsedClasses.incrementAndGet();
+                    target.update(new ClassReader(in));
+                  }
+                })
+        .build()
+        .process();
+    assertThat(processed.get()).isTrue();
+    Collections.sort(closure);
+    return closure;
+  }
+
+  @Test
+  public void platformJarIsLoadedFromSnapshotInsteadOfParsed() throws Exception {
+    File jar = writeJar("platform.jar", "platform/View", "platform/Handler");
+    File snapshot = temporaryFolder.newFile("platform.snapshot");
+    PlatformSnapshots.write(jar, snapshot);
+
+    assertThat(run(jar, snapshot, false)).containsExactly("in/Input", "platform/View");
+    // Only the input is parsed.
+    assertThat(parsedClasses.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void copyOfPlatformJarElsewhereIsRecognized() throws Exception {
+    File jar = writeJar("platform.jar", "platform/View", "platform/Handler");
+    File snapshot = temporaryFolder.newFile("platform.snapshot");
+    PlatformSnapshots.write(jar, snapshot);
+    File copy = new File(temporaryFolder.newFolder(), "android-all.jar");
+    Files.copy(jar.toPath(), copy.toPath());
+
+    assertThat(run(copy, snapshot, false)).containsExactly("in/Input", "platform/View");
+    assertThat(parsedClasses.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void otherJarsAreStillParsed() throws Exception {
+    File jar = writeJar("platform.jar", "platform/View", "platform/Handler");
+    File snapshot = temporaryFolder.newFile("platform.snapshot");
+    PlatformSnapshots.write(jar, snapshot);
+    File library = writeJar("library.jar", "lib/A", "lib/B");
+
+    assertThat(run(library, snapshot, false)).containsExactly("in/Input", "platform/View");
+    assertThat(parsedClasses.get()).isEqualTo(3);
+  }
+
+  @Test
+  public void snapshotTakesThePositionOfItsJarInThePath() throws Exception {
+    File jar = writeJar("platform.jar", "platform/View");
+    File snapshot = temporaryFolder.newFile("platform.snapshot");
+    PlatformSnapshots.write(jar, snapshot);
+    // Both define platform/View, and the first on the path wins.
+    File before = writeJarWithSuperClass("before.jar", "lib/Base", "platform/View", "lib/Base");
+
+    assertThat(run(Arrays.asList(before, jar), snapshot, false))
+        .containsExactly("in/Input", "lib/Base", "platform/View");
+    assertThat(run(Arrays.asList(before, jar), snapshot, true))
+        .containsExactly("in/Input", "lib/Base", "platform/View");
+    assertThat(run(Arrays.asList(jar, before), snapshot, false))
+        .containsExactly("in/Input", "platform/View");
+    assertThat(run(Arrays.asList(jar, before), snapshot, true))
+        .containsExactly("in/Input", "platform/View");
+  }
+
+  @Test
+  public void knownSourceIsOnlyHashedAgainOnceModified() throws Exception {
+    File jar = writeJar("platform.jar", "platform/View", "platform/Handler");
+    File snapshot = temporaryFolder.newFile("platform.snapshot");
+    PlatformSnapshots.write(jar, snapshot);
+    run(jar, snapshot, false);
+
+    // Same size and modification time, but different content, so only recognized if the content
+    // is not hashed.
+    long lastModified = jar.lastModified();
+    byte[] content = Files.readAllBytes(jar.toPath());
+    byte[] changed =
+        Files.readAllBytes(writeJar("changed.jar", "platform/Viev", "platform/Handler").toPath());
+    assertThat(changed.length).isEqualTo(content.length);
+    Files.write(jar.toPath(), changed);
+    assertThat(jar.setLastModified(lastModified)).isTrue();
+    parsedClasses.set(0);
+
+    assertThat(run(jar, snapshot, false)).containsExactly("in/Input", "platform/View");
+    assertThat(parsedClasses.get()).isEqualTo(1);
+
+    assertThat(jar.setLastModified(lastModified + 10_000)).isTrue();
+    parsedClasses.set(0);
+
+    // The jar is hashed and no longer recognized, so it is parsed.
+    run(jar, snapshot, false);
+    assertThat(parsedClasses.get()).isEqualTo(3);
+  }
+
+  @Test
+  public void rejectsFilesThatAreNotSnapshots() throws Exception {
+    File jar = writeJar("platform.jar", "platform/View");
+    File notSnapshot = temporaryFolder.newFile("not.snapshot");
+    Files.write(notSnapshot.toPath(), new byte[] {1, 2, 3, 4, 5, 6, 7, 8});
+
+    assertThatThrownBy(() -> run(jar, notSnapshot, false))
+        .isInstanceOf(IOException.class)
+        .hasMessageContaining("not a platform snapshot");
+  }
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.ads.injkit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.facebook.ads.injkit.model.Model;
+import com.google.common.io.ByteStreams;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class RawZipCopyTest {
+  private static final int ENTRY_COUNT = 30;
+  // 2000-01-01 00:00, so it survives the 2 second precision of zip times.
+  private static final long TIME = 946684800000L;
+
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private static String entryPath(int index) {
+    return "foo/E" + index + (index % 3 == 0 ? ".class" : ".data");
+  }
+
+  // Data that compresses well, so recompressing it at another level changes its size.
+  private static byte[] entryData(int index) {
+    StringBuilder data = new StringBuilder();
+    for (int i = 0; i < 200; i++) {
+      data.append("entry ").append(index).append(" line ").append(i % 7).append('\n');
+    }
+
+    byte[] bytes = data.toString().getBytes(StandardCharsets.UTF_8);
+    if (index % 3 == 0) {
+      System.arraycopy(
+          ClassFileDetectorStream.CLASS_FILE_MAGIC,
+          0,
+          bytes,
+          0,
+          ClassFileDetectorStream.CLASS_FILE_MAGIC.length);
+    }
+
+    return bytes;
+  }
+
+  // Odd entries are stored, even entries are deflated at the fastest level.
+  private File writeZip() throws IOException {
+    File zipFile = temporaryFolder.newFile("foo.zip");
+    try (FileOutputStream zipFileOutput = new FileOutputStream(zipFile);
+        ZipOutputStream zip = new ZipOutputStream(zipFileOutput)) {
+      zip.setLevel(Deflater.BEST_SPEED);
+      zip.putNextEntry(new ZipEntry("foo/"));
+      for (int i = 0; i < ENTRY_COUNT; i++) {
+        byte[] data = entryData(i);
+        ZipEntry entry = new ZipEntry(entryPath(i));
+        entry.setTime(TIME);
+        if (i % 2 == 1) {
+          CRC32 crc = new CRC32();
+          crc.update(data);
+          entry.setMethod(ZipEntry.STORED);
+          entry.setSize(data.length);
+          entry.setCrc(crc.getValue());
+        }
+
+        zip.putNextEntry(entry);
+        zip.write(data);
+      }
+    }
+
+    return zipFile;
+  }
+
+  private void process(File in, File out, ClassFileProcessor processor, boolean pipelined)
+      throws Exception {
+    File configurationFile = temporaryFolder.newFile();
+    TransformationEnvironment.newConfigurationWriter().write(configurationFile);
+    new AnnotationProcessorConfigurationBuilder()
+        .addInputOutputMap(in, out)
+        .setConfigurationFile(configurationFile)
+        .setZipPipelineThreads(pipelined ? 4 : 0)
+        .setClassFileProcessorFactory((configuration, classLoader, model) -> processor)
+        .processSystemPath(false)
+        .build()
+        .process();
+  }
+
+  private static List<ZipEntry> entries(ZipFile zip) {
+    List<ZipEntry> entries = new ArrayList<>();
+    Enumeration<? extends ZipEntry> enumeration = zip.entries();
+    while (enumeration.hasMoreElements()) {
+      entries.add(enumeration.nextElement());
+    }
+
+    return entries;
+  }
+
+  private static byte[] read(ZipFile zip, ZipEntry entry) throws IOException {
+    try (InputStream input = zip.getInputStream(entry)) {
+      return ByteStreams.toByteArray(input);
+    }
+  }
+
+  private void checkUnchangedEntriesAreCopied(boolean pipelined) throws Exception {
+    File in = writeZip();
+    File out = temporaryFolder.newFile();
+
+    process(in, out, new CopyingClassFileProcessor(), pipelined);
+
+    try (ZipFile inZip = new ZipFile(in);
+        ZipFile outZip = new ZipFile(out)) {
+      List<ZipEntry> inEntries = entries(inZip);
+      List<ZipEntry> outEntries = entries(outZip);
+      assertThat(outEntries).hasSize(inEntries.size());
+      for (int i = 0; i < inEntries.size(); i++) {
+        ZipEntry inEntry = inEntries.get(i);
+        ZipEntry outEntry = outEntries.get(i);
+        assertThat(outEntry.getName()).isEqualTo(inEntry.getName());
+        assertThat(outEntry.getMethod()).isEqualTo(inEntry.getMethod());
+        assertThat(outEntry.getCompressedSize()).isEqualTo(inEntry.getCompressedSize());
+        assertThat(outEntry.getCrc()).isEqualTo(inEntry.getCrc());
+        assertThat(outEntry.getTime()).isEqualTo(inEntry.getTime());
+        assertThat(read(outZip, outEntry)).isEqualTo(read(inZip, inEntry));
+      }
+    }
+  }
+
+  @Test
+  public void unchangedEntriesAreCopiedCompressed() throws Exception {
+    checkUnchangedEntriesAreCopied(false);
+  }
+
+  @Test
+  public void unchangedEntriesAreCopiedCompressedWhenPipelined() throws Exception {
+    checkUnchangedEntriesAreCopied(true);
+  }
+
+  @Test
+  public void changedClassesAreRecompressed() throws Exception {
+    File in = writeZip();
+    File out = temporaryFolder.newFile();
+
+    process(
+        in,
+        out,
+        new CopyingClassFileProcessor() {
+          @Override
+          public void process(InputStream input, OutputStream output) throws IOException {
+            super.process(input, output);
+            output.write('!');
+          }
+        },
+        false);
+
+    try (ZipFile outZip = new ZipFile(out)) {
+      for (int i = 0; i < ENTRY_COUNT; i++) {
+        ZipEntry entry = outZip.getEntry(entryPath(i));
+        byte[] data = entryData(i);
+        if (i % 3 == 0) {
+          byte[] expected = new byte[data.length + 1];
+          System.arraycopy(data, 0, expected, 0, data.length);
+          expected[data.length] = '!';
+          assertThat(entry.getMethod()).isEqualTo(ZipEntry.DEFLATED);
+          assertThat(read(outZip, entry)).isEqualTo(expected);
+        } else {
+          assertThat(read(outZip, entry)).isEqualTo(data);
+        }
+
+        assertThat(entry.getTime()).isEqualTo(TIME);
+      }
+    }
+  }
+
+  private static class CopyingClassFileProcessor implements ClassFileProcessor {
+    @Override
+    public void process(InputStream input, OutputStream output) throws IOException {
+      ByteStreams.copy(input, output);
+    }
+
+    @Override
+    public void updateModel(InputStream input, Model model) {}
+  }
+}
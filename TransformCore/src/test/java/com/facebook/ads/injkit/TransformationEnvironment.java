@@ -109,6 +109,14 @@ public class TransformationEnvironment {
     throw new IOException("Could not find class '" + cls.getCanonicalName() + "'");
   }
 
+  public TransformationEnvironment addProcessingClassFile(String iName, byte[] classFile)
+      throws IOException {
+    File result = new File(inputDirectory, iName + ".class");
+    result.getParentFile().mkdirs();
+    Files.write(classFile, result);
+    return this;
+  }
+
   public Object invoke(ClassLoader loader, Class<?> cls, String name) throws Exception {
     Class<?> loaded = loader.loadClass(cls.getName());
     Method m = loaded.getDeclaredMethod(name);
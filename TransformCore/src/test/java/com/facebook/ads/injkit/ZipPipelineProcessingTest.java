@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.ads.injkit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.Assert.fail;
+
+import com.google.common.io.ByteStreams;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class ZipPipelineProcessingTest {
+  private static final int ENTRY_COUNT = 200;
+
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+  private final Random random = new Random();
+
+  private byte[] generateEntryData(int index) {
+    byte[] data = new byte[10 + random.nextInt(100)];
+    random.nextBytes(data);
+    if (index % 2 == 0) {
+      System.arraycopy(
+          ClassFileDetectorStream.CLASS_FILE_MAGIC,
+          0,
+          data,
+          0,
+          ClassFileDetectorStream.CLASS_FILE_MAGIC.length);
+    }
+
+    return data;
+  }
+
+  private static String entryPath(int index) {
+    return "foo/E" + index + (index % 2 == 0 ? ".class" : ".data");
+  }
+
+  private File writeZip(List<byte[]> entries) throws IOException {
+    File zipFile = temporaryFolder.newFile("foo.zip");
+    try (FileOutputStream zipFileOutput = new FileOutputStream(zipFile);
+        ZipOutputStream zip = new ZipOutputStream(zipFileOutput)) {
+      for (int i = 0; i < entries.size(); i++) {
+        zip.putNextEntry(new ZipEntry(entryPath(i)));
+        zip.write(entries.get(i));
+      }
+    }
+
+    return zipFile;
+  }
+
+  private AnnotationProcessorConfigurationBuilder newBuilder(
+      File in, File out, ClassFileProcessor processor) throws Exception {
+    return new AnnotationProcessorConfigurationBuilder()
+        .addInputOutputMap(in, out)
+        .setConfigurationFile(FileUtils.createConfigurationFile(temporaryFolder))
+        .setZipPipelineThreads(4)
+        .setZipPipelineMaxInFlightBytes(256)
+        .setClassFileProcessorFactory((configuration, classLoader, model) -> processor)
+        .processSystemPath(false);
+  }
+
+  @Test
+  public void pipelinedZipKeepsEntryOrderAndContents() throws Exception {
+    List<byte[]> entries = new ArrayList<>();
+    for (int i = 0; i < ENTRY_COUNT; i++) {
+      entries.add(generateEntryData(i));
+    }
+
+    File in = writeZip(entries);
+    File out = temporaryFolder.newFile();
+
+    newBuilder(in, out, new InvertingClassFileProcessor()).build().process();
+
+    try (ZipFile zf = new ZipFile(out)) {
+      Enumeration<? extends ZipEntry> outEntries = zf.entries();
+      for (int i = 0; i < ENTRY_COUNT; i++) {
+        assertThat(outEntries.hasMoreElements()).isTrue();
+        ZipEntry entry = outEntries.nextElement();
+        assertThat(entry.getName()).isEqualTo(entryPath(i));
+
+        byte[] expected =
+            i % 2 == 0 ? InvertingClassFileProcessor.invert(entries.get(i)) : entries.get(i);
+        try (InputStream entryInput = zf.getInputStream(entry)) {
+          assertThat(ByteStreams.toByteArray(entryInput)).isEqualTo(expected);
+        }
+      }
+
+      assertThat(outEntries.hasMoreElements()).isFalse();
+    }
+  }
+
+  @Test
+  public void pipelinedZipReportsFailingEntry() throws Exception {
+    List<byte[]> entries = new ArrayList<>();
+    for (int i = 0; i < ENTRY_COUNT; i++) {
+      entries.add(generateEntryData(i));
+    }
+
+    File in = writeZip(entries);
+    File out = temporaryFolder.newFile();
+    byte[] failing = entries.get(ENTRY_COUNT / 2);
+
+    AnnotationProcessor processor =
+        newBuilder(
+                in,
+                out,
+                new InvertingClassFileProcessor() {
+                  @Override
+                  public void process(InputStream input, OutputStream output) throws IOException {
+                    byte[] data = ByteStreams.toByteArray(input);
+                    if (Arrays.equals(data, failing)) {
+                      throw new IOException("boom");
+                    }
+
+                    output.write(InvertingClassFileProcessor.invert(data));
+                  }
+                })
+            .build();
+
+    try {
+      processor.process();
+      fail("Expected processing to fail");
+    } catch (IOException e) {
+      Throwable cause = e;
+      boolean found = false;
+      while (cause != null) {
+        found |= String.valueOf(cause.getMessage()).contains(entryPath(ENTRY_COUNT / 2));
+        cause = cause.getCause();
+      }
+
+      assertThat(found).isTrue();
+    }
+  }
+
+  @Test
+  public void rejectsInvalidPipelineSettings() {
+    assertThatThrownBy(
+            () -> new AnnotationProcessorConfigurationBuilder().setZipPipelineThreads(-1))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(
+            () -> new AnnotationProcessorConfigurationBuilder().setZipPipelineMaxInFlightBytes(0))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.ads.injkit.model;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Collections;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.objectweb.asm.Opcodes;
+
+@RunWith(JUnit4.class)
+public class ClassFingerprintsTest {
+
+  private static Model makeModel(String interfaceAnnotation, Object annotationDefault) {
+    Model model = ModelFactory.defaultFactory().make();
+    model.update(AsmCreationUtils.makeClass("a/A", "a/Super"));
+    model.update(AsmCreationUtils.makeClass("a/Super", "java/lang/Object", "a/I"));
+    model.update(
+        AsmCreationUtils.makeClassWithAnnotations(
+            "a/I",
+            "java/lang/Object",
+            Collections.singletonList(AsmCreationUtils.makeAnnotation(interfaceAnnotation)),
+            Collections.emptyList()));
+    model.update(
+        AsmCreationUtils.addMethods(
+            AsmCreationUtils.makeAnnotationClass("a/Ann"),
+            AsmCreationUtils.makeMethod(
+                "value",
+                "()I",
+                Opcodes.ACC_PUBLIC,
+                Collections.emptyList(),
+                Collections.emptyList(),
+                annotationDefault)));
+    return model;
+  }
+
+  @Test
+  public void sameModelDataHasSameFingerprint() {
+    assertThat(ClassFingerprints.of(makeModel("La/Ann;", 1), "a/A"))
+        .isEqualTo(ClassFingerprints.of(makeModel("La/Ann;", 1), "a/A"));
+  }
+
+  @Test
+  public void fingerprintChangesWithAncestors() {
+    assertThat(ClassFingerprints.of(makeModel("La/Ann;", 1), "a/A"))
+        .isNotEqualTo(ClassFingerprints.of(makeModel("La/Other;", 1), "a/A"));
+  }
+
+  @Test
+  public void fingerprintChangesWithAnnotationTypesInHierarchy() {
+    assertThat(ClassFingerprints.of(makeModel("La/Ann;", 1), "a/A"))
+        .isNotEqualTo(ClassFingerprints.of(makeModel("La/Ann;", 2), "a/A"));
+  }
+
+  @Test
+  public void fingerprintIgnoresUnrelatedClasses() {
+    Model model = makeModel("La/Ann;", 1);
+    String before = ClassFingerprints.of(model, "a/A");
+    model.update(AsmCreationUtils.makeClass("b/B", "a/A"));
+
+    assertThat(ClassFingerprints.of(model, "a/A")).isEqualTo(before);
+  }
+
+  @Test
+  public void replacementsAreSeenInsteadOfModelClasses() {
+    Model replaced = makeModel("La/Ann;", 1);
+    Model replacements = ClassFingerprints.newReplacements(replaced);
+    replacements.update(
+        AsmCreationUtils.makeClassWithAnnotations(
+            "a/I",
+            "java/lang/Object",
+            Collections.singletonList(AsmCreationUtils.makeAnnotation("La/Other;")),
+            Collections.emptyList()));
+
+    assertThat(ClassFingerprints.of(replaced, replacements, "a/A"))
+        .isEqualTo(ClassFingerprints.of(makeModel("La/Other;", 1), "a/A"));
+  }
+
+  @Test
+  public void hierarchyFingerprintIgnoresAnnotations() {
+    assertThat(ClassFingerprints.ofHierarchy(makeModel("La/Ann;", 1), null, "a/A"))
+        .isEqualTo(ClassFingerprints.ofHierarchy(makeModel("La/Other;", 1), null, "a/A"));
+  }
+
+  @Test
+  public void hierarchyFingerprintChangesWithSuperclass() {
+    Model model = makeModel("La/Ann;", 1);
+    Model replacements = ClassFingerprints.newReplacements(model);
+    replacements.update(AsmCreationUtils.makeClass("a/A", "java/lang/Object"));
+
+    assertThat(ClassFingerprints.ofHierarchy(model, replacements, "a/A"))
+        .isNotEqualTo(ClassFingerprints.ofHierarchy(model, null, "a/A"));
+  }
+}
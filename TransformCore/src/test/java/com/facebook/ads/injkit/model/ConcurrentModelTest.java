@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.ads.injkit.model;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class ConcurrentModelTest {
+  private static final int THREADS = 8;
+  private static final int CLASSES_PER_THREAD = 1000;
+
+  private final Model model = ModelFactory.concurrentFactory().make();
+
+  @Test
+  public void concurrentUpdatesAreAllKnown() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    try {
+      List<Future<?>> results = new ArrayList<>();
+      for (int t = 0; t < THREADS; t++) {
+        int thread = t;
+        results.add(
+            executor.submit(
+                () -> {
+                  for (int i = 0; i < CLASSES_PER_THREAD; i++) {
+                    model.update(AsmCreationUtils.makeClass("c/C" + i, "s/S" + thread));
+                  }
+                }));
+      }
+
+      for (Future<?> result : results) {
+        result.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    for (int i = 0; i < CLASSES_PER_THREAD; i++) {
+      assertThat(model.knowsClass("c/C" + i)).isTrue();
+      assertThat(model.superClassOf("c/C" + i)).startsWith("s/S");
+    }
+  }
+
+  @Test
+  public void firstUpdateWins() {
+    model.update(AsmCreationUtils.makeClass("a", "first"));
+    model.update(AsmCreationUtils.makeClass("a", "second"));
+
+    assertThat(model.superClassOf("a")).isEqualTo("first");
+  }
+
+  @Test
+  public void updateFromKeepsKnownClasses() {
+    Model other = ModelFactory.defaultFactory().make();
+    other.update(AsmCreationUtils.makeClass("a", "other"));
+    other.update(AsmCreationUtils.makeClass("b", "other"));
+    model.update(AsmCreationUtils.makeClass("a", "mine"));
+
+    model.updateFrom(other);
+
+    assertThat(model.superClassOf("a")).isEqualTo("mine");
+    assertThat(model.superClassOf("b")).isEqualTo("other");
+  }
+}
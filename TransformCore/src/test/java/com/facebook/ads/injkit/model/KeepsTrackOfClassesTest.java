@@ -10,6 +10,7 @@ package com.facebook.ads.injkit.model;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
+import java.util.Set;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -69,6 +70,53 @@ public class KeepsTrackOfClassesTest {
         .containsOnly("a", "b", "c", "d", "e", "x", "y", "z", "o");
   }
 
+  @Test
+  public void closureIsSharedUntilClassesAreAdded() {
+    model.update(AsmCreationUtils.makeClass("a", "b"));
+    Set<String> closure = model.hierarchicalClosure("a");
+
+    assertThat(model.hierarchicalClosure("a")).isSameAs(closure);
+    assertThatThrownBy(() -> closure.add("x")).isInstanceOf(UnsupportedOperationException.class);
+
+    model.update(AsmCreationUtils.makeClass("b", "c"));
+
+    assertThat(model.hierarchicalClosure("a")).containsOnly("a", "b", "c");
+  }
+
+  @Test
+  public void closureIsKeptWhenKnownClassesAreUpdated() {
+    model.update(AsmCreationUtils.makeClass("a", "b"));
+    Set<String> closure = model.hierarchicalClosure("a");
+
+    model.update(AsmCreationUtils.makeClass("a", "c"));
+
+    assertThat(model.hierarchicalClosure("a")).isSameAs(closure);
+  }
+
+  @Test
+  public void namesAreSharedBetweenClasses() {
+    model.update(AsmCreationUtils.makeClass("a", new String("s"), new String("i")));
+    model.update(AsmCreationUtils.makeClass("b", new String("s"), new String("i")));
+
+    assertThat(model.superClassOf("a")).isSameAs(model.superClassOf("b"));
+    assertThat(model.interfacesOf("a").get(0)).isSameAs(model.interfacesOf("b").get(0));
+    assertThat(model.interfacesOf("a")).isSameAs(model.interfacesOf("a"));
+  }
+
+  @Test
+  public void subtypesIncludeSubclassesAndImplementations() {
+    model.update(AsmCreationUtils.makeClass("a", "java/lang/Object"));
+    model.update(AsmCreationUtils.makeClass("b", "a", "i"));
+    model.update(AsmCreationUtils.makeClass("c", "b"));
+    model.update(AsmCreationUtils.makeClass("d", "java/lang/Object", "i"));
+    model.update(AsmCreationUtils.makeClass("e", "d"));
+
+    assertThat(model.directSubtypesOf("a")).containsOnly("b");
+    assertThat(model.allSubtypesOf("a")).containsOnly("b", "c");
+    assertThat(model.allSubtypesOf("i")).containsOnly("b", "c", "d", "e");
+    assertThat(model.allSubtypesOf("c")).isEmpty();
+  }
+
   @Test
   public void canUpdateSameClassTwice() {
     model.update(AsmCreationUtils.makeClass("a", "b"));
@@ -97,6 +97,61 @@ public class KeepsTrackOfMethodAnnotationsTest {
         .doesNotContain("LXXX;");
   }
 
+  @Test
+  public void findsMethodsWithAnnotation() {
+    assertThat(model.methodsWithAnnotation("a/B", "Lmy/Ann1;")).containsOnly("foo()V");
+    assertThat(model.methodsWithAnnotation("a/B", "Lmy/Ann14;")).containsOnly("bazz(Z)Z");
+    assertThat(model.methodsWithAnnotation("a/B", "Lmy/Ann3;")).isEmpty();
+    assertThat(model.methodsWithAnnotation("e/F", "Lmy/Ann1;")).isEmpty();
+  }
+
+  @Test
+  public void indexesClassesByAnnotation() {
+    assertThat(model.classesWithAnnotation("Lmy/Ann3;")).containsOnly("a/B");
+    assertThat(model.classesWithAnnotation("Lmy/Ann1;")).isEmpty();
+    assertThat(model.classesWithMethodAnnotation("Lmy/Ann1;")).containsOnly("a/B");
+    assertThat(model.classesWithMethodAnnotation("Lmy/Ann7;")).containsOnly("g/H");
+  }
+
+  @Test
+  public void closureUsesAnnotationsOfAncestorsAndTheirMethods() {
+    assertThat(model.closureUsesAnnotation("e/F", "Lmy/Ann4;")).isTrue();
+    assertThat(model.closureUsesAnnotation("e/F", "Lmy/Ann1;")).isTrue();
+    assertThat(model.closureUsesAnnotation("e/F", "Lmy/Ann16;")).isTrue();
+    assertThat(model.closureUsesAnnotation("a/B", "Lmy/Ann5;")).isFalse();
+    assertThat(model.closureUsesAnnotation("g/H", "LXXX;")).isFalse();
+  }
+
+  @Test
+  public void resolvesInheritedMethodAnnotationsForWholeClass() {
+    InheritedMethodAnnotations ann1 = model.inheritedMethodAnnotations("e/F", "Lmy/Ann1;");
+    assertThat(ann1.isAnnotated("foo", "()V", Opcodes.ACC_PUBLIC)).isTrue();
+    assertThat(ann1.isAnnotated("bar", "(I)I", Opcodes.ACC_PUBLIC)).isFalse();
+    assertThat(ann1.propertyValues("foo", "()V", Opcodes.ACC_PUBLIC, "value")).isEmpty();
+
+    InheritedMethodAnnotations ann8 = model.inheritedMethodAnnotations("e/F", "Lmy/Ann8;");
+    assertThat(ann8.isAnnotated("foo", "()V", Opcodes.ACC_PUBLIC)).isTrue();
+
+    assertThat(
+            model
+                .inheritedMethodAnnotations("e/F", "Lmy/Ann9;")
+                .isAnnotated("bar", "(I)I", Opcodes.ACC_PUBLIC))
+        .isFalse();
+    assertThat(
+            model
+                .inheritedMethodAnnotations("e/F", "Lmy/Ann13;")
+                .isAnnotated("bazz", "(Z)Z", Opcodes.ACC_PUBLIC))
+        .isFalse();
+  }
+
+  @Test
+  public void methodsDifferingInStaticAccessAreDifferent() {
+    assertThat(model.hasMethod("a/B", "bazz", "(Z)Z", Opcodes.ACC_STATIC)).isTrue();
+    assertThat(model.hasMethod("a/B", "bazz", "(Z)Z", Opcodes.ACC_PUBLIC)).isFalse();
+    assertThat(model.hasMethod("a/B", "bar", "(I)I", Opcodes.ACC_PRIVATE | Opcodes.ACC_FINAL))
+        .isTrue();
+  }
+
   @Test
   public void classAnnotationsNotReportedInMethod() {
     assertThat(model.annotationsOfMethod("a/B", "foo", "()V", Opcodes.ACC_PUBLIC))
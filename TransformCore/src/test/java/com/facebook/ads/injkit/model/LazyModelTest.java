@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.ads.injkit.model;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
+
+@RunWith(JUnit4.class)
+public class LazyModelTest {
+  private final Map<String, byte[]> classFiles = new HashMap<>();
+  private final List<String> reads = new CopyOnWriteArrayList<>();
+  private final Model model = ModelFactory.concurrentFactory().make();
+
+  private static byte[] toBytes(ClassNode node) {
+    node.version = Opcodes.V1_8;
+    ClassWriter writer = new ClassWriter(0);
+    node.accept(writer);
+    return writer.toByteArray();
+  }
+
+  @Before
+  public void before() {
+    classFiles.put("a/A", toBytes(AsmCreationUtils.makeClass("a/A", "a/Super", "a/I")));
+    classFiles.put("a/Super", toBytes(AsmCreationUtils.makeClass("a/Super", "java/lang/Object")));
+    classFiles.put("a/I", toBytes(AsmCreationUtils.makeClass("a/I", "java/lang/Object")));
+    classFiles.put("a/Unrelated", toBytes(AsmCreationUtils.makeClass("a/Unrelated", "a/Super")));
+    classFiles.put("a/Misplaced", toBytes(AsmCreationUtils.makeClass("a/Other", "a/Super")));
+    classFiles.put(
+        "java/lang/Object", toBytes(AsmCreationUtils.makeClass("java/lang/Object", null)));
+  }
+
+  private void addIndex() {
+    model.updateLazily(
+        iName -> {
+          byte[] data = classFiles.get(iName);
+          if (data != null) {
+            reads.add(iName);
+          }
+
+          return data;
+        });
+  }
+
+  @Test
+  public void onlyClassesLookedUpAreParsed() {
+    addIndex();
+
+    assertThat(model.hierarchicalClosure("a/A"))
+        .containsOnly("a/A", "a/Super", "a/I", "java/lang/Object");
+    assertThat(reads).containsOnly("a/A", "a/Super", "a/I", "java/lang/Object");
+  }
+
+  @Test
+  public void classesAreParsedOnce() {
+    addIndex();
+
+    assertThat(model.superClassOf("a/A")).isEqualTo("a/Super");
+    assertThat(model.knowsClass("a/A")).isTrue();
+    assertThat(model.interfacesOf("a/A")).containsExactly("a/I");
+
+    assertThat(reads).containsExactly("a/A");
+  }
+
+  @Test
+  public void unknownClassesAreNotKnown() {
+    addIndex();
+
+    assertThat(model.knowsClass("a/Missing")).isFalse();
+    assertThat(model.knowsClass("a/Misplaced")).isFalse();
+  }
+
+  @Test
+  public void classesKnownBeforeTakePrecedence() {
+    model.update(AsmCreationUtils.makeClass("a/A", "a/Before"));
+    addIndex();
+
+    assertThat(model.superClassOf("a/A")).isEqualTo("a/Before");
+    assertThat(reads).isEmpty();
+  }
+
+  @Test
+  public void indexTakesPrecedenceOverClassesAddedLater() {
+    addIndex();
+    model.update(AsmCreationUtils.makeClass("a/A", "a/After"));
+
+    Model other = ModelFactory.defaultFactory().make();
+    other.update(AsmCreationUtils.makeClass("a/Super", "a/After"));
+    model.updateFrom(other);
+
+    assertThat(model.superClassOf("a/A")).isEqualTo("a/Super");
+    assertThat(model.superClassOf("a/Super")).isEqualTo("java/lang/Object");
+  }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.ads.injkit.model;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AnnotationNode;
+
+@RunWith(JUnit4.class)
+public class ModelSnapshotsTest {
+
+  private static Model roundTrip(Model... models) throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    ModelSnapshots.write(Arrays.asList(models), output);
+
+    Model read = ModelFactory.defaultFactory().make();
+    ModelSnapshots.read(new ByteArrayInputStream(output.toByteArray()), read);
+    return read;
+  }
+
+  @Test
+  public void keepsClassHierarchy() throws Exception {
+    Model model = ModelFactory.defaultFactory().make();
+    model.update(AsmCreationUtils.makeClass("a/A", "a/Super", "a/I1", "a/I2"));
+    model.update(AsmCreationUtils.makeClass("java/lang/Object", null));
+
+    Model read = roundTrip(model);
+
+    assertThat(read.superClassOf("a/A")).isEqualTo("a/Super");
+    assertThat(read.interfacesOf("a/A")).containsExactly("a/I1", "a/I2");
+    assertThat(read.superClassOf("java/lang/Object")).isNull();
+  }
+
+  @Test
+  public void keepsAnnotationValuesOfEveryKind() throws Exception {
+    AnnotationNode nested = AsmCreationUtils.makeAnnotation("La/Nested;", "n", 1);
+    List<Object> values =
+        Arrays.asList(
+            "string",
+            "s",
+            "byte",
+            (byte) 1,
+            "boolean",
+            true,
+            "char",
+            'c',
+            "short",
+            (short) 2,
+            "int",
+            3,
+            "long",
+            4L,
+            "float",
+            5.0f,
+            "double",
+            6.0,
+            "type",
+            Type.getType("La/T;"),
+            "enum",
+            new String[] {"La/E;", "X"},
+            "annotation",
+            nested,
+            "list",
+            Arrays.asList(1, 2, 3));
+    Model model = ModelFactory.defaultFactory().make();
+    model.update(
+        AsmCreationUtils.makeClassWithAnnotations(
+            "a/A",
+            "java/lang/Object",
+            Collections.singletonList(
+                AsmCreationUtils.makeAnnotation("La/Ann;", values.toArray())),
+            Collections.emptyList()));
+
+    Model read = roundTrip(model);
+
+    for (int i = 0; i < values.size(); i += 2) {
+      Object value = read.annotationPropertyOfClass("a/A", "La/Ann;", (String) values.get(i));
+      if (value instanceof AnnotationNode) {
+        assertThat(((AnnotationNode) value).desc).isEqualTo(nested.desc);
+        assertThat(((AnnotationNode) value).values).isEqualTo(nested.values);
+      } else {
+        assertThat(value).isEqualTo(values.get(i + 1));
+      }
+    }
+  }
+
+  @Test
+  public void keepsMethodsAndAnnotationDefaults() throws Exception {
+    Model model = ModelFactory.defaultFactory().make();
+    model.update(
+        AsmCreationUtils.addMethods(
+            AsmCreationUtils.makeAnnotationClass("a/Ann"),
+            AsmCreationUtils.makeMethod(
+                "value",
+                "()I",
+                Opcodes.ACC_PUBLIC,
+                Collections.singletonList("La/Marker;"),
+                Collections.emptyList(),
+                42)));
+
+    Model read = roundTrip(model);
+
+    assertThat(read.knowsAnnotation("La/Ann;")).isTrue();
+    assertThat(read.hasMethod("a/Ann", "value", "()I", Opcodes.ACC_PUBLIC)).isTrue();
+    assertThat(read.annotationsOfMethod("a/Ann", "value", "()I", Opcodes.ACC_PUBLIC))
+        .containsOnly("La/Marker;");
+    assertThat(read.annotationDefaultValue("La/Ann;", "value")).isEqualTo(42);
+  }
+
+  @Test
+  public void firstModelWins() throws Exception {
+    Model first = ModelFactory.defaultFactory().make();
+    first.update(AsmCreationUtils.makeClass("a/A", "first"));
+    Model second = ModelFactory.defaultFactory().make();
+    second.update(AsmCreationUtils.makeClass("a/A", "second"));
+    second.update(AsmCreationUtils.makeClass("a/B", "second"));
+
+    Model read = roundTrip(first, second);
+
+    assertThat(read.superClassOf("a/A")).isEqualTo("first");
+    assertThat(read.superClassOf("a/B")).isEqualTo("second");
+  }
+
+  @Test
+  public void rejectsDataThatIsNotASnapshot() {
+    assertThatThrownBy(
+            () ->
+                ModelSnapshots.read(
+                    new ByteArrayInputStream(new byte[] {1, 2, 3, 4, 5, 6, 7, 8}),
+                    ModelFactory.defaultFactory().make()))
+        .isInstanceOf(IOException.class);
+  }
+}
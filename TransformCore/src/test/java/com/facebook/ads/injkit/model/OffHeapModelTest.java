@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.ads.injkit.model;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.objectweb.asm.Opcodes;
+
+@RunWith(JUnit4.class)
+public class OffHeapModelTest {
+  private static final int THREADS = 8;
+  private static final int CLASSES_PER_THREAD = 500;
+
+  // Small chunks and a small number of decoded classes, so that records span several chunks and
+  // classes are decoded again after being evicted.
+  private final Model model = new ModelImpl(new OffHeapClassMap(256, 4), ModelRetention.all());
+
+  @Test
+  public void keepsClassesMethodsAndAnnotations() {
+    model.update(
+        AsmCreationUtils.addMethods(
+            AsmCreationUtils.makeAnnotationClass("my/Ann"),
+            AsmCreationUtils.makeMethod(
+                "value",
+                "()I",
+                Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT,
+                Collections.emptyList(),
+                Collections.emptyList(),
+                42)));
+    model.update(
+        AsmCreationUtils.addMethods(
+            AsmCreationUtils.makeClassWithAnnotations(
+                "a/B",
+                "c/D",
+                Collections.singletonList(
+                    AsmCreationUtils.makeAnnotation("Lmy/Ann;", "value", 3)),
+                Collections.emptyList(),
+                "e/F"),
+            AsmCreationUtils.makeMethod(
+                "foo",
+                "()V",
+                Opcodes.ACC_PUBLIC,
+                Collections.singletonList("Lmy/Ann;"),
+                Collections.emptyList())));
+    for (int i = 0; i < 100; i++) {
+      model.update(AsmCreationUtils.makeClass("c/D" + i, "c/D"));
+    }
+
+    model.update(AsmCreationUtils.makeClass("c/D", "java/lang/Object"));
+
+    assertThat(model.knowsClass("a/B")).isTrue();
+    assertThat(model.knowsClass("x/Y")).isFalse();
+    assertThat(model.hierarchicalClosure("a/B"))
+        .containsOnly("a/B", "c/D", "e/F", "java/lang/Object");
+    assertThat(model.annotationPropertyOfClass("a/B", "Lmy/Ann;", "value")).isEqualTo(3);
+    assertThat(model.annotationsOfMethod("a/B", "foo", "()V", Opcodes.ACC_PUBLIC))
+        .containsOnly("Lmy/Ann;");
+    assertThat(model.annotationDefaultValue("Lmy/Ann;", "value")).isEqualTo(42);
+    assertThat(model.directSubtypesOf("c/D")).hasSize(101);
+  }
+
+  @Test
+  public void concurrentUpdatesAreAllKnown() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    try {
+      List<Future<?>> results = new ArrayList<>();
+      for (int t = 0; t < THREADS; t++) {
+        int thread = t;
+        results.add(
+            executor.submit(
+                () -> {
+                  for (int i = 0; i < CLASSES_PER_THREAD; i++) {
+                    model.update(AsmCreationUtils.makeClass("c/C" + i, "s/S" + thread));
+                    assertThat(model.knowsClass("c/C" + i)).isTrue();
+                  }
+                }));
+      }
+
+      for (Future<?> result : results) {
+        result.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    for (int i = 0; i < CLASSES_PER_THREAD; i++) {
+      assertThat(model.superClassOf("c/C" + i)).startsWith("s/S");
+    }
+  }
+
+  @Test
+  public void updatesFromOffHeapModels() {
+    Model other = ModelFactory.offHeapFactory().make();
+    other.update(AsmCreationUtils.makeClass("a", "other"));
+    other.update(AsmCreationUtils.makeClass("b", "other"));
+    model.update(AsmCreationUtils.makeClass("a", "mine"));
+
+    model.updateFrom(other);
+
+    assertThat(model.superClassOf("a")).isEqualTo("mine");
+    assertThat(model.superClassOf("b")).isEqualTo("other");
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.ads.injkit.model;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
+
+@RunWith(JUnit4.class)
+public class RetainsConfiguredAnnotationsTest {
+  private final Model model =
+      ModelFactory.defaultFactory(ModelRetention.annotations(Collections.singleton("Lmy/Ann;")))
+          .make();
+
+  private static ClassReader toReader(ClassNode node) {
+    node.version = Opcodes.V1_8;
+    ClassWriter writer = new ClassWriter(0);
+    node.accept(writer);
+    return new ClassReader(writer.toByteArray());
+  }
+
+  private static ClassNode makeAnnotationClass(String iName) {
+    return AsmCreationUtils.addMethods(
+        AsmCreationUtils.makeAnnotationClass(iName),
+        AsmCreationUtils.makeMethod(
+            "value",
+            "()I",
+            Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT,
+            Collections.emptyList(),
+            Collections.emptyList(),
+            42));
+  }
+
+  private static ClassNode makeAnnotatedClass() {
+    return AsmCreationUtils.addMethods(
+        AsmCreationUtils.makeClassWithAnnotations(
+            "my/Cls",
+            "my/Super",
+            Arrays.asList(
+                AsmCreationUtils.makeAnnotation("Lmy/Ann;", "value", 3),
+                AsmCreationUtils.makeAnnotation("Lmy/Other;", "value", 4)),
+            Collections.singletonList(AsmCreationUtils.makeAnnotation("Lkotlin/Metadata;")),
+            "my/Intf"),
+        AsmCreationUtils.makeMethod(
+            "run",
+            "()V",
+            Opcodes.ACC_PUBLIC,
+            Arrays.asList("Lmy/Ann;", "Lmy/Other;"),
+            Collections.singletonList("Ljavax/annotation/Nullable;")));
+  }
+
+  private void assertRetainsOnlyConfiguredAnnotations() {
+    assertThat(model.hierarchicalClosure("my/Cls")).containsOnly("my/Cls", "my/Super", "my/Intf");
+    assertThat(model.annotationsOfClass("my/Cls")).containsOnly("Lmy/Ann;");
+    assertThat(model.annotationPropertyOfClass("my/Cls", "Lmy/Ann;", "value")).isEqualTo(3);
+    assertThat(model.hasMethod("my/Cls", "run", "()V", Opcodes.ACC_PUBLIC)).isTrue();
+    assertThat(model.annotationsOfMethod("my/Cls", "run", "()V", Opcodes.ACC_PUBLIC))
+        .containsOnly("Lmy/Ann;");
+    assertThat(model.classesWithAnnotation("Lmy/Other;")).isEmpty();
+
+    assertThat(model.knowsAnnotation("Lmy/Ann;")).isTrue();
+    assertThat(model.annotationDefaultValue("Lmy/Ann;", "value")).isEqualTo(42);
+    assertThat(model.knowsAnnotation("Lmy/Other;")).isTrue();
+    assertThat(model.annotationProperties("Lmy/Other;")).containsOnlyKeys("value");
+    assertThat(model.annotationDefaultValue("Lmy/Other;", "value")).isNull();
+  }
+
+  @Test
+  public void retainsOnlyConfiguredAnnotationsOfClassNodes() {
+    model.update(makeAnnotationClass("my/Ann"));
+    model.update(makeAnnotationClass("my/Other"));
+    model.update(makeAnnotatedClass());
+
+    assertRetainsOnlyConfiguredAnnotations();
+  }
+
+  @Test
+  public void retainsOnlyConfiguredAnnotationsOfClassFiles() {
+    model.update(toReader(makeAnnotationClass("my/Ann")));
+    model.update(toReader(makeAnnotationClass("my/Other")));
+    model.update(toReader(makeAnnotatedClass()));
+
+    assertRetainsOnlyConfiguredAnnotations();
+  }
+
+  @Test
+  public void retainsOnlyConfiguredAnnotationsOfOtherModels() {
+    Model other = ModelFactory.defaultFactory().make();
+    other.update(makeAnnotationClass("my/Ann"));
+    other.update(makeAnnotationClass("my/Other"));
+    other.update(makeAnnotatedClass());
+
+    model.updateFrom(other);
+
+    assertRetainsOnlyConfiguredAnnotations();
+    assertThat(other.annotationsOfClass("my/Cls"))
+        .containsOnly("Lmy/Ann;", "Lmy/Other;", "Lkotlin/Metadata;");
+  }
+}
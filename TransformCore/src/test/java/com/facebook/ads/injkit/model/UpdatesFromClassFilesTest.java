@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.ads.injkit.model;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Collections;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
+
+@RunWith(JUnit4.class)
+public class UpdatesFromClassFilesTest {
+  private final Model model = ModelFactory.defaultFactory().make();
+
+  private static ClassReader toReader(ClassNode node) {
+    node.version = Opcodes.V1_8;
+    ClassWriter writer = new ClassWriter(0);
+    node.accept(writer);
+    return new ClassReader(writer.toByteArray());
+  }
+
+  @Before
+  public void before() {
+    model.update(
+        toReader(
+            AsmCreationUtils.addMethods(
+                AsmCreationUtils.makeAnnotationClass("my/Ann"),
+                AsmCreationUtils.makeMethod(
+                    "value",
+                    "()Ljava/lang/String;",
+                    Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT,
+                    Collections.emptyList(),
+                    Collections.emptyList(),
+                    "bar"))));
+    model.update(
+        toReader(
+            AsmCreationUtils.addMethods(
+                AsmCreationUtils.makeClassWithAnnotations(
+                    "my/Cls",
+                    "my/Super",
+                    Collections.singletonList(
+                        AsmCreationUtils.makeAnnotation("Lmy/Ann;", "value", "foo")),
+                    Collections.singletonList(AsmCreationUtils.makeAnnotation("Lmy/Other;")),
+                    "my/Intf1",
+                    "my/Intf2"),
+                AsmCreationUtils.makeMethod(
+                    "run",
+                    "(I)V",
+                    Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT,
+                    Collections.singletonList("Lmy/Ann;"),
+                    Collections.emptyList()))));
+  }
+
+  @Test
+  public void knowsClassHierarchy() {
+    assertThat(model.knowsClass("my/Cls")).isTrue();
+    assertThat(model.superClassOf("my/Cls")).isEqualTo("my/Super");
+    assertThat(model.interfacesOf("my/Cls")).containsExactly("my/Intf1", "my/Intf2");
+  }
+
+  @Test
+  public void knowsVisibleAndInvisibleClassAnnotations() {
+    assertThat(model.annotationsOfClass("my/Cls")).containsOnly("Lmy/Ann;", "Lmy/Other;");
+    assertThat(model.annotationPropertyOfClass("my/Cls", "Lmy/Ann;", "value")).isEqualTo("foo");
+  }
+
+  @Test
+  public void knowsMethodsAndTheirAnnotations() {
+    assertThat(model.hasMethod("my/Cls", "run", "(I)V", Opcodes.ACC_PUBLIC)).isTrue();
+    assertThat(model.hasMethod("my/Cls", "run", "(J)V", Opcodes.ACC_PUBLIC)).isFalse();
+    assertThat(model.annotationsOfMethod("my/Cls", "run", "(I)V", Opcodes.ACC_PUBLIC))
+        .containsOnly("Lmy/Ann;");
+  }
+
+  @Test
+  public void knowsAnnotationDefaultValues() {
+    assertThat(model.knowsAnnotation("Lmy/Ann;")).isTrue();
+    assertThat(model.annotationDefaultValue("Lmy/Ann;", "value")).isEqualTo("bar");
+  }
+
+  @Test
+  public void firstClassFileWins() {
+    model.update(toReader(AsmCreationUtils.makeClass("my/Cls", "my/OtherSuper")));
+
+    assertThat(model.superClassOf("my/Cls")).isEqualTo("my/Super");
+  }
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.ads.injkit.sdkdebugger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.facebook.ads.injkit.FakeCallLogger;
+import com.facebook.ads.injkit.FakeLogCallAnnotation;
+import com.facebook.ads.injkit.TransformationEnvironment;
+import com.facebook.ads.injkit.benchmark.BenchmarkConfigurationConstants;
+import com.facebook.ads.injkit.benchmark.BenchmarkThis;
+import com.facebook.ads.injkit.benchmark.DummyBenchmarkReport;
+import com.google.common.io.ByteStreams;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.AnnotationNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.IntInsnNode;
+import org.objectweb.asm.tree.JumpInsnNode;
+import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.VarInsnNode;
+
+// With only the SDK debugger enabled, classes are streamed. The streamed classes must have the same
+// code as the ones processed as trees, which happens when another module needs them.
+@RunWith(JUnit4.class)
+public class SdkDebuggerStreamingTest {
+  private static final String HASH = "<hash>";
+
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private ClassLoader transform(boolean withTreeModule) throws Exception {
+    TransformationEnvironment.LoadableConfigurationFileWriter writer =
+        new TransformationEnvironment(temporaryFolder)
+            .addProcessingClass(Logged.class)
+            .addProcessingClass(NotLogged.class)
+            .addProcessingClass(withTreeModule ? BenchmarkThis.class : null)
+            .newLoadableConfigurationWriter()
+            .enable(new SdkDebuggerConfigurationWriter.Factory<>())
+            .logCallAnnotation(FakeLogCallAnnotation.class)
+            .logger(FakeCallLogger.class)
+            .done();
+    if (withTreeModule) {
+      // The benchmark has no streaming form, so enabling it processes every class as a tree even
+      // if no class is benchmarked.
+      writer.enable(factory -> new BenchmarkWriter(writer));
+    }
+
+    return writer.transformAndLoad();
+  }
+
+  private static byte[] classFile(ClassLoader loader, Class<?> cls) throws Exception {
+    String path = cls.getName().replace('.', '/') + ".class";
+    try (InputStream input = loader.getResourceAsStream(path)) {
+      return ByteStreams.toByteArray(input);
+    }
+  }
+
+  private static Map<String, List<String>> describeMethods(byte[] classFile) {
+    ClassNode node = new ClassNode();
+    new ClassReader(classFile).accept(node, ClassReader.SKIP_FRAMES);
+    Map<String, List<String>> methods = new LinkedHashMap<>();
+    for (MethodNode method : node.methods) {
+      methods.put(method.name + method.desc, describe(method));
+    }
+
+    return methods;
+  }
+
+  // The access, annotations and instructions of a method. Labels are numbered in the order of the
+  // code and the hash of the method given to the logger, which differs between runs, is replaced.
+  private static List<String> describe(MethodNode method) {
+    List<String> description = new ArrayList<>();
+    description.add(Integer.toString(method.access));
+    for (List<AnnotationNode> annotations :
+        Arrays.asList(method.visibleAnnotations, method.invisibleAnnotations)) {
+      if (annotations != null) {
+        for (AnnotationNode annotation : annotations) {
+          description.add("@" + annotation.desc);
+        }
+      }
+    }
+
+    List<LabelNode> labels = new ArrayList<>();
+    for (AbstractInsnNode instruction : method.instructions) {
+      if (instruction instanceof LabelNode) {
+        labels.add((LabelNode) instruction);
+      }
+    }
+
+    for (AbstractInsnNode instruction : method.instructions) {
+      if (instruction.getOpcode() < 0) {
+        continue;
+      }
+
+      String operands = "";
+      if (instruction instanceof LdcInsnNode) {
+        AbstractInsnNode next = instruction.getNext();
+        boolean isHash =
+            next instanceof MethodInsnNode && ((MethodInsnNode) next).name.equals("logCall");
+        operands = isHash ? HASH : String.valueOf(((LdcInsnNode) instruction).cst);
+      } else if (instruction instanceof MethodInsnNode) {
+        MethodInsnNode call = (MethodInsnNode) instruction;
+        operands = call.owner + "." + call.name + call.desc;
+      } else if (instruction instanceof FieldInsnNode) {
+        FieldInsnNode field = (FieldInsnNode) instruction;
+        operands = field.owner + "." + field.name + ":" + field.desc;
+      } else if (instruction instanceof VarInsnNode) {
+        operands = Integer.toString(((VarInsnNode) instruction).var);
+      } else if (instruction instanceof IntInsnNode) {
+        operands = Integer.toString(((IntInsnNode) instruction).operand);
+      } else if (instruction instanceof JumpInsnNode) {
+        operands = "L" + labels.indexOf(((JumpInsnNode) instruction).label);
+      }
+
+      description.add(instruction.getOpcode() + " " + operands);
+    }
+
+    return description;
+  }
+
+  @Test
+  public void streamedCodeIsTheSameAsTreeCode() throws Exception {
+    Map<String, List<String>> streamed =
+        describeMethods(classFile(transform(false), Logged.class));
+    Map<String, List<String>> tree = describeMethods(classFile(transform(true), Logged.class));
+
+    assertThat(streamed).isEqualTo(tree);
+    List<String> logged = streamed.get("logged(I)I");
+    assertThat(logged.subList(0, 5))
+        .containsExactly(
+            Integer.toString(Opcodes.ACC_PUBLIC),
+            Opcodes.LDC + " logged",
+            Opcodes.LDC + " Logs calls",
+            Opcodes.LDC + " " + HASH,
+            Opcodes.INVOKESTATIC
+                + " "
+                + Type.getInternalName(FakeCallLogger.class)
+                + ".logCall(Ljava/lang/String;Ljava/lang/String;Ljava/lang/String;)V");
+  }
+
+  @Test
+  public void streamedClassesAreVerified() throws Exception {
+    ClassLoader loader = transform(false);
+
+    Class.forName(Logged.class.getName(), true, loader);
+  }
+
+  @Test
+  public void classWithoutLoggedMethodsIsStreamedUnchanged() throws Exception {
+    assertThat(classFile(transform(false), NotLogged.class))
+        .isEqualTo(classFile(NotLogged.class.getClassLoader(), NotLogged.class));
+  }
+
+  private static class BenchmarkWriter
+      implements TransformationEnvironment.ModuleConfigurationWriter<
+          TransformationEnvironment.LoadableConfigurationFileWriter> {
+    private final TransformationEnvironment.LoadableConfigurationFileWriter configurationWriter;
+
+    BenchmarkWriter(TransformationEnvironment.LoadableConfigurationFileWriter configurationWriter) {
+      this.configurationWriter = configurationWriter;
+    }
+
+    @Override
+    public TransformationEnvironment.LoadableConfigurationFileWriter done() {
+      return configurationWriter;
+    }
+
+    @Override
+    public void write(PrintWriter pw) {
+      pw.println(BenchmarkConfigurationConstants.ENABLED + " true");
+      pw.println(
+          BenchmarkConfigurationConstants.ANNOTATION_CLASS + " " + BenchmarkThis.class.getName());
+      pw.println(
+          BenchmarkConfigurationConstants.RECEIVER_CLASS
+              + " "
+              + DummyBenchmarkReport.class.getName());
+    }
+  }
+
+  public static class Logged {
+    private int calls;
+
+    @FakeLogCallAnnotation(description = "Logs calls")
+    public int logged(int value) {
+      calls++;
+      if (value > 0) {
+        return value;
+      }
+
+      return -value;
+    }
+
+    public int notLogged() {
+      return calls;
+    }
+  }
+
+  public static class NotLogged {
+    public int notLogged(int value) {
+      return value > 0 ? value : -value;
+    }
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.ads.injkit.threadcheck;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.facebook.ads.injkit.AsmNameUtils;
+import com.facebook.ads.injkit.TransformationEnvironment;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+// With only the thread check enabled, classes are streamed and the frames of the checked methods
+// are not computed but kept by the injector.
+@RunWith(JUnit4.class)
+public class ThreadCheckStreamingTest {
+  private static final String OLD_CLASS_INAME =
+      "com/facebook/ads/injkit/threadcheck/ThreadCheckStreamingTestOld";
+
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private TransformationEnvironment environment;
+  private ClassLoader loader;
+
+  @Before
+  public void before() throws Exception {
+    ThreadCheckInjector.androidLooper =
+        AsmNameUtils.classJavaNameToInternalName(CustomLooper.class.getName());
+    DummyThreadCheckViolationHandler.reset();
+
+    environment = new TransformationEnvironment(temporaryFolder);
+    loader =
+        environment
+            .addProcessingClass(LoopFirst.class)
+            .addProcessingClassFile(OLD_CLASS_INAME, makeJava5Class())
+            .newLoadableConfigurationWriter()
+            .enable(new ThreadCheckConfigurationWriter.Factory<>())
+            .uiThreadAnnotationClass(Ui.class)
+            .workerThreadAnnotationClass(Work.class)
+            .anyThreadAnnotationClass(Any.class)
+            .violationHandlerClass(DummyThreadCheckViolationHandler.class)
+            .done()
+            .transformAndLoad();
+  }
+
+  // Classes older than Java 6 have no frames and cannot be given any.
+  private static byte[] makeJava5Class() {
+    ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+    writer.visit(
+        Opcodes.V1_5, Opcodes.ACC_PUBLIC, OLD_CLASS_INAME, null, "java/lang/Object", null);
+    MethodVisitor init = writer.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+    init.visitCode();
+    init.visitVarInsn(Opcodes.ALOAD, 0);
+    init.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+    init.visitInsn(Opcodes.RETURN);
+    init.visitMaxs(0, 0);
+    init.visitEnd();
+
+    MethodVisitor old = writer.visitMethod(Opcodes.ACC_PUBLIC, "old", "()I", null, null);
+    old.visitAnnotation(Type.getDescriptor(Ui.class), false).visitEnd();
+    old.visitCode();
+    old.visitInsn(Opcodes.ICONST_1);
+    old.visitInsn(Opcodes.IRETURN);
+    old.visitMaxs(0, 0);
+    old.visitEnd();
+    writer.visitEnd();
+    return writer.toByteArray();
+  }
+
+  @Test
+  public void java5ClassIsCheckedWithoutFrames() throws Exception {
+    CustomLooper.myself = new CustomLooper();
+    CustomLooper.main = new CustomLooper();
+
+    Class<?> old = loader.loadClass(OLD_CLASS_INAME.replace('/', '.'));
+    assertThat(old.getMethod("old").invoke(old.newInstance())).isEqualTo(1);
+    assertThat(DummyThreadCheckViolationHandler.uiThreadViolationsDetected()).isEqualTo(1);
+  }
+
+  @Test
+  public void methodWithFrameAtStartIsCheckedFromWorker() throws Exception {
+    CustomLooper.myself = new CustomLooper();
+    CustomLooper.main = new CustomLooper();
+
+    assertThat(environment.invoke(loader, LoopFirst.class, "spin")).isEqualTo(0);
+    assertThat(DummyThreadCheckViolationHandler.uiViolationsAre(LoopFirst.class, "spin", "()I"))
+        .isTrue();
+  }
+
+  @Test
+  public void methodWithFrameAtStartIsCheckedFromMain() throws Exception {
+    CustomLooper.myself = new CustomLooper();
+    CustomLooper.main = CustomLooper.myself;
+
+    assertThat(environment.invoke(loader, LoopFirst.class, "spin")).isEqualTo(0);
+    assertThat(DummyThreadCheckViolationHandler.violationsDetected()).isEqualTo(0);
+  }
+
+  public @interface Ui {}
+
+  public @interface Work {}
+
+  public @interface Any {}
+
+  public static class LoopFirst {
+    private int counter = 3;
+
+    // The loop starts the code, so the method has a frame at its first instruction.
+    @Ui
+    public int spin() {
+      while (counter > 0) {
+        counter--;
+      }
+
+      return counter;
+    }
+  }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) Meta Platforms, Inc. and affiliates.
+ *
+ * This source code is licensed under the MIT license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package com.facebook.ads.injkit.threadcheck;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.facebook.ads.injkit.TransformationEnvironment;
+import com.google.common.io.ByteStreams;
+import java.io.InputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class ThreadCheckUnchangedClassesTest {
+
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private static byte[] classBytes(ClassLoader loader, Class<?> cls) throws Exception {
+    try (InputStream input =
+        loader.getResourceAsStream(cls.getName().replace('.', '/') + ".class")) {
+      return ByteStreams.toByteArray(input);
+    }
+  }
+
+  @Test
+  public void onlyChangedClassesAreRewritten() throws Exception {
+    ClassLoader transformed =
+        new TransformationEnvironment(temporaryFolder)
+            .addProcessingClass(NotAnnotated.class)
+            .addProcessingClass(Annotated.class)
+            .newLoadableConfigurationWriter()
+            .enable(new ThreadCheckConfigurationWriter.Factory<>())
+            .uiThreadAnnotationClass(Ui.class)
+            .workerThreadAnnotationClass(Work.class)
+            .anyThreadAnnotationClass(Any.class)
+            .violationHandlerClass(DummyThreadCheckViolationHandler.class)
+            .done()
+            .transformAndLoad();
+
+    ClassLoader original = getClass().getClassLoader();
+    assertThat(classBytes(transformed, NotAnnotated.class))
+        .isEqualTo(classBytes(original, NotAnnotated.class));
+    assertThat(classBytes(transformed, Annotated.class))
+        .isNotEqualTo(classBytes(original, Annotated.class));
+  }
+
+  public @interface Ui {}
+
+  public @interface Work {}
+
+  public @interface Any {}
+
+  public static class NotAnnotated {
+    public int value() {
+      return 1;
+    }
+  }
+
+  public static class Annotated {
+    @Ui
+    public int value() {
+      return 1;
+    }
+  }
+}